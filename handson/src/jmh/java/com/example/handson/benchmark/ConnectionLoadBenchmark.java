@@ -0,0 +1,224 @@
+package com.example.handson.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.handson.HandsonApplication;
+
+/**
+ * リクエストを処理する方式（Tomcatのプラットフォームスレッドのプール、仮想スレッド、WebFluxのイベントループ）ごとに、
+ * 同時接続数を変えて1秒あたりの処理件数とp99レイテンシ、接続1件あたりのヒープ使用量を比較する負荷試験
+ *
+ * <p>./gradlew loadTest で実行します（-Pconnections=1000,10000 のように接続数を指定できます）
+ * アプリケーションは同じJVMで起動し、接続ごとに1つの仮想スレッドのクライアントが応答を待っては次のリクエストを送ります
+ * リクエストの9割は投稿の取得、1割は書き込みごとに同期する書き込み先行ログを使った下書きの作成です
+ * 接続1件あたりのヒープ使用量は、ウォームアップ後と接続前のGC後のヒープ使用量の差を接続数で割った値です
+ * クライアントも同じヒープを使いますが、どの方式でも同じため方式間の差はサーバー側の差になります
+ *
+ * <p>5万接続ではクライアントとサーバーの両方のソケットを同じプロセスで開くため、ulimit -n を 120000 以上にしてください
+ */
+public class ConnectionLoadBenchmark {
+
+    static final String DEFAULT_CONNECTIONS = "1000,10000,50000";
+    static final Duration WARMUP = Duration.ofSeconds(5);
+    static final Duration MEASUREMENT = Duration.ofSeconds(20);
+    static final int SEED_POSTS = 1000;
+    // エフェメラルポートの範囲（約28000）を超えないよう、送信元のループバックアドレスごとの接続数を抑えます
+    static final int CONNECTIONS_PER_SOURCE = 20_000;
+    // レイテンシは100マイクロ秒刻みで60秒まで数えます
+    static final long BUCKET_NANOS = 100_000;
+    static final int BUCKETS = 600_000;
+
+    public static void main(String[] args) throws Exception {
+        int[] connections = Arrays.stream((args.length > 0 ? args[0] : DEFAULT_CONNECTIONS).split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        int maxConnections = Arrays.stream(connections).max().orElse(0);
+        System.out.printf("%-8s %11s %12s %10s %10s %8s %12s %8s%n", "mode", "connections", "requests/s", "p50 ms",
+                "p99 ms", "errors", "heap KB/conn", "threads");
+        for (String mode : List.of("platform", "virtual", "reactive")) {
+            Path dir = Files.createTempDirectory("load-benchmark");
+            try (ConfigurableApplicationContext context = SpringApplication.run(HandsonApplication.class,
+                    "--server.port=0",
+                    "--spring.threads.virtual.enabled=" + mode.equals("virtual"),
+                    "--spring.main.web-application-type=" + (mode.equals("reactive") ? "reactive" : "servlet"),
+                    "--server.tomcat.max-connections=" + (maxConnections + 1000),
+                    "--server.tomcat.accept-count=" + maxConnections,
+                    "--handson.wal.enabled=true",
+                    "--handson.wal.path=" + dir.resolve("posts.wal"),
+                    "--handson.wal.durability=PER_WRITE")) {
+                URI base = URI.create("http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port")
+                        + "/api/posts");
+                seed(base);
+                for (int count : connections) {
+                    Result result = run(base, count);
+                    System.out.printf("%-8s %11d %12.0f %10.1f %10.1f %8d %12.1f %8d%n", mode, count,
+                            result.throughput(), result.p50Millis(), result.p99Millis(), result.errors(),
+                            result.heapBytesPerConnection() / 1024, result.threads());
+                }
+            } finally {
+                try (var files = Files.list(dir)) {
+                    for (Path file : files.toList()) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+                Files.deleteIfExists(dir);
+            }
+        }
+    }
+
+    private static void seed(URI base) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        for (int i = 0; i < SEED_POSTS; i++) {
+            client.send(createRequest(base, i), HttpResponse.BodyHandlers.discarding());
+        }
+    }
+
+    private static Result run(URI base, int connections) throws Exception {
+        Recorder recorder = new Recorder();
+        List<HttpClient> clients = new ArrayList<>();
+        long idleHeap = usedHeapAfterGc();
+        long loadedHeap;
+        int threads;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int source = 0; source * CONNECTIONS_PER_SOURCE < connections; source++) {
+                clients.add(HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .localAddress(InetAddress.getByName("127.0.0." + (2 + source)))
+                        .connectTimeout(Duration.ofSeconds(30))
+                        .executor(executor)
+                        .build());
+            }
+            for (int i = 0; i < connections; i++) {
+                HttpClient client = clients.get(i / CONNECTIONS_PER_SOURCE);
+                executor.submit(() -> drive(client, base, recorder));
+            }
+            Thread.sleep(WARMUP.toMillis());
+            // 全接続が確立してリクエストを処理している状態で、GC後も残っているヒープとスレッド数を測ります
+            loadedHeap = usedHeapAfterGc();
+            threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            recorder.start();
+            Thread.sleep(MEASUREMENT.toMillis());
+            recorder.stop();
+            // executor を閉じる際に、実行中のリクエストが終わるのを待ってから次の接続数に進みます
+        } finally {
+            for (HttpClient client : clients) {
+                client.close();
+            }
+        }
+        return recorder.result(MEASUREMENT, (double) (loadedHeap - idleHeap) / connections, threads);
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void drive(HttpClient client, URI base, Recorder recorder) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (!recorder.isStopped()) {
+            HttpRequest request = random.nextInt(10) == 0 ? createRequest(base, random.nextInt())
+                    : HttpRequest.newBuilder(base.resolve("/api/posts/" + (1 + random.nextInt(SEED_POSTS)))).build();
+            boolean measured = recorder.isMeasuring();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                recorder.record(measured, System.nanoTime() - start, response.statusCode() < 500);
+            } catch (IOException e) {
+                recorder.record(measured, System.nanoTime() - start, false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static HttpRequest createRequest(URI base, int i) {
+        return HttpRequest.newBuilder(base.resolve("/api/posts/drafts"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"content\":\"load test post " + i + "\"}"))
+                .build();
+    }
+
+    /**
+     * 計測期間中に始まったリクエストのレイテンシの分布とエラー数を数えます
+     */
+    private static final class Recorder {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS + 1);
+        private final AtomicLong errors = new AtomicLong();
+        private volatile boolean measuring;
+        private volatile boolean stopped;
+
+        void start() {
+            measuring = true;
+        }
+
+        void stop() {
+            measuring = false;
+            stopped = true;
+        }
+
+        boolean isMeasuring() {
+            return measuring;
+        }
+
+        boolean isStopped() {
+            return stopped;
+        }
+
+        void record(boolean measured, long nanos, boolean success) {
+            if (!measured) {
+                return;
+            }
+            if (!success) {
+                errors.incrementAndGet();
+                return;
+            }
+            buckets.incrementAndGet((int) Math.min(nanos / BUCKET_NANOS, BUCKETS));
+        }
+
+        Result result(Duration measurement, double heapBytesPerConnection, int threads) {
+            long total = 0;
+            for (int i = 0; i <= BUCKETS; i++) {
+                total += buckets.get(i);
+            }
+            return new Result(total / (measurement.toNanos() / 1e9), percentile(total, 0.50),
+                    percentile(total, 0.99), errors.get(), heapBytesPerConnection, threads);
+        }
+
+        private double percentile(long total, double fraction) {
+            long target = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i <= BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= target && seen > 0) {
+                    return (i + 1) * BUCKET_NANOS / 1e6;
+                }
+            }
+            return 0;
+        }
+    }
+
+    private record Result(double throughput, double p50Millis, double p99Millis, long errors,
+            double heapBytesPerConnection, int threads) {
+    }
+}
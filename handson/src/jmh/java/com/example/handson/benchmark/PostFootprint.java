@@ -0,0 +1,58 @@
+package com.example.handson.benchmark;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.StoredPost;
+import com.example.handson.service.content.OffHeapContentStore;
+
+/**
+ * 投稿1件あたりのヒープ使用量を、API用の Post と保持用の StoredPost で比較するレポート
+ * ./gradlew footprint で実行します。本文の文字列は両者で共有されるため、本文を除いたサイズも出力します
+ * 本文をヒープ外に保持する場合（StoredPost/offHeap）は、本文の位置情報などヒープに残る分だけを数えます
+ */
+public class PostFootprint {
+
+    static final int POSTS = 100_000;
+
+    public static void main(String[] args) {
+        List<Post> posts = new ArrayList<>(POSTS);
+        List<StoredPost> storedPosts = new ArrayList<>(POSTS);
+        List<StoredPost> offHeapPosts = new ArrayList<>(POSTS);
+        OffHeapContentStore contentStore = new OffHeapContentStore();
+        List<String> contents = new ArrayList<>(POSTS);
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        for (int i = 0; i < POSTS; i++) {
+            String content = "benchmark post " + i + " about spring boot";
+            Post post = new Post(content);
+            post.setId((long) i + 1000);
+            post.setCreatedAt(base.plusNanos(i * 1_000_001L));
+            post.setUpdatedAt(base.plusNanos(i * 1_000_003L));
+            if (i % 2 == 0) {
+                post.setPublishedAt(base.plusNanos(i * 1_000_007L));
+                post.setDraft(false);
+            }
+            posts.add(post);
+            storedPosts.add(StoredPost.of(post));
+            contentStore.put(post.getId(), content);
+            offHeapPosts.add(StoredPost.of(post).withContentIn(contentStore));
+            contents.add(content);
+        }
+
+        // 本文のリスト（リスト自体と文字列）のサイズを差し引くと、投稿オブジェクトと日時だけのサイズになります
+        long contentBytes = GraphLayout.parseInstance(contents).totalSize();
+        report("Post", GraphLayout.parseInstance(posts).totalSize(), contentBytes);
+        report("StoredPost", GraphLayout.parseInstance(storedPosts).totalSize(), contentBytes);
+        // ストアの位置情報はヒープに残りますが、本文のバイト列はダイレクトバッファ（ヒープ外）にあります
+        report("StoredPost/offHeap", GraphLayout.parseInstance(offHeapPosts).totalSize(), 0);
+    }
+
+    private static void report(String name, long totalBytes, long contentBytes) {
+        System.out.printf("%-18s %8.1f bytes/post (%8.1f bytes/post excluding content)%n",
+                name, (double) totalBytes / POSTS, (double) (totalBytes - contentBytes) / POSTS);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.handson.benchmark;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.handson.controller.ConditionalGets;
+import com.example.handson.controller.PostJsonCache;
+import com.example.handson.model.Post;
+import com.example.handson.service.PostService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 投稿1件の取得（GET /api/posts/{id}）で本文のJSONを作る処理を、8スレッドから同時に行ったときの処理件数を比較するベンチマーク
+ * 取得する投稿のIDは Zipf 分布（少数の投稿に参照が集中する分布）に従います
+ * uncached は取得のたびに ObjectMapper でシリアライズし、cached は PostJsonCache の変換済みのバイト列を使います
+ *
+ * <p>キャッシュの上限（maxBytes）は全投稿のJSONより小さく、終了時にヒット率と追い出した件数を出力します
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class PostJsonCacheBenchmark {
+
+    static final int POSTS = 100_000;
+    static final int SAMPLES = 1 << 20;
+
+    @Param({"cached", "uncached"})
+    public String mode;
+
+    @Param({"0.99"})
+    public double skew;
+
+    @Param({"16777216"})
+    public long maxBytes;
+
+    private PostService postService;
+    private ObjectMapper objectMapper;
+    private PostJsonCache jsonCache;
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        postService = new PostService();
+        for (int i = 0; i < POSTS; i++) {
+            Post post = postService.createDraft("投稿 " + i + " の本文です。 " + "sample text ".repeat(40));
+            if (i % 2 == 0) {
+                postService.publishPost(post.getId());
+            }
+        }
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        jsonCache = new PostJsonCache(objectMapper, new SimpleMeterRegistry(), maxBytes, false);
+        ids = zipfIds(POSTS, skew, SAMPLES);
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        if (mode.equals("cached")) {
+            long requests = jsonCache.hitCount() + jsonCache.missCount();
+            System.out.printf("%nhit ratio: %.3f, evictions: %d%n",
+                    requests > 0 ? (double) jsonCache.hitCount() / requests : 0, jsonCache.evictionCount());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final SplittableRandom random = new SplittableRandom();
+
+        int next() {
+            return random.nextInt(SAMPLES);
+        }
+    }
+
+    @Benchmark
+    public byte[] getPost(Cursor cursor) throws Exception {
+        Post post = postService.getPost(ids[cursor.next()]);
+        if (mode.equals("cached")) {
+            return jsonCache.response(post, ConditionalGets.etag(post), null).getBody();
+        }
+        return objectMapper.writeValueAsBytes(post);
+    }
+
+    /**
+     * 順位 r（1始まり）の投稿が 1/r^skew に比例する確率で選ばれるIDの列を作ります
+     * 人気の投稿がIDの小さい方に偏らないよう、順位とIDの対応は固定の乱数で入れ替えます
+     */
+    static long[] zipfIds(int n, double skew, int samples) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 1; rank <= n; rank++) {
+            sum += 1 / Math.pow(rank, skew);
+            cumulative[rank - 1] = sum;
+        }
+        long[] idByRank = new long[n];
+        for (int i = 0; i < n; i++) {
+            idByRank[i] = i + 1;
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long swap = idByRank[i];
+            idByRank[i] = idByRank[j];
+            idByRank[j] = swap;
+        }
+        long[] ids = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            ids[i] = idByRank[index >= 0 ? index : Math.min(-index - 1, n - 1)];
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.handson.benchmark;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.example.handson.service.index.ConcurrentLongMap;
+
+/**
+ * IDから投稿を引く主索引の実装ごとに、8スレッドから同時に参照・追加・削除したときの処理件数を比較するベンチマーク
+ * longMap は ConcurrentLongMap、skipList は以前の PostStore の ConcurrentSkipListMap、
+ * hashMap はそれ以前の PostService の ConcurrentHashMap です
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class PostMapBenchmark {
+
+    static final int SIZE = 1_000_000;
+
+    @Param({"longMap", "skipList", "hashMap"})
+    public String map;
+
+    private PostMap posts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        posts = switch (map) {
+            case "longMap" -> new LongMap();
+            case "skipList" -> new BoxedMap(new ConcurrentSkipListMap<>());
+            case "hashMap" -> new BoxedMap(new ConcurrentHashMap<>());
+            default -> throw new IllegalArgumentException(map);
+        };
+        for (long id = 1; id <= SIZE; id++) {
+            posts.put(id, "post " + id);
+        }
+    }
+
+    @Benchmark
+    public Object get() {
+        return posts.get(randomId());
+    }
+
+    /**
+     * 既存のIDの値を置き換えます（公開に相当します）
+     */
+    @Benchmark
+    public Object put() {
+        long id = randomId();
+        return posts.put(id, "post " + id);
+    }
+
+    /**
+     * 削除した投稿を戻して件数を保ちます。削除と追加の1組を1回と数えます
+     */
+    @Benchmark
+    public Object removeAndPut() {
+        long id = randomId();
+        Object removed = posts.remove(id);
+        posts.put(id, removed != null ? removed : "post " + id);
+        return removed;
+    }
+
+    private static long randomId() {
+        return 1 + ThreadLocalRandom.current().nextLong(SIZE);
+    }
+
+    private interface PostMap {
+        Object get(long id);
+
+        Object put(long id, Object value);
+
+        Object remove(long id);
+    }
+
+    private static final class LongMap implements PostMap {
+        private final ConcurrentLongMap<Object> map = new ConcurrentLongMap<>();
+
+        @Override
+        public Object get(long id) {
+            return map.get(id);
+        }
+
+        @Override
+        public Object put(long id, Object value) {
+            return map.put(id, value);
+        }
+
+        @Override
+        public Object remove(long id) {
+            return map.remove(id);
+        }
+    }
+
+    // ボクシングのコストも含めて測るため、キーは呼び出しごとに Long に変換します
+    private record BoxedMap(ConcurrentMap<Long, Object> map) implements PostMap {
+        @Override
+        public Object get(long id) {
+            return map.get(id);
+        }
+
+        @Override
+        public Object put(long id, Object value) {
+            return map.put(id, value);
+        }
+
+        @Override
+        public Object remove(long id) {
+            return map.remove(id);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.handson.benchmark;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.example.handson.service.PostStore;
+import com.example.handson.service.StoredPost;
+
+/**
+ * 8スレッドから同時に PostStore の公開・削除を行ったときの処理件数を測るベンチマーク
+ * posts は操作の対象にする投稿の数で、16 では同じ投稿への公開と削除が頻繁に競合します
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class PostStoreBenchmark {
+
+    @Param({"16", "100000"})
+    public int posts;
+
+    private final Instant createdAt = Instant.now();
+    private final String content = "This is a sample post stored in the post store. 投稿のサンプルです。";
+    private AtomicLong nextId;
+    private PostStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new PostStore();
+        for (long id = 1; id <= posts; id++) {
+            store.insert(StoredPost.draft(id, content, createdAt));
+        }
+        nextId = new AtomicLong(posts + 1L);
+    }
+
+    /**
+     * 対象の投稿の公開と、削除して下書きとして追加し直す操作を半分ずつ行います
+     * 追加し直すのは削除に成功したスレッドだけのため、投稿の数は変わりません
+     */
+    @Benchmark
+    public StoredPost publishOrRemove() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id = 1 + random.nextLong(posts);
+        if (random.nextBoolean()) {
+            return store.publish(id, Instant.now());
+        }
+        StoredPost removed = store.remove(id);
+        if (removed != null) {
+            store.insert(StoredPost.draft(id, content, createdAt));
+        }
+        return removed;
+    }
+
+    /**
+     * 新しい下書きを追加して公開し、削除します。3つの操作の1組を1回と数えます
+     */
+    @Benchmark
+    public StoredPost insertPublishAndRemove() {
+        long id = nextId.getAndIncrement();
+        store.insert(StoredPost.draft(id, content, createdAt));
+        store.publish(id, Instant.now());
+        return store.remove(id);
+    }
+}
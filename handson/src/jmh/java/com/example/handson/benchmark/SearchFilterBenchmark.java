@@ -0,0 +1,87 @@
+package com.example.handson.benchmark;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.StoredPost;
+import com.example.handson.service.search.PostQuery;
+
+/**
+ * 検索条件の評価コストを、投稿1件あたりの時間で比較するベンチマーク
+ * legacy は従来の searchPostsWithFilters と同じ評価（呼び出しごとの SimpleDateFormat、投稿ごとの小文字化と split）、
+ * compiled は PostQuery#compile でコンパイルした述語による評価です
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(SearchFilterBenchmark.POSTS)
+public class SearchFilterBenchmark {
+
+    static final int POSTS = 10_000;
+
+    @Param({"sample"})
+    public String keyword;
+
+    private final List<Post> posts = new ArrayList<>();
+    private final List<StoredPost> storedPosts = new ArrayList<>();
+    private Predicate<StoredPost> compiled;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < POSTS; i++) {
+            Post post = new Post(i % 7 == 0 ? "This is a Sample post number " + i : "投稿" + i + "です。 ordinary text");
+            post.setId((long) i);
+            posts.add(post);
+            storedPosts.add(StoredPost.of(post));
+        }
+        compiled = PostQuery.of(keyword, null, null, "2000-01-01", "2999-12-31", true, 2, 10).compile();
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) throws Exception {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+        Date fromD = sdf.parse("2000-01-01");
+        Date toD = sdf.parse("2999-12-31");
+        for (Post p : posts) {
+            boolean match = p.isDraft()
+                    && p.getContent() != null && p.getContent().toLowerCase().contains(keyword.toLowerCase())
+                    && !p.getCreatedAt().isBefore(fromD.toInstant())
+                    && !p.getCreatedAt().isAfter(toD.toInstant())
+                    && p.getContent().split("\\s+").length >= 2
+                    && p.getContent().split("\\s+").length <= 10;
+            blackhole.consume(match);
+        }
+    }
+
+    @Benchmark
+    public void compiled(Blackhole blackhole) {
+        for (StoredPost p : storedPosts) {
+            blackhole.consume(compiled.test(p));
+        }
+    }
+
+    @Benchmark
+    public void compiledIncludingCompilation(Blackhole blackhole) {
+        Predicate<StoredPost> predicate = PostQuery.of(keyword, null, null, "2000-01-01", "2999-12-31", true, 2, 10)
+                .compile();
+        for (StoredPost p : storedPosts) {
+            blackhole.consume(predicate.test(p));
+        }
+    }
+}
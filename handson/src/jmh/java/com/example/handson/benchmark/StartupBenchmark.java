@@ -0,0 +1,93 @@
+package com.example.handson.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.PostService;
+import com.example.handson.service.persistence.DurabilityPolicy;
+import com.example.handson.service.persistence.SnapshotStore;
+import com.example.handson.service.persistence.WriteAheadLog;
+
+/**
+ * 起動時の復元（最初のリクエストを受け付けられるまで）の時間を、更新履歴の長さごとに比較するベンチマーク
+ * 残っている投稿の数は同じまま、作成して削除した投稿の数（churn）だけを増やします
+ * log はログ全体を再生し、snapshot はスナップショットとそれ以降のログだけを再生します
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+public class StartupBenchmark {
+
+    static final int LIVE_POSTS = 100_000;
+
+    @Param({"0", "1000000"})
+    public int churn;
+
+    @Param({"log", "snapshot"})
+    public String recovery;
+
+    private Path dir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("startup-benchmark");
+        try (WriteAheadLog log = open()) {
+            PostService service = new PostService(log, snapshots());
+            for (int i = 0; i < churn; i++) {
+                service.deletePost(service.createDraft("temporary post " + i).getId());
+            }
+            for (int i = 0; i < LIVE_POSTS; i++) {
+                Post post = service.createDraft("This is post number " + i + " 投稿です。");
+                if (i % 2 == 0) {
+                    service.publishPost(post.getId());
+                }
+            }
+            service.snapshot();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public PostService start() throws IOException {
+        try (WriteAheadLog log = open()) {
+            return new PostService(log, snapshots());
+        }
+    }
+
+    private WriteAheadLog open() throws IOException {
+        return new WriteAheadLog(dir.resolve("posts.wal"), DurabilityPolicy.ASYNC, 10);
+    }
+
+    // log の場合はスナップショットを使わないため、ログのセグメントも削除されません
+    private SnapshotStore snapshots() throws IOException {
+        return recovery.equals("snapshot") ? new SnapshotStore(dir.resolve("posts.snapshot")) : null;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.handson.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.example.handson.service.persistence.DurabilityPolicy;
+import com.example.handson.service.persistence.LogRecord;
+import com.example.handson.service.persistence.WriteAheadLog;
+
+/**
+ * 書き込み先行ログの同期方針ごとに、1秒あたりの書き込み件数を比較するベンチマーク
+ * 8スレッドから同時に書き込むため、PER_WRITE でもグループコミットによって fsync が共有されます
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class WriteAheadLogBenchmark {
+
+    @Param({"PER_WRITE", "BATCHED", "ASYNC"})
+    public DurabilityPolicy policy;
+
+    private final AtomicLong ids = new AtomicLong();
+    private final Instant createdAt = Instant.now();
+    private final String content = "This is a sample post written to the write-ahead log. 投稿のサンプルです。";
+    private Path dir;
+    private WriteAheadLog log;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("wal-benchmark");
+        log = new WriteAheadLog(dir.resolve("posts.wal"), policy, 2);
+        log.replay(record -> { });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        log.close();
+        Files.deleteIfExists(dir.resolve("posts.wal"));
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void write() {
+        log.write(new LogRecord(LogRecord.Type.CREATE, ids.getAndIncrement(), createdAt, content));
+    }
+}
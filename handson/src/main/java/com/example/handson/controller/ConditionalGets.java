@@ -0,0 +1,137 @@
+package com.example.handson.controller;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.DataVersion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 条件付きGET（If-None-Match / If-Modified-Since）を判定し、エンドポイントごとに 304 を返せた割合を記録するクラス
+ * 本文を組み立てる前に判定するため、304 の場合は一覧の取得もシリアライズも行いません
+ *
+ * <p>ETag は投稿ごとにはIDと更新日時・公開日時から、一覧ごとには投稿の集合の版（DataVersion）と表現の種類から作ります
+ * Last-Modified は秒の精度しかないため、同じ秒のうちに続けて変更されても 304 を返さないよう、
+ * 最後の変更から1秒以上経つまでは付けません（その間は ETag だけで判定します）
+ *
+ * <p>メトリクス
+ * <ul>
+ * <li>handson.conditional.requests（endpoint, result=not_modified|full）: リクエストの件数
+ * <li>handson.conditional.hit.ratio（endpoint）: 304 を返した割合
+ * </ul>
+ */
+@Component
+public class ConditionalGets {
+
+    static final String NOT_MODIFIED = "not_modified";
+    static final String FULL = "full";
+
+    private final MeterRegistry registry;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public ConditionalGets(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * リクエストの条件に一致する（クライアントの持つ表現が最新の）場合はtrueを返します
+     * 一致しない場合もレスポンスに ETag と Last-Modified を設定します
+     */
+    public boolean notModified(WebRequest request, String endpoint, String etag, Instant lastModified) {
+        long lastModifiedMillis = lastModifiedHeader(lastModified);
+        return record(endpoint, lastModifiedMillis >= 0 ? request.checkNotModified(etag, lastModifiedMillis)
+                : request.checkNotModified(etag));
+    }
+
+    public boolean notModified(ServerWebExchange exchange, String endpoint, String etag, Instant lastModified) {
+        long lastModifiedMillis = lastModifiedHeader(lastModified);
+        return record(endpoint, lastModifiedMillis >= 0
+                ? exchange.checkNotModified(etag, Instant.ofEpochMilli(lastModifiedMillis))
+                : exchange.checkNotModified(etag));
+    }
+
+    /**
+     * 投稿のETag。公開すると公開日時が変わるため、状態の変化でも変わります
+     */
+    public static String etag(Post post) {
+        return "\"" + post.getId() + "-" + Long.toHexString(nanos(post.getUpdatedAt())) + "-"
+                + Long.toHexString(nanos(post.getPublishedAt())) + "\"";
+    }
+
+    /**
+     * 一覧のETag。同じURLでもJSONとNDJSONでは本文が異なるため、表現の種類を含めます
+     */
+    public static String etag(DataVersion version, String representation) {
+        return "\"" + Long.toHexString(version.epoch()) + "-" + version.counter() + "-" + representation + "\"";
+    }
+
+    public static Instant lastModified(Post post) {
+        Instant updatedAt = post.getUpdatedAt();
+        Instant publishedAt = post.getPublishedAt();
+        if (updatedAt == null || (publishedAt != null && publishedAt.isAfter(updatedAt))) {
+            return publishedAt;
+        }
+        return updatedAt;
+    }
+
+    /**
+     * 304 を返した割合を返します。リクエストがない場合は 0 を返します
+     */
+    public double hitRatio(String endpoint) {
+        Stats endpointStats = stats.get(endpoint);
+        return endpointStats != null ? endpointStats.hitRatio() : 0;
+    }
+
+    // 最後の変更から1秒以上経っていない場合は -1（Last-Modified を付けない）
+    private static long lastModifiedHeader(Instant lastModified) {
+        if (lastModified == null) {
+            return -1;
+        }
+        Instant seconds = lastModified.truncatedTo(ChronoUnit.SECONDS);
+        return seconds.plusSeconds(1).isAfter(Instant.now()) ? -1 : seconds.toEpochMilli();
+    }
+
+    private static long nanos(Instant instant) {
+        return instant == null ? 0 : instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private boolean record(String endpoint, boolean notModified) {
+        Stats endpointStats = stats.computeIfAbsent(endpoint, Stats::new);
+        (notModified ? endpointStats.notModified : endpointStats.full).increment();
+        return notModified;
+    }
+
+    private final class Stats {
+        final Counter notModified;
+        final Counter full;
+
+        Stats(String endpoint) {
+            notModified = Counter.builder("handson.conditional.requests")
+                    .tag("endpoint", endpoint)
+                    .tag("result", NOT_MODIFIED)
+                    .register(registry);
+            full = Counter.builder("handson.conditional.requests")
+                    .tag("endpoint", endpoint)
+                    .tag("result", FULL)
+                    .register(registry);
+            Gauge.builder("handson.conditional.hit.ratio", this, Stats::hitRatio)
+                    .tag("endpoint", endpoint)
+                    .register(registry);
+        }
+
+        double hitRatio() {
+            double total = notModified.count() + full.count();
+            return total > 0 ? notModified.count() / total : 0;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.handson.controller;
+
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * 要素を1行に1つのJSONとして書き出す（NDJSON）レスポンスを作るクラス
+ * ストリームから読み出した要素をそのままレスポンスへ書き出すため、結果の件数によらずヒープの使用量が一定です
+ *
+ * <p>書き出した内容はJSONジェネレータとサーブレットのバッファに溜まり、いっぱいになると送信されます
+ * 最初の1件は書き出した直後に送信して応答の開始を早め、その後は FLUSH_INTERVAL 件ごとに送信します
+ */
+final class NdjsonResponses {
+
+    static final int FLUSH_INTERVAL = 64;
+
+    private NdjsonResponses() {
+    }
+
+    /**
+     * ObjectMapper の設定で要素を書き出す ObjectWriter を返します
+     * 要素ごとの送信は FLUSH_INTERVAL で制御するため、書き出すたびの flush は無効にします
+     */
+    static ObjectWriter writer(ObjectMapper objectMapper) {
+        return objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * ストリームの要素をNDJSONで書き出すレスポンスを返します
+     * ストリームは書き出しを始めるときに items から受け取り、書き出し終えた後に閉じます
+     * そのため、ストリームが保持する資源（ビューなど）は応答を書き出す間だけ使われ、書き出されなかった応答では確保されません
+     */
+    static <T> ResponseEntity<StreamingResponseBody> of(ObjectWriter writer, Supplier<Stream<T>> items) {
+        StreamingResponseBody body = out -> {
+            try (Stream<T> stream = items.get(); JsonGenerator generator = writer.createGenerator(out)) {
+                // 要素の区切りは改行だけにします（既定の区切りは空白です）
+                generator.setRootValueSeparator(null);
+                Iterator<T> iterator = stream.iterator();
+                for (long count = 1; iterator.hasNext(); count++) {
+                    writer.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                    if (count == 1 || count % FLUSH_INTERVAL == 0) {
+                        generator.flush();
+                    }
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).varyBy(HttpHeaders.ACCEPT).body(body);
+    }
+}
@@ -1,23 +1,61 @@
 package com.example.handson.controller;
 
 import com.example.handson.model.Post;
+import com.example.handson.service.PostImporter;
 import com.example.handson.service.PostService;
+import com.example.handson.service.bulk.BatchResult;
+import com.example.handson.service.bulk.BulkRequest;
+import com.example.handson.service.bulk.BulkResult;
+import com.example.handson.service.bulk.ImportResult;
+import com.example.handson.service.search.RankedPost;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/posts")
 public class PostController {
     
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_BATCH_SIZE = 10000;
+    // 同じURLの一覧でも表現ごとにETagを分けます
+    static final String JSON = "json";
+    static final String NDJSON = "ndjson";
+    
     private final PostService postService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter ndjsonWriter;
+    private final ConditionalGets conditionalGets;
+    private final PostJsonCache jsonCache;
     
-    public PostController(PostService postService) {
+    public PostController(PostService postService, ObjectMapper objectMapper, ConditionalGets conditionalGets,
+            PostJsonCache jsonCache) {
         this.postService = postService;
+        this.objectMapper = objectMapper;
+        this.ndjsonWriter = NdjsonResponses.writer(objectMapper);
+        this.conditionalGets = conditionalGets;
+        this.jsonCache = jsonCache;
     }
     
     @PostMapping("/drafts")
@@ -32,36 +70,297 @@ public class PostController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdPost);
     }
     
+    /**
+     * 複数の下書きをまとめて作成します。リクエストは {"content": ...} の配列です
+     * 本文のない要素は failures に位置と理由を返し、それ以外の要素は作成します
+     */
+    @PostMapping("/drafts/batch")
+    public ResponseEntity<BatchResult> createDrafts(@RequestBody List<Map<String, String>> payload) {
+        if (payload.isEmpty() || payload.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        var contents = new ArrayList<String>(payload.size());
+        for (var item : payload) {
+            contents.add(item != null ? item.get("content") : null);
+        }
+        
+        var result = postService.createDrafts(contents);
+        var status = result.created().isEmpty() ? HttpStatus.BAD_REQUEST : HttpStatus.CREATED;
+        return ResponseEntity.status(status).body(result);
+    }
+    
+    /**
+     * NDJSON（1行に1件）の投稿を、リクエストの本文を読みながら一定件数ごとに取り込みます
+     * 各行は {"content": ..., "createdAt": ..., "publishedAt": ...} で、日時は元のデータの値をそのまま使います
+     * 形式が不正な行と長すぎる行（PostImporter.MAX_LINE_LENGTH 文字を超える行）は取り込まずに数え、
+     * 1件も取り込めなかった場合は 400 を返します
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ImportResult> importPosts(InputStream body) throws IOException {
+        var importer = new PostImporter(postService, objectMapper);
+        try (var reader = new InputStreamReader(body, StandardCharsets.UTF_8)) {
+            importer.acceptAll(reader);
+        }
+        var result = importer.finish();
+        var status = result.imported() == 0 ? HttpStatus.BAD_REQUEST : HttpStatus.CREATED;
+        return ResponseEntity.status(status).body(result);
+    }
+    
     @PutMapping("/drafts/{id}/publish")
     public ResponseEntity<Post> publishPost(@PathVariable Long id) {
+        jsonCache.invalidate(id);
         return Optional.ofNullable(postService.publishPost(id))
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
     
+    /**
+     * If-None-Match / If-Modified-Since の条件に一致する場合は、本文を返さずに 304 を返します
+     * 本文は変換済みのJSONのバイト列を PostJsonCache から取り出して、そのまま書き出します
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<Post> getPost(@PathVariable Long id) {
-        return Optional.ofNullable(postService.getPost(id))
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<byte[]> getPost(@PathVariable Long id, WebRequest request) {
+        var post = postService.getPost(id);
+        if (post == null) {
+            jsonCache.invalidate(id);
+            return ResponseEntity.notFound().build();
+        }
+        var acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        var etag = jsonCache.etag(post, acceptEncoding);
+        if (conditionalGets.notModified(request, "post", etag, ConditionalGets.lastModified(post))) {
+            return jsonCache.notModified(etag);
+        }
+        return jsonCache.response(post, etag, acceptEncoding);
     }
     
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deletePost(@PathVariable Long id) {
+        jsonCache.invalidate(id);
         return postService.deletePost(id) 
                 ? ResponseEntity.noContent().build() 
                 : ResponseEntity.notFound().build();
     }
     
+    /**
+     * IDのリスト（ids）か検索と同じ条件で指定された下書きをまとめて公開し、IDごとの結果を返します
+     */
+    @PostMapping("/bulk/publish")
+    public ResponseEntity<BulkResult> publishPosts(@RequestBody BulkRequest request) {
+        if (!isValidBulkRequest(request)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(jsonCache.invalidate(postService.publishPosts(request)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * IDのリスト（ids）か検索と同じ条件で指定された投稿をまとめて削除し、IDごとの結果を返します
+     */
+    @PostMapping("/bulk/delete")
+    public ResponseEntity<BulkResult> deletePosts(@RequestBody BulkRequest request) {
+        if (!isValidBulkRequest(request)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(jsonCache.invalidate(postService.deletePosts(request)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * 一覧は投稿の集合の版をETagにし、条件に一致する場合は一覧を取得せずに 304 を返します
+     */
     @GetMapping("/published")
-    public ResponseEntity<List<Post>> getAllPublishedPosts() {
+    public ResponseEntity<List<Post>> getAllPublishedPosts(WebRequest request) {
+        var version = postService.dataVersion();
+        var etag = ConditionalGets.etag(version, JSON);
+        if (conditionalGets.notModified(request, "published", etag, version.modifiedAt())) {
+            return notModified(etag);
+        }
         var posts = postService.getAllPublishedPosts();
-        return ResponseEntity.ok(posts);
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(posts);
     }
     
     @GetMapping("/drafts")
-    public ResponseEntity<List<Post>> getAllDraftPosts() {
+    public ResponseEntity<List<Post>> getAllDraftPosts(WebRequest request) {
+        var version = postService.dataVersion();
+        var etag = ConditionalGets.etag(version, JSON);
+        if (conditionalGets.notModified(request, "drafts", etag, version.modifiedAt())) {
+            return notModified(etag);
+        }
         var posts = postService.getAllDraftPosts();
-        return ResponseEntity.ok(posts);
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(posts);
+    }
+    
+    /**
+     * Accept: application/x-ndjson の場合は、公開済み投稿をストアから読み出しながら1行に1件ずつ書き出します
+     */
+    @GetMapping(value = "/published", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamPublishedPosts(WebRequest request) {
+        var version = postService.dataVersion();
+        var etag = ConditionalGets.etag(version, NDJSON);
+        if (conditionalGets.notModified(request, "published", etag, version.modifiedAt())) {
+            return notModified(etag);
+        }
+        return NdjsonResponses.of(ndjsonWriter, postService::streamPublishedPosts);
+    }
+    
+    @GetMapping(value = "/drafts", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamDraftPosts(WebRequest request) {
+        var version = postService.dataVersion();
+        var etag = ConditionalGets.etag(version, NDJSON);
+        if (conditionalGets.notModified(request, "drafts", etag, version.modifiedAt())) {
+            return notModified(etag);
+        }
+        return NdjsonResponses.of(ndjsonWriter, postService::streamDraftPosts);
+    }
+    
+    /**
+     * 条件に一致する投稿をIDの昇順で返します
+     * explain=true の場合は、選ばれた実行計画とステージごとの件数・所要時間も合わせて返します
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Object> searchPosts(@RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) String fromDate,
+            @RequestParam(required = false) String toDate,
+            @RequestParam(required = false) Boolean isDraft,
+            @RequestParam(required = false) Integer minWordCount,
+            @RequestParam(required = false) Integer maxWordCount,
+            @RequestParam(defaultValue = "false") boolean explain) {
+        try {
+            var result = postService.searchWithPlan(keyword, beforeId, afterId, fromDate, toDate, isDraft,
+                    minWordCount, maxWordCount);
+            return ResponseEntity.ok(explain ? result : result.posts());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
+    /**
+     * Accept: application/x-ndjson の場合は、条件に一致する投稿をIDの昇順に1行に1件ずつ書き出します
+     * 実行計画（explain）はJSONの場合だけ返します
+     */
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> streamSearchPosts(@RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) String fromDate,
+            @RequestParam(required = false) String toDate,
+            @RequestParam(required = false) Boolean isDraft,
+            @RequestParam(required = false) Integer minWordCount,
+            @RequestParam(required = false) Integer maxWordCount) {
+        try {
+            // 条件はここで検証し、ビューは書き出しを始めたときに開きます
+            var posts = postService.streamSearch(keyword, beforeId, afterId, fromDate, toDate, isDraft,
+                    minWordCount, maxWordCount);
+            return NdjsonResponses.of(ndjsonWriter, () -> posts);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+        }
+    }
+    
+    /**
+     * クエリの語をすべて含む投稿を、関連度（BM25）の高い順に最大limit件返します
+     */
+    @GetMapping("/search/ranked")
+    public ResponseEntity<List<RankedPost>> rankPosts(@RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) Boolean isDraft) {
+        if (q.isBlank() || limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(postService.rankPosts(q, limit, isDraft));
+    }
+    
+    /**
+     * 公開済み投稿を公開日時の新しい順に返します
+     * before には ISO-8601 形式の日時かエポックミリ秒を指定でき、その日時より前に公開された投稿だけを返します
+     */
+    @GetMapping("/feed")
+    public ResponseEntity<List<Post>> getFeed(@RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String before, WebRequest request) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        Instant beforeInstant;
+        try {
+            beforeInstant = parseTimestamp(before);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        var version = postService.dataVersion();
+        var etag = ConditionalGets.etag(version, JSON);
+        if (conditionalGets.notModified(request, "feed", etag, version.modifiedAt())) {
+            return notModified(etag);
+        }
+        return ResponseEntity.ok(postService.getFeed(beforeInstant, limit));
+    }
+    
+    @GetMapping(value = "/published", params = "limit")
+    public ResponseEntity<List<Post>> getPublishedPostsPage(@RequestParam int limit,
+            @RequestParam(required = false) Long cursor, WebRequest request) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        var version = postService.dataVersion();
+        var etag = ConditionalGets.etag(version, JSON);
+        if (conditionalGets.notModified(request, "published", etag, version.modifiedAt())) {
+            return notModified(etag);
+        }
+        return pageResponse(postService.getPublishedPostsPage(cursor, limit), limit);
+    }
+    
+    @GetMapping(value = "/drafts", params = "limit")
+    public ResponseEntity<List<Post>> getDraftPostsPage(@RequestParam int limit,
+            @RequestParam(required = false) Long cursor, WebRequest request) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        var version = postService.dataVersion();
+        var etag = ConditionalGets.etag(version, JSON);
+        if (conditionalGets.notModified(request, "drafts", etag, version.modifiedAt())) {
+            return notModified(etag);
+        }
+        return pageResponse(postService.getDraftPostsPage(cursor, limit), limit);
+    }
+    
+    // IDのリストと条件はどちらか一方だけを受け付けます
+    static boolean isValidBulkRequest(BulkRequest request) {
+        if (request.hasIds()) {
+            return !request.hasFilter() && request.ids().size() <= MAX_BATCH_SIZE
+                    && request.ids().stream().allMatch(Objects::nonNull);
+        }
+        return request.hasFilter();
+    }
+    
+    static Instant parseTimestamp(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        if (value.chars().allMatch(Character::isDigit)) {
+            return Instant.ofEpochMilli(Long.parseLong(value));
+        }
+        return Instant.parse(value);
+    }
+    
+    static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+    
+    // 次ページがありうる場合は、次回リクエストのcursorに渡す最後のIDをヘッダーで返します
+    static ResponseEntity<List<Post>> pageResponse(List<Post> posts, int limit) {
+        if (posts.size() < limit) {
+            return ResponseEntity.ok(posts);
+        }
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, String.valueOf(posts.get(posts.size() - 1).getId()))
+                .body(posts);
     }
 }
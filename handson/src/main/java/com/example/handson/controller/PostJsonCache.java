@@ -0,0 +1,210 @@
+package com.example.handson.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.bulk.BulkResult;
+import com.example.handson.service.cache.WindowTinyLfuCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 投稿1件のJSONをバイト列に変換したまま保持し、変更のない投稿を取得するたびにシリアライズし直さないようにするクラス
+ * 保持するバイト数の合計は handson.json-cache.max-bytes 以下で、追い出す投稿は W-TinyLFU で選びます
+ *
+ * <p>要素は投稿の ETag（IDと更新日時・公開日時）と一緒に保持し、取得した投稿の ETag と一致する場合だけ使います
+ * そのため公開や本文の変更の後に古いJSONを返すことはありません。公開・削除の際は、メモリを早く空けるために取り除きます
+ *
+ * <p>handson.json-cache.gzip.enabled=true の場合、Accept-Encoding に gzip を含むリクエストには圧縮済みのバイト列を
+ * 別の要素として保持して返します。GZIP_MIN_BYTES 未満のJSONは圧縮しません
+ * 圧縮したバイト列は別の表現のため、ETag には -gz を付けて圧縮しない表現と区別し、応答には Vary: Accept-Encoding を付けます
+ *
+ * <p>メトリクス
+ * <ul>
+ * <li>handson.json.cache.requests（result=hit|miss）: 取得の件数
+ * <li>handson.json.cache.evictions: 容量の不足で追い出した件数
+ * <li>handson.json.cache.bytes, handson.json.cache.entries: 保持しているバイト数と件数
+ * </ul>
+ */
+@Component
+public class PostJsonCache {
+
+    static final int GZIP_MIN_BYTES = 2048;
+    static final String GZIP_ETAG_SUFFIX = "-gz";
+    // バイト列以外にかかる要素ごとのメモリの概算（ノード・ETag・配列のヘッダー）
+    static final int ENTRY_OVERHEAD = 160;
+
+    private final ObjectMapper objectMapper;
+    private final boolean gzipEnabled;
+    private final WindowTinyLfuCache<CachedJson> cache;
+    private final Counter hits;
+    private final Counter misses;
+
+    public PostJsonCache(ObjectMapper objectMapper, MeterRegistry registry,
+            @Value("${handson.json-cache.max-bytes:67108864}") long maxBytes,
+            @Value("${handson.json-cache.gzip.enabled:false}") boolean gzipEnabled) {
+        this.objectMapper = objectMapper;
+        this.gzipEnabled = gzipEnabled;
+        this.cache = new WindowTinyLfuCache<>(maxBytes, json -> json.bytes().length + ENTRY_OVERHEAD);
+        this.hits = Counter.builder("handson.json.cache.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("handson.json.cache.requests").tag("result", "miss").register(registry);
+        FunctionCounter.builder("handson.json.cache.evictions", cache, WindowTinyLfuCache::evictionCount)
+                .register(registry);
+        Gauge.builder("handson.json.cache.bytes", cache, WindowTinyLfuCache::weightedSize).register(registry);
+        Gauge.builder("handson.json.cache.entries", cache, WindowTinyLfuCache::size).register(registry);
+    }
+
+    /**
+     * リクエストに返す表現の ETag を返します
+     * 圧縮を受け付けるリクエストには圧縮した表現を返すため、ConditionalGets.etag(post) に -gz を付けた ETag にします
+     * （GZIP_MIN_BYTES 未満で圧縮しなかった場合も、同じリクエストには同じ ETag を返すよう -gz を付けたままにします）
+     */
+    public String etag(Post post, String acceptEncoding) {
+        String etag = ConditionalGets.etag(post);
+        return gzip(acceptEncoding) ? etag.substring(0, etag.length() - 1) + GZIP_ETAG_SUFFIX + "\"" : etag;
+    }
+
+    /**
+     * 投稿のJSONを本文とする 200 のレスポンスを返します
+     * etag は etag(post, acceptEncoding) の値で、保持しているJSONの ETag と一致しない場合はシリアライズし直します
+     */
+    public ResponseEntity<byte[]> response(Post post, String etag, String acceptEncoding) {
+        CachedJson json = get(post, etag, gzip(acceptEncoding));
+        var builder = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).eTag(etag);
+        if (gzipEnabled) {
+            builder.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (json.gzipped()) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return builder.body(json.bytes());
+    }
+
+    /**
+     * 本文を返さない 304 のレスポンスを返します。圧縮が有効な場合は 200 と同じく Vary: Accept-Encoding を付けます
+     */
+    public ResponseEntity<byte[]> notModified(String etag) {
+        var builder = ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag);
+        if (gzipEnabled) {
+            builder.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 投稿のJSONを取り除きます。公開・削除した投稿に使います
+     */
+    public void invalidate(long id) {
+        cache.invalidate(key(id, false));
+        cache.invalidate(key(id, true));
+    }
+
+    /**
+     * 一括公開・一括削除で状態を変更した投稿のJSONを取り除き、結果をそのまま返します
+     */
+    public BulkResult invalidate(BulkResult result) {
+        for (BulkResult.Outcome outcome : result.outcomes()) {
+            if (outcome.status() == BulkResult.Status.PUBLISHED || outcome.status() == BulkResult.Status.DELETED) {
+                invalidate(outcome.id());
+            }
+        }
+        return result;
+    }
+
+    public long hitCount() {
+        return (long) hits.count();
+    }
+
+    public long missCount() {
+        return (long) misses.count();
+    }
+
+    public long evictionCount() {
+        return cache.evictionCount();
+    }
+
+    CachedJson get(Post post, String etag, boolean gzip) {
+        long key = key(post.getId(), gzip);
+        CachedJson cached = cache.get(key);
+        if (cached != null && cached.etag().equals(etag)) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        byte[] bytes = serialize(post);
+        CachedJson json = gzip && bytes.length >= GZIP_MIN_BYTES
+                ? new CachedJson(etag, gzip(bytes), true)
+                : new CachedJson(etag, bytes, false);
+        cache.put(key, json);
+        return json;
+    }
+
+    private boolean gzip(String acceptEncoding) {
+        return gzipEnabled && acceptsGzip(acceptEncoding);
+    }
+
+    // 同じ投稿の圧縮しないJSONと圧縮したJSONを別の要素にします
+    private static long key(long id, boolean gzip) {
+        return id << 1 | (gzip ? 1 : 0);
+    }
+
+    private byte[] serialize(Post post) {
+        try {
+            return objectMapper.writeValueAsBytes(post);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        var out = new ByteArrayOutputStream(bytes.length / 2);
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // gzip か * を q=0 以外で含む場合は圧縮を受け付けます
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+                continue;
+            }
+            boolean rejected = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().replace(" ", "");
+                if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+                    rejected = true;
+                }
+            }
+            if (!rejected) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    record CachedJson(String etag, byte[] bytes, boolean gzipped) {
+    }
+}
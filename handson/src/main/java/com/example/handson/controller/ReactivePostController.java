@@ -0,0 +1,269 @@
+package com.example.handson.controller;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.ReactivePostService;
+import com.example.handson.service.bulk.BatchResult;
+import com.example.handson.service.bulk.BulkRequest;
+import com.example.handson.service.bulk.BulkResult;
+import com.example.handson.service.bulk.ImportResult;
+import com.example.handson.service.search.RankedPost;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * spring.main.web-application-type=reactive で起動した場合に PostController の代わりに使う、WebFlux版のエンドポイント
+ * パスと入力の検証・ステータスコードは PostController と同じです
+ * 一覧は全件をリストにまとめず、変換した投稿から順にレスポンスへ書き出します
+ * Accept: application/x-ndjson の場合、一覧と検索は1行に1件ずつ書き出します
+ * 投稿と一覧の取得は PostController と同じETagで条件付きGETに応じます
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/posts")
+public class ReactivePostController {
+
+    private final ReactivePostService postService;
+    private final ConditionalGets conditionalGets;
+    private final PostJsonCache jsonCache;
+
+    public ReactivePostController(ReactivePostService postService, ConditionalGets conditionalGets,
+            PostJsonCache jsonCache) {
+        this.postService = postService;
+        this.conditionalGets = conditionalGets;
+        this.jsonCache = jsonCache;
+    }
+
+    @PostMapping("/drafts")
+    public Mono<ResponseEntity<Post>> createDraft(@RequestBody Map<String, String> payload) {
+        var content = payload.get("content");
+
+        if (content == null) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        return postService.createDraft(content)
+                .map(post -> ResponseEntity.status(HttpStatus.CREATED).body(post));
+    }
+
+    @PostMapping("/drafts/batch")
+    public Mono<ResponseEntity<BatchResult>> createDrafts(@RequestBody List<Map<String, String>> payload) {
+        if (payload.isEmpty() || payload.size() > PostController.MAX_BATCH_SIZE) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        var contents = new ArrayList<String>(payload.size());
+        for (var item : payload) {
+            contents.add(item != null ? item.get("content") : null);
+        }
+
+        return postService.createDrafts(contents).map(result -> {
+            var status = result.created().isEmpty() ? HttpStatus.BAD_REQUEST : HttpStatus.CREATED;
+            return ResponseEntity.status(status).body(result);
+        });
+    }
+
+    // 本文は文字列への変換の上限（maxInMemorySize）を受けないよう、読み取った分のバイト列のまま受け取ります
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<ImportResult>> importPosts(@RequestBody Flux<DataBuffer> body) {
+        return postService.importPosts(body).map(result -> {
+            var status = result.imported() == 0 ? HttpStatus.BAD_REQUEST : HttpStatus.CREATED;
+            return ResponseEntity.status(status).body(result);
+        });
+    }
+
+    @PutMapping("/drafts/{id}/publish")
+    public Mono<ResponseEntity<Post>> publishPost(@PathVariable Long id) {
+        jsonCache.invalidate(id);
+        return postService.publishPost(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // 本文は変換済みのJSONのバイト列を PostJsonCache から取り出して、そのまま書き出します
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<byte[]>> getPost(@PathVariable Long id, ServerWebExchange exchange) {
+        return postService.getPost(id)
+                .map(post -> {
+                    var acceptEncoding = exchange.getRequest().getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING);
+                    var etag = jsonCache.etag(post, acceptEncoding);
+                    return conditionalGets.notModified(exchange, "post", etag, ConditionalGets.lastModified(post))
+                            ? jsonCache.notModified(etag)
+                            : jsonCache.response(post, etag, acceptEncoding);
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    jsonCache.invalidate(id);
+                    return ResponseEntity.notFound().build();
+                }));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deletePost(@PathVariable Long id) {
+        jsonCache.invalidate(id);
+        return postService.deletePost(id)
+                .map(deleted -> deleted
+                        ? ResponseEntity.noContent().<Void>build()
+                        : ResponseEntity.notFound().<Void>build());
+    }
+
+    @PostMapping("/bulk/publish")
+    public Mono<ResponseEntity<BulkResult>> publishPosts(@RequestBody BulkRequest request) {
+        if (!PostController.isValidBulkRequest(request)) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return postService.publishPosts(request)
+                .map(result -> ResponseEntity.ok(jsonCache.invalidate(result)))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    @PostMapping("/bulk/delete")
+    public Mono<ResponseEntity<BulkResult>> deletePosts(@RequestBody BulkRequest request) {
+        if (!PostController.isValidBulkRequest(request)) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return postService.deletePosts(request)
+                .map(result -> ResponseEntity.ok(jsonCache.invalidate(result)))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    @GetMapping("/published")
+    public Mono<ResponseEntity<Flux<Post>>> getAllPublishedPosts(ServerWebExchange exchange) {
+        return listResponse(exchange, "published", PostController.JSON, MediaType.APPLICATION_JSON,
+                postService::getPublishedPosts);
+    }
+
+    @GetMapping("/drafts")
+    public Mono<ResponseEntity<Flux<Post>>> getAllDraftPosts(ServerWebExchange exchange) {
+        return listResponse(exchange, "drafts", PostController.JSON, MediaType.APPLICATION_JSON,
+                postService::getDraftPosts);
+    }
+
+    @GetMapping(value = "/published", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<Flux<Post>>> streamPublishedPosts(ServerWebExchange exchange) {
+        return listResponse(exchange, "published", PostController.NDJSON, MediaType.APPLICATION_NDJSON,
+                postService::getPublishedPosts);
+    }
+
+    @GetMapping(value = "/drafts", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<Flux<Post>>> streamDraftPosts(ServerWebExchange exchange) {
+        return listResponse(exchange, "drafts", PostController.NDJSON, MediaType.APPLICATION_NDJSON,
+                postService::getDraftPosts);
+    }
+
+    @GetMapping("/search")
+    public Mono<ResponseEntity<Object>> searchPosts(@RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) String fromDate,
+            @RequestParam(required = false) String toDate,
+            @RequestParam(required = false) Boolean isDraft,
+            @RequestParam(required = false) Integer minWordCount,
+            @RequestParam(required = false) Integer maxWordCount,
+            @RequestParam(defaultValue = "false") boolean explain) {
+        return postService.search(keyword, beforeId, afterId, fromDate, toDate, isDraft, minWordCount, maxWordCount)
+                .map(result -> ResponseEntity.<Object>ok(explain ? result : result.posts()))
+                .onErrorResume(IllegalArgumentException.class,
+                        e -> Mono.just(ResponseEntity.badRequest().body(e.getMessage())));
+    }
+
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<Object>> streamSearchPosts(@RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) String fromDate,
+            @RequestParam(required = false) String toDate,
+            @RequestParam(required = false) Boolean isDraft,
+            @RequestParam(required = false) Integer minWordCount,
+            @RequestParam(required = false) Integer maxWordCount) {
+        return postService.streamSearch(keyword, beforeId, afterId, fromDate, toDate, isDraft, minWordCount,
+                        maxWordCount)
+                .map(posts -> ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).<Object>body(posts))
+                .onErrorResume(IllegalArgumentException.class,
+                        e -> Mono.just(ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN)
+                                .body(e.getMessage())));
+    }
+
+    @GetMapping("/search/ranked")
+    public Mono<ResponseEntity<Flux<RankedPost>>> rankPosts(@RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) Boolean isDraft) {
+        if (q.isBlank() || limit < 1 || limit > PostController.MAX_PAGE_SIZE) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return Mono.just(ResponseEntity.ok(postService.rankPosts(q, limit, isDraft)));
+    }
+
+    @GetMapping("/feed")
+    public Mono<ResponseEntity<Flux<Post>>> getFeed(@RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String before, ServerWebExchange exchange) {
+        if (limit < 1 || limit > PostController.MAX_PAGE_SIZE) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        Instant beforeInstant;
+        try {
+            beforeInstant = PostController.parseTimestamp(before);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return listResponse(exchange, "feed", PostController.JSON, MediaType.APPLICATION_JSON,
+                () -> postService.getFeed(beforeInstant, limit));
+    }
+
+    // ページはX-Next-Cursorヘッダーを決めるために件数が必要なため、limit件までのリストで返します
+    @GetMapping(value = "/published", params = "limit")
+    public Mono<ResponseEntity<List<Post>>> getPublishedPostsPage(@RequestParam int limit,
+            @RequestParam(required = false) Long cursor, ServerWebExchange exchange) {
+        if (limit < 1 || limit > PostController.MAX_PAGE_SIZE) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        var version = postService.dataVersion();
+        var etag = ConditionalGets.etag(version, PostController.JSON);
+        if (conditionalGets.notModified(exchange, "published", etag, version.modifiedAt())) {
+            return Mono.just(PostController.notModified(etag));
+        }
+        return postService.getPublishedPostsPage(cursor, limit)
+                .map(posts -> PostController.pageResponse(posts, limit));
+    }
+
+    @GetMapping(value = "/drafts", params = "limit")
+    public Mono<ResponseEntity<List<Post>>> getDraftPostsPage(@RequestParam int limit,
+            @RequestParam(required = false) Long cursor, ServerWebExchange exchange) {
+        if (limit < 1 || limit > PostController.MAX_PAGE_SIZE) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        var version = postService.dataVersion();
+        var etag = ConditionalGets.etag(version, PostController.JSON);
+        if (conditionalGets.notModified(exchange, "drafts", etag, version.modifiedAt())) {
+            return Mono.just(PostController.notModified(etag));
+        }
+        return postService.getDraftPostsPage(cursor, limit)
+                .map(posts -> PostController.pageResponse(posts, limit));
+    }
+
+    /**
+     * 投稿の集合の版をETagにし、条件に一致する場合は一覧を取得せずに 304 を返します
+     */
+    private Mono<ResponseEntity<Flux<Post>>> listResponse(ServerWebExchange exchange, String endpoint,
+            String representation, MediaType mediaType, Supplier<Flux<Post>> posts) {
+        var version = postService.dataVersion();
+        var etag = ConditionalGets.etag(version, representation);
+        if (conditionalGets.notModified(exchange, endpoint, etag, version.modifiedAt())) {
+            return Mono.just(PostController.notModified(etag));
+        }
+        return Mono.just(ResponseEntity.ok().contentType(mediaType).varyBy(HttpHeaders.ACCEPT).body(posts.get()));
+    }
+}
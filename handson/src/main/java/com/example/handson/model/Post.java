@@ -1,6 +1,10 @@
 package com.example.handson.model;
 
 import java.time.Instant;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 public class Post {
     private Long id;
@@ -9,6 +13,10 @@ public class Post {
     private Instant updatedAt;
     private Instant publishedAt;
     private boolean isDraft;
+    // 本文の単語数。本文の設定時に一度だけ数え、検索時に本文を再分割しないようにします
+    private int wordCount;
+    // 本文を遅延して読み込む場合の読み込み元。最初に本文を参照したときに一度だけ呼び出します
+    private Supplier<String> contentLoader;
 
     public Post() {
         this.createdAt = Instant.now();
@@ -16,12 +24,41 @@ public class Post {
     }
 
     public Post(String content) {
+        Instant now = Instant.now();
         this.content = content;
-        this.createdAt = Instant.now();
-        this.updatedAt = Instant.now();
+        this.wordCount = countWords(content);
+        this.createdAt = now;
+        this.updatedAt = now;
         this.isDraft = true;
     }
 
+    /**
+     * すべての項目を指定して作ります。現在日時は参照しません
+     */
+    public Post(Long id, String content, Instant createdAt, Instant updatedAt, Instant publishedAt, boolean isDraft) {
+        this.id = id;
+        this.content = content;
+        this.wordCount = countWords(content);
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.publishedAt = publishedAt;
+        this.isDraft = isDraft;
+    }
+
+    /**
+     * 本文を最初に参照したとき（JSONへの変換時など）に読み込む投稿を作ります。単語数は呼び出し側で数えたものを使います
+     */
+    public Post(Long id, Supplier<String> contentLoader, int wordCount, Instant createdAt, Instant updatedAt,
+            Instant publishedAt, boolean isDraft) {
+        this.id = id;
+        this.contentLoader = contentLoader;
+        this.wordCount = wordCount;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.publishedAt = publishedAt;
+        this.isDraft = isDraft;
+    }
+
     public Long getId() {
         return id;
     }
@@ -31,14 +68,108 @@ public class Post {
     }
 
     public String getContent() {
+        if (contentLoader != null) {
+            content = contentLoader.get();
+            contentLoader = null;
+        }
         return content;
     }
 
     public void setContent(String content) {
         this.content = content;
+        this.contentLoader = null;
+        this.wordCount = countWords(content);
         this.updatedAt = Instant.now();
     }
 
+    @JsonIgnore
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * content.split("\\s+").length と同じ単語数を、正規表現や配列を使わずに数えます
+     * 本文がnullの場合は0を返します
+     */
+    public static int countWords(String content) {
+        if (content == null) {
+            return 0;
+        }
+        if (content.isEmpty()) {
+            return 1;
+        }
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < content.length(); i++) {
+            boolean whitespace = isWhitespace(content.charAt(i));
+            if (!whitespace && !inWord) {
+                words++;
+            }
+            inWord = !whitespace;
+        }
+        // 先頭が空白の場合、split は先頭に空文字列の要素を1つ含めます
+        return words > 0 && isWhitespace(content.charAt(0)) ? words + 1 : words;
+    }
+
+    /**
+     * content.toLowerCase().contains(foldedKeyword) と同じ結果を返します
+     * 通常は文字ごとに小文字化して比較するため文字列を生成せず、
+     * 小文字化が文字単位で決まらない文字やロケールの場合だけ toLowerCase にフォールバックします
+     */
+    public static boolean containsFolded(String content, String foldedKeyword) {
+        if (content == null) {
+            return false;
+        }
+        if (requiresStringFolding(content)) {
+            return content.toLowerCase().contains(foldedKeyword);
+        }
+        if (foldedKeyword.isEmpty()) {
+            return true;
+        }
+        char first = foldedKeyword.charAt(0);
+        int last = content.length() - foldedKeyword.length();
+        for (int i = 0; i <= last; i++) {
+            if (fold(content.charAt(i)) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < foldedKeyword.length() && fold(content.charAt(i + j)) == foldedKeyword.charAt(j)) {
+                j++;
+            }
+            if (j == foldedKeyword.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static char fold(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    // サロゲートペア、İ（小文字化で2文字になる）、Σ（語末で字形が変わる）と、特殊な規則を持つロケールが該当します
+    private static boolean requiresStringFolding(String content) {
+        String language = Locale.getDefault().getLanguage();
+        if (language.equals("tr") || language.equals("az") || language.equals("lt")) {
+            return true;
+        }
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (Character.isSurrogate(c) || c == '\u0130' || c == '\u03A3') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 正規表現の \s と同じ文字集合です
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -83,15 +214,8 @@ public class Post {
             return true;
         }
         
-        if (searchParams.getContentKeyword() != null && !searchParams.getContentKeyword().isEmpty()) {
-            if (this.content == null) {
-                return false;
-            }
-            
-            String contentLower = this.content.toLowerCase();
-            String keywordLower = searchParams.getContentKeyword().toLowerCase();
-            
-            if (!contentLower.contains(keywordLower)) {
+        if (searchParams.foldedContentKeyword != null && !searchParams.foldedContentKeyword.isEmpty()) {
+            if (!containsFolded(getContent(), searchParams.foldedContentKeyword)) {
                 return false;
             }
         }
@@ -113,6 +237,8 @@ public class Post {
     
     public static class SearchParams {
         private String contentKeyword;
+        // 投稿ごとに小文字化しないよう、設定時に一度だけ小文字化しておきます
+        private String foldedContentKeyword;
         private Instant publishedAfter;
         private Instant publishedBefore;
         
@@ -122,6 +248,7 @@ public class Post {
         
         public void setContentKeyword(String contentKeyword) {
             this.contentKeyword = contentKeyword;
+            this.foldedContentKeyword = contentKeyword == null ? null : contentKeyword.toLowerCase();
         }
         
         public Instant getPublishedAfter() {
@@ -159,7 +286,7 @@ public class Post {
     public String toString() {
         return "Post{" +
                 "id=" + id +
-                ", content='" + content + '\'' +
+                ", content='" + getContent() + '\'' +
                 ", isDraft=" + isDraft +
                 '}';
     }
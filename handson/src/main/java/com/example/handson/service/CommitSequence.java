@@ -0,0 +1,98 @@
+package com.example.handson.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 変更に通し番号（コミット番号）を振り、読み取りに見せてよい番号の上限を管理するクラス
+ * 書き込みは begin で番号を受け取り、変更をすべて反映してから complete を呼びます。書き込みは他の番号を待ちません
+ * visible は、それ以下の番号の変更がすべて反映済みである最大の番号を返します
+ *
+ * <p>番号は並行して振られ、終わる順序も振った順とは限りません。終わった番号は WINDOW 個の環状の配列に記録し、
+ * visible の次の番号が終わっていれば、終わった側のスレッドが visible を進めます。どちらもロックは取りません
+ * 先に振られた番号の変更（大きな一括追加など）が終わっていない間は、後の番号の変更が終わっても visible は進まないため、
+ * 読み取りはビューを開く際に awaitCompleted で、終わった番号がすべて visible に取り込まれるまで待ちます
+ * これにより、書き込みが戻った後に開いたビューには必ずその書き込みが見え、待つのは読み取りの側だけになります
+ * 同時に終わっていない番号が WINDOW 個を超える場合は、complete が配列の位置が空くまで待ちます
+ * 待つ側はスピンせずにロックの条件で待機し、visible を進めたスレッドが待っているスレッドを起こします
+ */
+final class CommitSequence {
+
+    static final int WINDOW = 4096;
+
+    private final AtomicLong last = new AtomicLong();
+    private final AtomicLong visible = new AtomicLong();
+    // 終わった番号の最大値
+    private final AtomicLong lastCompleted = new AtomicLong();
+    private final AtomicLongArray completed = new AtomicLongArray(WINDOW);
+    // visible が進むのを待っているスレッドの数。待っているスレッドがいない場合は、complete はロックを取りません
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition advanced = lock.newCondition();
+
+    long begin() {
+        return last.incrementAndGet();
+    }
+
+    void complete(long commit) {
+        // 同じ位置を使う WINDOW 個前の番号が visible に取り込まれるまでは、その位置を上書きできません
+        awaitVisible(commit - WINDOW);
+        completed.set(slot(commit), commit);
+        lastCompleted.accumulateAndGet(commit, Math::max);
+        boolean advancedVisible = false;
+        while (true) {
+            long current = visible.get();
+            if (completed.get(slot(current + 1)) != current + 1) {
+                break;
+            }
+            advancedVisible |= visible.compareAndSet(current, current + 1);
+        }
+        // 待つ側は waiters を増やしてから visible を読むため、ここで0が読めた場合は待つ側が進んだ visible を読みます
+        if (advancedVisible && waiters.get() > 0) {
+            lock.lock();
+            try {
+                advanced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * commit 以下の番号の変更がすべて反映済みになるまで待ちます
+     */
+    void awaitVisible(long commit) {
+        if (visible.get() >= commit) {
+            return;
+        }
+        waiters.incrementAndGet();
+        lock.lock();
+        try {
+            while (visible.get() < commit) {
+                advanced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * 呼び出した時点までに終わった番号がすべて visible に取り込まれるまで待ち、visible を返します
+     */
+    long awaitCompleted() {
+        awaitVisible(lastCompleted.get());
+        return visible.get();
+    }
+
+    long visible() {
+        return visible.get();
+    }
+
+    private static int slot(long commit) {
+        return (int) (commit & (WINDOW - 1));
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.handson.service;
+
+import java.time.Instant;
+
+/**
+ * 投稿の集合の版。作成・公開・削除のたびに counter が増えます
+ *
+ * @param epoch ストアごとの乱数。再起動の前後で同じ版にならないように使います
+ * @param counter 変更の回数
+ * @param modifiedAt 最後に変更された日時（変更がない場合はストアの作成日時）
+ */
+public record DataVersion(long epoch, long counter, Instant modifiedAt) {
+}
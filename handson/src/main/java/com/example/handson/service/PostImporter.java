@@ -0,0 +1,264 @@
+package com.example.handson.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.handson.service.bulk.ImportResult;
+import com.example.handson.service.bulk.ImportedPost;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * NDJSON（1行に1件のJSON）の投稿を1行ずつ、または読み取った分の本文から受け取り、MICRO_BATCH_SIZE 件ごとにまとめて取り込むクラス
+ * 保持するのは取り込み待ちの1バッチと報告用の失敗の先頭だけのため、入力の大きさによらずメモリの使用量が一定です
+ *
+ * <p>各行は {"content": ..., "createdAt": ..., "publishedAt": ...} の形式です
+ * 日時は ISO-8601 形式の文字列かエポックミリ秒の数値で指定し、publishedAt のある投稿は公開済みとして取り込みます
+ * 形式が不正な行と MAX_LINE_LENGTH 文字を超える行は取り込まずに数え、残りの行の取り込みを続けます
+ * 長すぎる行は読み飛ばすだけで保持しないため、改行のない巨大な入力でもメモリの使用量は MAX_LINE_LENGTH までです
+ *
+ * <p>1回の取り込みごとに作成し、1つのスレッドから順に呼び出します
+ * 取り込み済みのバッチは、途中で入力が途切れても取り消しません
+ */
+public class PostImporter {
+
+    public static final int MICRO_BATCH_SIZE = 1000;
+    public static final int MAX_REPORTED_FAILURES = 100;
+    public static final int MAX_LINE_LENGTH = 1 << 20;
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final PostService postService;
+    private final ObjectMapper objectMapper;
+    private final List<ImportedPost> batch = new ArrayList<>(MICRO_BATCH_SIZE);
+    private final List<ImportResult.Failure> failures = new ArrayList<>();
+    // 改行までの読み取り途中の行と、それが MAX_LINE_LENGTH 文字を超えたかどうか
+    private final StringBuilder text = new StringBuilder();
+    private boolean oversized;
+    // acceptBytes で受け取ったバイト列の復号に使います。UTF-8 の1文字は最大4バイトのため、持ち越すのは4バイトまでです
+    private CharsetDecoder decoder;
+    private CharBuffer decoded;
+    private final ByteBuffer carry = ByteBuffer.allocate(4);
+    private final long startNanos = System.nanoTime();
+    private long line;
+    private long imported;
+    private long published;
+    private long rejected;
+
+    public PostImporter(PostService postService, ObjectMapper objectMapper) {
+        this.postService = postService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 入力を最後まで読み、改行（\n、直前の \r は除きます）で区切った行を順に accept と同じように取り込みます
+     * MAX_LINE_LENGTH 文字を超えた行は、その時点で読み取った分を捨てて次の改行まで読み飛ばします
+     */
+    public void acceptAll(Reader reader) throws IOException {
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            acceptChars(buffer, 0, read);
+        }
+        acceptLastLine();
+    }
+
+    /**
+     * UTF-8 の本文の続きを受け取り、改行で区切った行を acceptAll と同じように取り込みます
+     * 文字の途中で区切られたバイトは次の呼び出しに持ち越し、不正なバイト列は InputStreamReader と同じく置換文字にします
+     * 改行で終わらない最後の行は finish で取り込みます
+     */
+    public void acceptBytes(ByteBuffer bytes) {
+        if (decoder == null) {
+            decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            decoded = CharBuffer.allocate(READ_BUFFER_SIZE);
+        }
+        // 前回から持ち越した文字の途中のバイトは、1文字になるまで1バイトずつ足して先に復号します
+        while (carry.position() > 0 && bytes.hasRemaining()) {
+            carry.put(bytes.get()).flip();
+            decode(carry, false);
+            carry.compact();
+        }
+        decode(bytes, false);
+        carry.put(bytes);
+    }
+
+    private void decode(ByteBuffer bytes, boolean endOfInput) {
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, decoded, endOfInput);
+            acceptDecoded();
+        } while (result.isOverflow());
+    }
+
+    private void acceptDecoded() {
+        decoded.flip();
+        acceptChars(decoded.array(), 0, decoded.limit());
+        decoded.clear();
+    }
+
+    // 改行ごとに行を取り込み、改行の後ろの残りは次の呼び出しまで text に持ち越します
+    private void acceptChars(char[] buffer, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (buffer[i] != '\n') {
+                continue;
+            }
+            if (oversized || !append(text, buffer, start, i)) {
+                rejectOversized();
+            } else {
+                int last = text.length() > 0 && text.charAt(text.length() - 1) == '\r' ? text.length() - 1
+                        : text.length();
+                accept(text.substring(0, last));
+            }
+            text.setLength(0);
+            oversized = false;
+            start = i + 1;
+        }
+        oversized = oversized || !append(text, buffer, start, end);
+    }
+
+    // 改行で終わらない最後の行
+    private void acceptLastLine() {
+        if (oversized) {
+            rejectOversized();
+        } else if (text.length() > 0) {
+            accept(text.toString());
+        }
+        text.setLength(0);
+        oversized = false;
+    }
+
+    // 追加すると MAX_LINE_LENGTH 文字（と行末の \r）を超える場合は、読み取った分を捨てて false を返します
+    private static boolean append(StringBuilder text, char[] buffer, int start, int end) {
+        if (text.length() + end - start > MAX_LINE_LENGTH + 1) {
+            text.setLength(0);
+            text.trimToSize();
+            return false;
+        }
+        text.append(buffer, start, end - start);
+        return true;
+    }
+
+    /**
+     * 1行を読み取り、バッチがいっぱいになったら取り込みます。空行は無視し、MAX_LINE_LENGTH 文字を超える行は不正な行として数えます
+     */
+    public void accept(String text) {
+        if (text.length() > MAX_LINE_LENGTH) {
+            rejectOversized();
+            return;
+        }
+        line++;
+        if (text.isBlank()) {
+            return;
+        }
+        ImportedPost post;
+        try {
+            post = parse(text);
+        } catch (IllegalArgumentException e) {
+            reject(e.getMessage());
+            return;
+        }
+        batch.add(post);
+        if (batch.size() >= MICRO_BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * acceptBytes で受け取った最後の行と残りのバッチを取り込み、結果を返します
+     */
+    public ImportResult finish() {
+        if (decoder != null) {
+            carry.flip();
+            decode(carry, true);
+            carry.clear();
+            decoder.flush(decoded);
+            acceptDecoded();
+        }
+        acceptLastLine();
+        flush();
+        long elapsedNanos = System.nanoTime() - startNanos;
+        double postsPerSecond = elapsedNanos > 0 ? imported * 1e9 / elapsedNanos : 0;
+        return new ImportResult(imported, published, rejected, List.copyOf(failures), elapsedNanos / 1_000_000,
+                postsPerSecond);
+    }
+
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        postService.importPosts(batch);
+        for (ImportedPost post : batch) {
+            if (post.isPublished()) {
+                published++;
+            }
+        }
+        imported += batch.size();
+        batch.clear();
+    }
+
+    private void rejectOversized() {
+        line++;
+        reject("line exceeds " + MAX_LINE_LENGTH + " characters");
+    }
+
+    private void reject(String message) {
+        rejected++;
+        if (failures.size() < MAX_REPORTED_FAILURES) {
+            failures.add(new ImportResult.Failure(line, message));
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException JSONとして読めない場合、本文がない場合、日時の形式が不正な場合
+     */
+    private ImportedPost parse(String text) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(text);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("invalid JSON: " + e.getOriginalMessage());
+        }
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("each line must be a JSON object");
+        }
+        JsonNode content = node.get("content");
+        if (content == null || !content.isTextual()) {
+            throw new IllegalArgumentException("content is required");
+        }
+        return new ImportedPost(content.asText(), timestamp(node, "createdAt"), timestamp(node, "publishedAt"));
+    }
+
+    private static Instant timestamp(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        if (value.isIntegralNumber()) {
+            return Instant.ofEpochMilli(value.asLong());
+        }
+        if (value.isTextual()) {
+            try {
+                return Instant.parse(value.asText());
+            } catch (DateTimeParseException e) {
+                // 下で不正な形式として扱います
+            }
+        }
+        throw new IllegalArgumentException(field + " must be an ISO-8601 timestamp or epoch milliseconds: " + value);
+    }
+}
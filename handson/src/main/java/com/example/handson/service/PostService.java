@@ -1,109 +1,534 @@
 package com.example.handson.service;
 
-import java.util.Date;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
 import com.example.handson.model.Post;
+import com.example.handson.service.bulk.BatchResult;
+import com.example.handson.service.bulk.BulkRequest;
+import com.example.handson.service.bulk.BulkResult;
+import com.example.handson.service.bulk.ImportedPost;
+import com.example.handson.service.content.OffHeapContentStore;
+import com.example.handson.service.index.KeywordIndex;
+import com.example.handson.service.persistence.LogRecord;
+import com.example.handson.service.persistence.SnapshotStore;
+import com.example.handson.service.persistence.WriteAheadLog;
+import com.example.handson.service.search.PostQuery;
+import com.example.handson.service.search.QueryPlanner;
+import com.example.handson.service.search.QueryResult;
+import com.example.handson.service.search.RankedPost;
+import com.example.handson.service.search.SearchResultCache;
 
 @Service
 public class PostService {
+    private static final int RESTORE_BATCH_SIZE = 10_000;
+    public static final long DEFAULT_SEARCH_CACHE_BYTES = 16L << 20;
+
     // デモ用にシンプルなインメモリストレージを使用しています
-    private final Map<Long, Post> posts = new ConcurrentHashMap<>();
+    private final PostStore store;
+    private final QueryPlanner queryPlanner;
+    // 検索結果のキャッシュが無効の場合はnull
+    private final SearchResultCache searchCache;
     private final AtomicLong idGenerator = new AtomicLong(1L);
+    // 永続化が無効の場合はnull
+    private final WriteAheadLog writeAheadLog;
+    private final SnapshotStore snapshotStore;
+    // 記録と反映の間（読み取りロック）と、スナップショットのためのログの世代の切り替え（書き込みロック）を排他にします
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
 
-    public List<Post> searchPostsWithFilters(String keyword, Long beforeId, Long afterId, String fromDate,
-            String toDate, Boolean isDraft, Integer minWordCount, Integer maxWordCount) {
-        List<Post> result = new java.util.ArrayList<>();
-        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd");
-        java.util.Date fromD = null;
-        java.util.Date toD = null;
+    public PostService() {
+        this(null, null);
+    }
+
+    public PostService(@Nullable WriteAheadLog writeAheadLog, @Nullable SnapshotStore snapshotStore) {
+        this(writeAheadLog, snapshotStore, null);
+    }
+
+    public PostService(@Nullable WriteAheadLog writeAheadLog, @Nullable SnapshotStore snapshotStore,
+            @Nullable OffHeapContentStore contentStore) {
+        this(writeAheadLog, snapshotStore, contentStore, DEFAULT_SEARCH_CACHE_BYTES);
+    }
+
+    /**
+     * 書き込み先行ログが指定された場合は、最新のスナップショットとそれ以降のログを再生して投稿とIDの採番を復元します
+     * スナップショットはログと組み合わせる場合だけ使用します
+     * ヒープ外のストアが指定された場合は、投稿の本文をそちらに保持します
+     * searchCacheBytes は検索結果のキャッシュに保持する量の上限で、0の場合はキャッシュしません
+     */
+    @Autowired
+    public PostService(@Nullable WriteAheadLog writeAheadLog, @Nullable SnapshotStore snapshotStore,
+            @Nullable OffHeapContentStore contentStore,
+            @Value("${handson.search-cache.max-bytes:16777216}") long searchCacheBytes) {
+        this.store = new PostStore(contentStore);
+        this.queryPlanner = new QueryPlanner(store);
+        this.searchCache = searchCacheBytes > 0 ? new SearchResultCache(store, queryPlanner, searchCacheBytes) : null;
+        this.writeAheadLog = writeAheadLog;
+        this.snapshotStore = writeAheadLog != null ? snapshotStore : null;
+        if (writeAheadLog != null) {
+            long generation = 0;
+            if (this.snapshotStore != null) {
+                Optional<SnapshotStore.Snapshot> snapshot = this.snapshotStore.loadLatest();
+                if (snapshot.isPresent()) {
+                    restore(snapshot.get());
+                    generation = snapshot.get().generation();
+                }
+            }
+            writeAheadLog.replay(generation, this::apply);
+        }
+    }
+
+    /**
+     * 現在の投稿をスナップショットとして保存し、不要になった古いログとスナップショットを削除します
+     * 書き込みを待たせるのはログの世代を切り替える間だけで、投稿の書き出し中の更新は新しい世代のログに記録されます
+     */
+    public void snapshot() {
+        if (snapshotStore == null) {
+            return;
+        }
+        snapshotLock.lock();
         try {
-            if (fromDate != null && !fromDate.isEmpty())
-                fromD = sdf.parse(fromDate);
-            if (toDate != null && !toDate.isEmpty())
-                toD = sdf.parse(toDate);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        for (Map.Entry<Long, Post> entry : posts.entrySet()) {
-            Post p = entry.getValue();
-            boolean match = true;
-            if (isDraft != null && p.isDraft() != isDraft)
-                match = false;
-            if (match && keyword != null && !keyword.isEmpty()) {
-                if (p.getContent() == null || !p.getContent().toLowerCase().contains(keyword.toLowerCase()))
-                    match = false;
+            long generation;
+            checkpointLock.writeLock().lock();
+            try {
+                generation = writeAheadLog.rotate();
+            } finally {
+                checkpointLock.writeLock().unlock();
             }
-            if (match && beforeId != null) {
-                if (p.getId() >= beforeId)
-                    match = false;
+            // ビューの時点は途中の書き込みで止まることがあるため、切り替え前に反映した変更を必ず含むよう最新の投稿を書き出します
+            snapshotStore.save(generation, idGenerator.get(), store.all());
+            snapshotStore.deleteBefore(generation);
+            writeAheadLog.deleteSegmentsBefore(generation);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    public List<Post> searchPostsWithFilters(String keyword, Long beforeId, Long afterId, String fromDate,
+            String toDate, Boolean isDraft, Integer minWordCount, Integer maxWordCount) {
+        return searchWithPlan(keyword, beforeId, afterId, fromDate, toDate, isDraft, minWordCount, maxWordCount)
+                .posts();
+    }
+
+    /**
+     * 検索条件ごとの推定件数から実行計画を立てて検索し、結果と実行計画を返します
+     *
+     * @throws IllegalArgumentException 日付の形式が不正な場合、または単語数が負の場合
+     */
+    public QueryResult searchWithPlan(String keyword, Long beforeId, Long afterId, String fromDate,
+            String toDate, Boolean isDraft, Integer minWordCount, Integer maxWordCount) {
+        return search(PostQuery.of(keyword, beforeId, afterId, fromDate, toDate, isDraft, minWordCount,
+                maxWordCount));
+    }
+
+    /**
+     * 同じ条件の結果を保持している場合、その後の変更が結果に影響しなければ走査せずに返します
+     */
+    public QueryResult search(PostQuery query) {
+        return searchCache != null ? searchCache.execute(query) : queryPlanner.execute(query);
+    }
+
+    /**
+     * searchWithPlan と同じ条件で検索し、一致した投稿をIDの昇順で1件ずつ変換しながら返します
+     * 検索の時点を固定するビューは要素を読み始めた時点で開き、ストリームを閉じたときに閉じます
+     *
+     * @throws IllegalArgumentException 日付の形式が不正な場合、または単語数が負の場合（ストリームを返す前に発生します）
+     */
+    public Stream<Post> streamSearch(String keyword, Long beforeId, Long afterId, String fromDate,
+            String toDate, Boolean isDraft, Integer minWordCount, Integer maxWordCount) {
+        return queryPlanner.stream(PostQuery.of(keyword, beforeId, afterId, fromDate, toDate, isDraft, minWordCount,
+                maxWordCount));
+    }
+
+    /**
+     * クエリの語をすべて含む投稿を、BM25による関連度の高い順に最大limit件返します
+     * 日本語の本文も文字n-gramで照合します
+     */
+    public List<RankedPost> rankPosts(String query, int limit, Boolean isDraft) {
+        try (PostStore.ReadView view = store.openView()) {
+            LongPredicate inPartition = id -> {
+                StoredPost post = view.get(id);
+                return post != null && (isDraft == null || post.isDraft() == isDraft);
+            };
+            List<RankedPost> result = new ArrayList<>();
+            for (KeywordIndex.Scored scored : store.keywordIndex().rank(query, limit, inPartition)) {
+                StoredPost post = view.get(scored.id());
+                if (post != null) {
+                    result.add(new RankedPost(post.toPost(), scored.score()));
+                }
             }
-            if (match && afterId != null) {
-                if (p.getId() <= afterId)
-                    match = false;
+            return result;
+        }
+    }
+
+    public Post createDraft(String content) {
+        StoredPost post = StoredPost.draft(idGenerator.getAndIncrement(), content, Instant.now());
+        // 公開・削除のレコードが作成のレコードより先に記録されないよう、作成は追加する前に記録します
+        long position;
+        checkpointLock.readLock().lock();
+        try {
+            position = appendToLog(List.of(LogRecord.create(post)));
+            store.insert(post);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        awaitDurable(position);
+        return post.toPost();
+    }
+    
+    /**
+     * 複数の下書きをまとめて作成します
+     * 本文がnullの要素は作成せずに失敗として返し、残りの要素だけを作成します
+     * IDは有効な要素の件数分を1回のアトミック操作で連続して確保します
+     */
+    public BatchResult createDrafts(List<String> contents) {
+        List<BatchResult.Failure> failures = new ArrayList<>();
+        for (int i = 0; i < contents.size(); i++) {
+            if (contents.get(i) == null) {
+                failures.add(new BatchResult.Failure(i, "content is required"));
             }
-            if (match && fromD != null) {
-                if (p.getCreatedAt() == null || p.getCreatedAt().isBefore(fromD.toInstant()))
-                    match = false;
+        }
+        int valid = contents.size() - failures.size();
+        long nextId = idGenerator.getAndAdd(valid);
+        Instant now = Instant.now();
+        List<StoredPost> created = new ArrayList<>(valid);
+        for (String content : contents) {
+            if (content != null) {
+                created.add(StoredPost.draft(nextId++, content, now));
             }
-            if (match && toD != null) {
-                if (p.getCreatedAt() == null || p.getCreatedAt().isAfter(toD.toInstant()))
-                    match = false;
+        }
+        List<LogRecord> records = new ArrayList<>(created.size());
+        for (StoredPost post : created) {
+            records.add(LogRecord.create(post));
+        }
+        long position;
+        checkpointLock.readLock().lock();
+        try {
+            position = appendToLog(records);
+            store.insertAll(created);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        awaitDurable(position);
+        List<Post> posts = new ArrayList<>(created.size());
+        for (StoredPost post : created) {
+            posts.add(post.toPost());
+        }
+        return new BatchResult(posts, failures);
+    }
+    
+    /**
+     * 元の作成日時と公開日時のまま、投稿をまとめて取り込みます
+     * 公開日時のある投稿は公開済みとして追加し、ログには作成と公開のレコードを続けて記録します
+     * IDは件数分を1回のアトミック操作で連続して確保します
+     */
+    public void importPosts(List<ImportedPost> posts) {
+        long nextId = idGenerator.getAndAdd(posts.size());
+        Instant now = Instant.now();
+        List<StoredPost> imported = new ArrayList<>(posts.size());
+        List<LogRecord> records = new ArrayList<>(posts.size() * 2);
+        for (ImportedPost post : posts) {
+            StoredPost stored = StoredPost.draft(nextId++, post.content(),
+                    post.createdAt() != null ? post.createdAt() : now);
+            records.add(LogRecord.create(stored));
+            if (post.isPublished()) {
+                stored = stored.publish(post.publishedAt());
+                records.add(LogRecord.publish(stored));
             }
-            if (match && minWordCount != null) {
-                if (p.getContent() == null || p.getContent().split("\\s+").length < minWordCount)
-                    match = false;
+            imported.add(stored);
+        }
+        long position;
+        checkpointLock.readLock().lock();
+        try {
+            position = appendToLog(records);
+            store.insertAll(imported);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        awaitDurable(position);
+    }
+    
+    public Post publishPost(Long id) {
+        StoredPost[] published = new StoredPost[1];
+        awaitDurable(publishAndLog(List.of(id), published));
+        return published[0] != null ? published[0].toPost() : null;
+    }
+    
+    public boolean deletePost(Long id) {
+        StoredPost[] removed = new StoredPost[1];
+        awaitDurable(deleteAndLog(List.of(id), removed));
+        return removed[0] != null;
+    }
+    
+    /**
+     * 指定されたIDの下書きをまとめて公開し、IDごとの結果を返します（公開日時はすべて同じになります）
+     */
+    public BulkResult publishPosts(List<Long> ids) {
+        StoredPost[] published = new StoredPost[ids.size()];
+        awaitDurable(publishAndLog(ids, published));
+        List<BulkResult.Outcome> outcomes = new ArrayList<>(ids.size());
+        for (int i = 0; i < published.length; i++) {
+            Long id = ids.get(i);
+            BulkResult.Status status = published[i] != null ? BulkResult.Status.PUBLISHED
+                    : store.get(id) != null ? BulkResult.Status.NOT_DRAFT : BulkResult.Status.NOT_FOUND;
+            outcomes.add(new BulkResult.Outcome(id, status));
+        }
+        return BulkResult.of(outcomes);
+    }
+    
+    /**
+     * 指定されたIDの投稿をまとめて削除し、IDごとの結果を返します
+     */
+    public BulkResult deletePosts(List<Long> ids) {
+        StoredPost[] removed = new StoredPost[ids.size()];
+        awaitDurable(deleteAndLog(ids, removed));
+        List<BulkResult.Outcome> outcomes = new ArrayList<>(ids.size());
+        for (int i = 0; i < removed.length; i++) {
+            outcomes.add(new BulkResult.Outcome(ids.get(i),
+                    removed[i] != null ? BulkResult.Status.DELETED : BulkResult.Status.NOT_FOUND));
+        }
+        return BulkResult.of(outcomes);
+    }
+    
+    /**
+     * 下書きをストアで公開してから、公開に成功した投稿の公開のレコードを記録します
+     * 公開した投稿を published に格納し、記録したログの位置を返します（呼び出し側は戻る前に永続化を待ちます）
+     * 記録するのはストアの置き換えに成功した版なので、同じ投稿の公開が競合しても、記録した公開日時と反映した公開日時は一致します
+     * 作成は追加より先に記録するため、公開のレコードは必ず作成のレコードより後になります
+     * 削除と競合して削除のレコードより後に記録された場合も、再生では削除済みの投稿の公開として無視されるため、結果は一致します
+     */
+    private long publishAndLog(List<Long> ids, StoredPost[] published) {
+        checkLogOpen();
+        checkpointLock.readLock().lock();
+        try {
+            StoredPost[] applied = store.publishAll(ids, Instant.now());
+            List<LogRecord> records = new ArrayList<>();
+            for (StoredPost post : applied) {
+                if (post != null) {
+                    records.add(LogRecord.publish(post));
+                }
             }
-            if (match && maxWordCount != null) {
-                if (p.getContent() == null || p.getContent().split("\\s+").length > maxWordCount)
-                    match = false;
+            System.arraycopy(applied, 0, published, 0, applied.length);
+            return appendToLog(records);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * 投稿をストアから削除してから、削除できた投稿の削除のレコードを記録します
+     * 削除した投稿を removed に格納し、記録したログの位置を返します（呼び出し側は戻る前に永続化を待ちます）
+     * 作成は追加より先に記録するため、同じIDの作成と競合しても、削除のレコードは必ず作成のレコードより後になります
+     */
+    private long deleteAndLog(List<Long> ids, StoredPost[] removed) {
+        checkLogOpen();
+        checkpointLock.readLock().lock();
+        try {
+            StoredPost[] applied = store.removeAll(ids);
+            List<LogRecord> records = new ArrayList<>();
+            for (StoredPost post : applied) {
+                if (post != null) {
+                    records.add(LogRecord.delete(post.id()));
+                }
             }
-            if (match)
-                result.add(p);
+            System.arraycopy(applied, 0, removed, 0, applied.length);
+            return appendToLog(records);
+        } finally {
+            checkpointLock.readLock().unlock();
         }
-        return result;
     }
-
-    public Post createDraft(String content) {
-        Post post = new Post(content);
-        post.setId(idGenerator.getAndIncrement());
-        posts.put(post.getId(), post);
-        return post;
+    
+    /**
+     * IDのリストか検索条件で指定された下書きをまとめて公開します
+     *
+     * @throws IllegalArgumentException 検索条件が不正な場合
+     */
+    public BulkResult publishPosts(BulkRequest request) {
+        return publishPosts(request.hasIds() ? request.ids() : matchingIds(request.toQuery(true)));
     }
     
-    public Post publishPost(Long id) {
-        Post post = posts.get(id);
-        if (post != null && post.isDraft()) {
-            post.setDraft(false);
-            post.setPublishedAt(new Date().toInstant());
-            return post;
+    /**
+     * IDのリストか検索条件で指定された投稿をまとめて削除します
+     *
+     * @throws IllegalArgumentException 検索条件が不正な場合
+     */
+    public BulkResult deletePosts(BulkRequest request) {
+        return deletePosts(request.hasIds() ? request.ids() : matchingIds(request.toQuery(null)));
+    }
+    
+    // 永続化が無効の場合や記録するレコードがない場合は -1 を返します
+    private long appendToLog(List<LogRecord> records) {
+        if (writeAheadLog == null || records.isEmpty()) {
+            return -1;
         }
-        return null;
+        return writeAheadLog.appendAll(records);
     }
     
-    public boolean deletePost(Long id) {
-        return posts.remove(id) != null;
+    // 反映してから記録する変更を、記録できないと分かっている状態では反映しません
+    private void checkLogOpen() {
+        if (writeAheadLog != null) {
+            writeAheadLog.checkOpen();
+        }
+    }
+    
+    private void awaitDurable(long position) {
+        if (position >= 0) {
+            writeAheadLog.awaitDurable(position);
+        }
+    }
+    
+    private void restore(SnapshotStore.Snapshot snapshot) {
+        List<StoredPost> posts = snapshot.posts();
+        // キーワードインデックスの一括登録で一時的に使うメモリを抑えるため、分割して追加します
+        for (int from = 0; from < posts.size(); from += RESTORE_BATCH_SIZE) {
+            store.insertAll(posts.subList(from, Math.min(posts.size(), from + RESTORE_BATCH_SIZE)));
+        }
+        idGenerator.accumulateAndGet(snapshot.nextId(), Math::max);
+    }
+    
+    /**
+     * ログのレコードを1件反映します。既に反映済みの状態に対して再度適用しても結果は変わりません
+     */
+    private void apply(LogRecord record) {
+        switch (record.type()) {
+            case CREATE -> {
+                if (store.get(record.id()) == null) {
+                    store.insert(StoredPost.draft(record.id(), record.content(), record.timestamp()));
+                }
+                idGenerator.accumulateAndGet(record.id() + 1, Math::max);
+            }
+            case PUBLISH -> store.publish(record.id(), record.timestamp());
+            case DELETE -> store.remove(record.id());
+        }
+    }
+    
+    // 対象のIDだけが必要なため、検索結果のキャッシュを通さず、投稿をAPIで返す形にも変換しません
+    private List<Long> matchingIds(PostQuery query) {
+        return queryPlanner.ids(query);
+    }
+    
+    /**
+     * 投稿の集合の版を返します。一覧の応答が前回から変わったかどうかの判定に使います
+     */
+    public DataVersion dataVersion() {
+        return store.version();
     }
     
     public Post getPost(Long id) {
-        return posts.get(id);
+        StoredPost post = store.get(id);
+        return post != null ? post.toPost() : null;
     }
     
+    /**
+     * 公開済み投稿をIDの昇順で返します。一覧は1つの時点のもので、作成中に公開・削除された投稿は含みません
+     */
     public List<Post> getAllPublishedPosts() {
-        return posts.values().stream()
-                .filter(post -> !post.isDraft())
-                .collect(Collectors.toList());
+        try (PostStore.ReadView view = store.openView()) {
+            return toPosts(view.scan(false, null, null), store.publishedCount());
+        }
     }
     
     public List<Post> getAllDraftPosts() {
-        return posts.values().stream()
-                .filter(Post::isDraft)
-                .collect(Collectors.toList());
+        try (PostStore.ReadView view = store.openView()) {
+            return toPosts(view.scan(true, null, null), store.draftCount());
+        }
+    }
+    
+    /**
+     * 公開済み投稿をIDの昇順で、1件ずつ変換しながら返します
+     * 全件のリストを作らないため、要素を順に書き出す応答に使います
+     * 返す投稿は読み始めた時点のもので、その時点のビューはストリームを閉じるまで開いたままになります
+     */
+    public Stream<Post> streamPublishedPosts() {
+        return stream(false);
+    }
+    
+    /**
+     * 下書き投稿をIDの昇順で、1件ずつ変換しながら返します
+     */
+    public Stream<Post> streamDraftPosts() {
+        return stream(true);
+    }
+    
+    private Stream<Post> stream(boolean draft) {
+        return store.streamInView(view -> StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                view.scan(draft, null, null), Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .map(StoredPost::toPost));
+    }
+    
+    // expectedSize は最新の件数で、ビューの時点の件数とは異なることがあります
+    private static List<Post> toPosts(Iterator<StoredPost> posts, long expectedSize) {
+        List<Post> result = new ArrayList<>((int) Math.min(expectedSize, Integer.MAX_VALUE - 8));
+        posts.forEachRemaining(post -> result.add(post.toPost()));
+        return result;
+    }
+    
+    /**
+     * 検索条件にマッチする公開済み投稿を返します
+     * 公開日時の範囲が指定されている場合は公開日時インデックスの範囲検索で候補を絞り込みます
+     */
+    public List<Post> searchPublishedPosts(Post.SearchParams searchParams) {
+        return search(PostQuery.from(searchParams)).posts();
+    }
+    
+    /**
+     * before より前に公開された投稿を、公開日時の新しい順に最大limit件返します（beforeは省略可）
+     * 公開日時インデックスを新しい方から辿るため、全件の走査や並べ替えは行いません
+     */
+    public List<Post> getFeed(Instant before, int limit) {
+        List<Post> result = new ArrayList<>();
+        try (PostStore.ReadView view = store.openView()) {
+            // インデックスには、ビューの時点では未公開の投稿や削除済みの投稿も残っているため、limit件が揃うまで辿ります
+            Iterator<Long> ids = store.publishedAtIndex().latest(before);
+            while (ids.hasNext() && result.size() < limit) {
+                StoredPost post = view.get(ids.next());
+                if (post != null && !post.isDraft()) {
+                    result.add(post.toPost());
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * 公開済み投稿をIDの昇順で、cursorより大きいIDから最大limit件返します（キーセットページング）
+     */
+    public List<Post> getPublishedPostsPage(Long cursor, int limit) {
+        return page(false, cursor, limit);
+    }
+    
+    /**
+     * 下書き投稿をIDの昇順で、cursorより大きいIDから最大limit件返します（キーセットページング）
+     */
+    public List<Post> getDraftPostsPage(Long cursor, int limit) {
+        return page(true, cursor, limit);
+    }
+    
+    private List<Post> page(boolean draft, Long cursor, int limit) {
+        List<Post> result = new ArrayList<>(Math.min(limit, 1024));
+        try (PostStore.ReadView view = store.openView()) {
+            Iterator<StoredPost> posts = view.scan(draft, cursor, null);
+            while (posts.hasNext() && result.size() < limit) {
+                result.add(posts.next().toPost());
+            }
+        }
+        return result;
     }
 }
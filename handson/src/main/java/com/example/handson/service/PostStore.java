@@ -0,0 +1,602 @@
+package com.example.handson.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.example.handson.service.content.OffHeapContentStore;
+import com.example.handson.service.index.ConcurrentLongMap;
+import com.example.handson.service.index.KeywordIndex;
+import com.example.handson.service.index.TimeIndex;
+import com.example.handson.service.index.WordCountIndex;
+
+/**
+ * 投稿のインメモリストレージと、検索用の二次インデックスをまとめて管理するクラス
+ * 投稿は省メモリな内部表現（StoredPost）で保持し、ヒープ外のストアが指定された場合は本文をそちらに保持します
+ * 追加・公開・削除のたびに区画とインデックスを同期し、検索側には読み取り専用のビューを公開します
+ *
+ * <p>投稿は不変の版（Version）として保持します。変更のたびにコミット番号を振り、新しい版を作って主索引の最新の版と
+ * 入れ替え、古い版は新しい版から辿れるように残します。一覧や検索は openView で時点を固定したビュー（ReadView）から読み、
+ * その番号までのコミットだけを見るため、並行する公開や削除が1つの応答の中で混ざることはなく、書き込みも待たせません
+ * 書き込みは他のコミットを待たずに戻り、ビューを開く側が終わったコミットがすべて見えるようになるまで待つため、
+ * 書き込みの後に開いたビューには必ずその書き込みが見えます
+ * どのビューからも見えなくなった古い版は、書き込みやビューを閉じるついでに区画・インデックス・主索引から取り除きます
+ */
+public class PostStore {
+    // 一括更新を並列に処理する件数の下限。これより少ない場合は分割のコストの方が大きくなります
+    private static final int PARALLEL_THRESHOLD = 4096;
+    // 変更の前後の投稿を保持しておく版の数と、まとめて追加した投稿を記録する件数の上限
+    public static final int RECENT_CHANGES = 4096;
+    static final int MAX_RECORDED_BATCH = 64;
+
+    // IDによる参照・公開・削除のための主索引。値は最新の版で、キーをボクシングせず、読み取りはロックを取りません
+    private final ConcurrentLongMap<Version> posts = new ConcurrentLongMap<>();
+    // 状態ごとの区画。IDの昇順に並ぶため、一覧取得やID範囲の検索、ページングは該当する区画の境界までシークするだけで済みます
+    // 置き換えられた版も、どのビューからも見えなくなるまでは残ります
+    private final NavigableMap<Long, Version> drafts = new ConcurrentSkipListMap<>();
+    private final NavigableMap<Long, Version> published = new ConcurrentSkipListMap<>();
+    // ConcurrentSkipListMap#size は全件を数えるため、区画ごとの最新の件数は別に保持します
+    private final AtomicLong draftCount = new AtomicLong();
+    private final AtomicLong publishedCount = new AtomicLong();
+    // 投稿の集合の版。コミット番号のうち、それ以下の変更がすべて反映済みの番号です
+    private final long epoch = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
+    private final CommitSequence commits = new CommitSequence();
+    private volatile Instant modifiedAt = Instant.now();
+    // 最近の RECENT_CHANGES 件の変更をコミット番号の下位ビットの位置に保持します
+    private final AtomicReferenceArray<Change> recentChanges = new AtomicReferenceArray<>(RECENT_CHANGES);
+
+    // 置き換えに成功して番号を振るまでの版の begin
+    private static final long UNASSIGNED = Long.MAX_VALUE;
+
+    // 開いているビュー。最も古いビューの番号より前に置き換えられた版は、どのビューからも見えません
+    private final ConcurrentSkipListSet<ReadView> views = new ConcurrentSkipListSet<>(
+            Comparator.comparingLong(ReadView::version).thenComparingLong(view -> view.serial));
+    private final AtomicLong viewSerial = new AtomicLong();
+    // 置き換えた側の版（古い版は older で辿れます）。取り除く処理は reclaimLock を取れたスレッドだけが行います
+    private final Queue<Version> retired = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock reclaimLock = new ReentrantLock();
+    // 古い版を取り除いてよいと宣言した番号。これより前の番号でビューを開くことはできません
+    private final AtomicLong reclaimHorizon = new AtomicLong();
+
+    // 本文をヒープ上に保持する場合はnull
+    private final OffHeapContentStore contents;
+    private final KeywordIndex keywordIndex;
+    private final TimeIndex createdAtIndex = new TimeIndex();
+    private final TimeIndex publishedAtIndex = new TimeIndex();
+    private final WordCountIndex wordCountIndex = new WordCountIndex();
+
+    public PostStore() {
+        this(null);
+    }
+
+    /**
+     * contents が指定された場合は、追加する投稿の本文をヒープ外に移します
+     * キーワード検索の候補は、主索引にある投稿の本文（ヒープ外の場合はそのバイト列）と照合します
+     */
+    public PostStore(OffHeapContentStore contents) {
+        this.contents = contents;
+        this.keywordIndex = new KeywordIndex(this::containsFolded);
+    }
+
+    public void insert(StoredPost post) {
+        long id = post.id();
+        String content = post.content();
+        post = moveContent(post, content);
+        long commit = commits.begin();
+        try {
+            Version version = new Version(post, commit, false, null);
+            drafts.put(id, version);
+            draftCount.incrementAndGet();
+            posts.put(id, version);
+            keywordIndex.add(id, content);
+            addToTimeAndWordCountIndexes(post);
+            modified(commit, List.of(), List.of(post));
+        } finally {
+            commits.complete(commit);
+        }
+    }
+
+    /**
+     * 複数の投稿をまとめて追加します。投稿の状態に応じた区画に追加するため、スナップショットからの復元にも使います
+     * 件数の更新とキーワードインデックスへの反映はバッチ全体で1回にまとめます
+     * バッチ全体を1つのコミットにするため、ビューからはすべての投稿が同時に見えるようになります
+     */
+    public void insertAll(List<StoredPost> batch) {
+        Map<Long, String> texts = new LinkedHashMap<>();
+        List<StoredPost> added = batch.size() <= MAX_RECORDED_BATCH ? new ArrayList<>(batch.size()) : null;
+        long draftsAdded = 0;
+        long commit = commits.begin();
+        try {
+            for (StoredPost post : batch) {
+                long id = post.id();
+                String content = post.content();
+                post = moveContent(post, content);
+                Version version = new Version(post, commit, false, null);
+                if (post.isDraft()) {
+                    drafts.put(id, version);
+                    draftsAdded++;
+                } else {
+                    published.put(id, version);
+                }
+                posts.put(id, version);
+                texts.put(id, content);
+                addToTimeAndWordCountIndexes(post);
+                if (added != null) {
+                    added.add(post);
+                }
+            }
+            draftCount.addAndGet(draftsAdded);
+            publishedCount.addAndGet(batch.size() - draftsAdded);
+            keywordIndex.addAll(texts);
+            if (added != null) {
+                modified(commit, List.of(), added);
+            } else {
+                modified(commit, null, null);
+            }
+        } finally {
+            commits.complete(commit);
+        }
+    }
+
+    private boolean containsFolded(long id, String foldedKeyword) {
+        Version version = posts.get(id);
+        return version != null && version.post.containsFolded(foldedKeyword);
+    }
+
+    private StoredPost moveContent(StoredPost post, String content) {
+        if (contents == null || content == null) {
+            return post;
+        }
+        contents.put(post.id(), content);
+        return post.withContentIn(contents);
+    }
+
+    private void addToTimeAndWordCountIndexes(StoredPost post) {
+        long id = post.id();
+        if (post.hasCreatedAt()) {
+            createdAtIndex.add(id, post.createdAtNanos());
+        }
+        if (!post.isDraft() && post.hasPublishedAt()) {
+            publishedAtIndex.add(id, post.publishedAtNanos());
+        }
+        if (post.hasContent()) {
+            wordCountIndex.add(id, post.wordCount());
+        }
+    }
+
+    /**
+     * 下書きを公開済みに遷移させます。下書きでない、または存在しない場合はnullを返します
+     *
+     * <p>読んだ最新の版を、公開後の新しい版に置き換える（CAS）ことで、ロックを取らずに遷移させます
+     * 同じ投稿の公開が競合しても置き換えに成功するのは1つだけで、他は公開済みの版を読み直してnullを返します
+     * 下書きの版は、どのビューからも見えなくなってから下書きの区画から取り除きます
+     */
+    public StoredPost publish(long id, Instant publishedAt) {
+        while (true) {
+            Version current = posts.get(id);
+            if (current == null || current.removed || !current.post.isDraft()) {
+                return null;
+            }
+            if (awaitingCommit(current)) {
+                continue;
+            }
+            StoredPost publishedPost = current.post.publish(publishedAt);
+            // 番号は置き換えに成功してから振るため、他の変更に先を越されて読み直す場合は番号を使わず、版も進みません
+            Version next = new Version(publishedPost, UNASSIGNED, false, current);
+            if (!posts.replace(id, current, next)) {
+                continue;
+            }
+            long commit = commits.begin();
+            try {
+                next.begin = commit;
+                current.end = commit;
+                published.put(id, next);
+                draftCount.decrementAndGet();
+                publishedCount.incrementAndGet();
+                if (publishedPost.hasPublishedAt()) {
+                    publishedAtIndex.add(id, publishedPost.publishedAtNanos());
+                }
+                retired.add(next);
+                modified(commit, List.of(current.post), List.of(publishedPost));
+            } finally {
+                commits.complete(commit);
+            }
+            reclaim();
+            return publishedPost;
+        }
+    }
+
+    /**
+     * 投稿を削除し、削除した投稿を返します。存在しない場合はnullを返します
+     * publish と同じく、読んだ最新の版を削除済みを表す版に置き換えます。区画・インデックス・本文からは、
+     * 削除前の版がどのビューからも見えなくなってから取り除きます
+     */
+    public StoredPost remove(long id) {
+        while (true) {
+            Version current = posts.get(id);
+            if (current == null || current.removed) {
+                return null;
+            }
+            if (awaitingCommit(current)) {
+                continue;
+            }
+            Version tombstone = new Version(current.post, UNASSIGNED, true, current);
+            if (!posts.replace(id, current, tombstone)) {
+                continue;
+            }
+            long commit = commits.begin();
+            try {
+                tombstone.begin = commit;
+                current.end = commit;
+                (current.post.isDraft() ? draftCount : publishedCount).decrementAndGet();
+                retired.add(tombstone);
+                modified(commit, List.of(current.post), List.of());
+            } finally {
+                commits.complete(commit);
+            }
+            reclaim();
+            return current.post;
+        }
+    }
+
+    /**
+     * 指定されたIDの下書きをまとめて公開し、IDと同じ位置に公開した投稿（公開できなかった場合はnull）を返します
+     * 件数が多い場合は並列に処理します。同じIDへの公開が競合した場合は、publish と同じく1つだけが成功します
+     */
+    public StoredPost[] publishAll(List<Long> ids, Instant publishedAt) {
+        StoredPost[] result = new StoredPost[ids.size()];
+        forEachIndex(ids.size(), i -> result[i] = publish(ids.get(i), publishedAt));
+        return result;
+    }
+
+    /**
+     * 指定されたIDの投稿をまとめて削除し、IDと同じ位置に削除した投稿（存在しなかった場合はnull）を返します
+     */
+    public StoredPost[] removeAll(List<Long> ids) {
+        StoredPost[] result = new StoredPost[ids.size()];
+        forEachIndex(ids.size(), i -> result[i] = remove(ids.get(i)));
+        return result;
+    }
+
+    /**
+     * 読んだ最新の版が、置き換えに成功した書き込みからまだ番号を振られていない場合は、短く待ってから true を返します
+     * 番号を振られる前の版を置き換えると、同じ投稿の版の番号が置き換えた順に大きくならないためです
+     * 置き換えから番号を振るまでの間は番号を1つ増やすだけで待つことはないため、スピンで待ちます
+     */
+    private static boolean awaitingCommit(Version current) {
+        if (current.begin != UNASSIGNED) {
+            return false;
+        }
+        Thread.onSpinWait();
+        return true;
+    }
+
+    private static void forEachIndex(int size, IntConsumer action) {
+        IntStream indexes = IntStream.range(0, size);
+        (size >= PARALLEL_THRESHOLD ? indexes.parallel() : indexes).forEach(action);
+    }
+
+    /**
+     * 最新の投稿を返します。削除済み、または存在しない場合はnullを返します
+     */
+    public StoredPost get(long id) {
+        Version version = posts.get(id);
+        return version == null || version.removed ? null : version.post;
+    }
+
+    /**
+     * 最新のすべての投稿を順不同で返します。時点を固定して読む場合やIDの順に辿る場合は openView を使います
+     */
+    public Iterable<StoredPost> all() {
+        return () -> StreamSupport.stream(posts.spliterator(), false)
+                .filter(version -> !version.removed)
+                .map(version -> version.post)
+                .iterator();
+    }
+
+    /**
+     * 反映済みの最新のコミットの時点に固定したビューを開きます
+     * 呼び出した時点までに終わったコミットがすべて反映済みになるまで待つため、戻った書き込みは必ずビューに見えます
+     * ビューは閉じるまで、その時点の投稿の版を取り除かせません。使い終わったら必ず閉じてください
+     */
+    public ReadView openView() {
+        while (true) {
+            ReadView view = new ReadView(commits.awaitCompleted(), viewSerial.getAndIncrement());
+            views.add(view);
+            // 登録してから宣言を読みます。reclaim は宣言してから登録を読むため、どちらかが必ず相手に気づきます
+            if (reclaimHorizon.get() <= view.version) {
+                return view;
+            }
+            views.remove(view);
+        }
+    }
+
+    /**
+     * 終端操作を始めた時点でビューを開き、そのビューから source で作ったストリームの要素を返すストリームを返します
+     * ビューはストリームを閉じたときに閉じるため、要素を読み始めずに閉じたストリームはビューを開きません
+     * source が例外で失敗した場合は、開いたビューを閉じてから例外を投げます
+     */
+    public <T> Stream<T> streamInView(Function<ReadView, Stream<T>> source) {
+        AtomicReference<ReadView> opened = new AtomicReference<>();
+        Supplier<Spliterator<T>> spliterator = () -> {
+            ReadView view = openView();
+            opened.set(view);
+            try {
+                return source.apply(view).spliterator();
+            } catch (RuntimeException | Error e) {
+                opened.set(null);
+                view.close();
+                throw e;
+            }
+        };
+        return StreamSupport.stream(spliterator, Spliterator.ORDERED | Spliterator.NONNULL, false)
+                .onClose(() -> {
+                    ReadView view = opened.getAndSet(null);
+                    if (view != null) {
+                        view.close();
+                    }
+                });
+    }
+
+    /**
+     * 投稿の集合の現在の版を返します
+     */
+    public DataVersion version() {
+        return new DataVersion(epoch, commits.awaitCompleted(), modifiedAt);
+    }
+
+    /**
+     * 指定された版の変更を返します
+     * 古くて残っていない場合、記録する件数の上限を超えてまとめて追加した場合、記録の途中の場合はnullを返します
+     */
+    public Change change(long version) {
+        Change change = recentChanges.get((int) (version & (RECENT_CHANGES - 1)));
+        return change != null && change.version() == version ? change : null;
+    }
+
+    // 変更の内容を記録しない場合（before と after がnull）は、同じ位置の古い変更も手放します
+    private void modified(long commit, List<StoredPost> before, List<StoredPost> after) {
+        modifiedAt = Instant.now();
+        recentChanges.set((int) (commit & (RECENT_CHANGES - 1)),
+                before != null ? new Change(commit, before, after) : null);
+    }
+
+    /**
+     * 開いているどのビューからも見えなくなった古い版を、区画・インデックス・主索引から取り除きます
+     * 他のスレッドが取り除いている間は何もしません
+     */
+    void reclaim() {
+        if (retired.isEmpty() || !reclaimLock.tryLock()) {
+            return;
+        }
+        try {
+            long horizon = commits.visible();
+            reclaimHorizon.accumulateAndGet(horizon, Math::max);
+            // 宣言してから登録を読みます。ここで見えなかったビューは、宣言より新しい番号で開き直されます
+            // isEmpty と first の間に最後のビューが閉じられることがあるため、イテレータで読みます
+            Iterator<ReadView> open = views.iterator();
+            if (open.hasNext()) {
+                horizon = Math.min(horizon, open.next().version);
+            }
+            for (Version version = retired.peek(); version != null && version.begin <= horizon;
+                    version = retired.peek()) {
+                retired.poll();
+                reclaim(version);
+            }
+        } finally {
+            reclaimLock.unlock();
+        }
+    }
+
+    // version より前の版は、どのビューからも見えなくなっています
+    private void reclaim(Version version) {
+        Version older = version.older;
+        version.older = null;
+        long id = version.post.id();
+        if (older != null) {
+            (older.post.isDraft() ? drafts : published).remove(id, older);
+        }
+        if (!version.removed) {
+            return;
+        }
+        // 同じIDで追加し直された場合は、インデックスと本文は新しい投稿のものです
+        if (!posts.remove(id, version)) {
+            return;
+        }
+        StoredPost post = version.post;
+        keywordIndex.remove(id, post.content());
+        if (post.hasCreatedAt()) {
+            createdAtIndex.remove(id, post.createdAtNanos());
+        }
+        if (post.hasPublishedAt()) {
+            publishedAtIndex.remove(id, post.publishedAtNanos());
+        }
+        wordCountIndex.remove(id, post.wordCount());
+        // キーワードインデックスから取り除くn-gramをヒープ外の本文から求めるため、本文はその後に削除します
+        if (contents != null) {
+            contents.remove(id);
+        }
+    }
+
+    // 取り除くのを待っている版の数
+    int retiredVersions() {
+        return retired.size();
+    }
+
+    /**
+     * 版を1つ進めた変更。変更前（削除・公開した投稿）と変更後（追加・公開した投稿）の内部表現を持ちます
+     */
+    public record Change(long version, List<StoredPost> before, List<StoredPost> after) {
+    }
+
+    /**
+     * 1つのコミットの時点に固定した読み取り専用のビュー
+     * その番号以下のコミットの変更だけが見え、開いた後の追加・公開・削除は見えません。読み取りはロックを取りません
+     */
+    public final class ReadView implements AutoCloseable {
+        private final long version;
+        private final long serial;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private ReadView(long version, long serial) {
+            this.version = version;
+            this.serial = serial;
+        }
+
+        /**
+         * ビューが見ているコミットの番号（DataVersion の counter と同じ値）を返します
+         */
+        public long version() {
+            return version;
+        }
+
+        /**
+         * この時点の投稿を返します。この時点で存在しない場合はnullを返します
+         */
+        public StoredPost get(long id) {
+            for (Version v = posts.get(id); v != null; v = v.older) {
+                if (v.begin <= version) {
+                    return v.removed ? null : v.post;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * この時点の下書き（draft=true）か公開済みの投稿を、afterId より大きく beforeId より小さいIDの範囲で
+         * IDの昇順に返します（どちらも省略可）
+         */
+        public Iterator<StoredPost> scan(boolean draft, Long afterId, Long beforeId) {
+            Iterator<Version> versions = idRange(draft ? drafts : published, afterId, beforeId).values().iterator();
+            return new Iterator<>() {
+                private StoredPost next = advance();
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public StoredPost next() {
+                    StoredPost result = next;
+                    if (result == null) {
+                        throw new NoSuchElementException();
+                    }
+                    next = advance();
+                    return result;
+                }
+
+                private StoredPost advance() {
+                    while (versions.hasNext()) {
+                        Version v = versions.next();
+                        if (v.begin <= version && version < v.end) {
+                            return v.post;
+                        }
+                    }
+                    return null;
+                }
+            };
+        }
+
+        /**
+         * ビューを閉じ、この時点のためだけに残していた古い版を取り除けるようにします。2回目以降は何もしません
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                views.remove(this);
+                reclaim();
+            }
+        }
+    }
+
+    /**
+     * afterId より大きく beforeId より小さいIDの範囲に絞ったビューを返します（どちらも省略可）
+     */
+    private static <V> NavigableMap<Long, V> idRange(NavigableMap<Long, V> map, Long afterId, Long beforeId) {
+        if (afterId != null && beforeId != null) {
+            return afterId < beforeId ? map.subMap(afterId, false, beforeId, false) : Collections.emptyNavigableMap();
+        }
+        if (afterId != null) {
+            return map.tailMap(afterId, false);
+        }
+        if (beforeId != null) {
+            return map.headMap(beforeId, false);
+        }
+        return map;
+    }
+
+    /**
+     * 投稿の版。コミット番号 begin で作られ、end で次の版に置き換えられるまで（end を含まない）の間のビューから見えます
+     * removed の版は、その番号で削除されたことを表し、post は削除前の投稿です
+     * older は1つ前の版で、この版より前の番号のビューがなくなった時点で切り離します
+     */
+    private static final class Version {
+        final StoredPost post;
+        // 置き換えで作った版は、置き換えに成功してから番号を設定します。設定するまでは UNASSIGNED で、どのビューからも見えません
+        volatile long begin;
+        final boolean removed;
+        // 置き換えた書き込みが、そのコミットを終える前に設定します
+        volatile long end = Long.MAX_VALUE;
+        volatile Version older;
+
+        Version(StoredPost post, long begin, boolean removed, Version older) {
+            this.post = post;
+            this.begin = begin;
+            this.removed = removed;
+            this.older = older;
+        }
+    }
+
+    public long draftCount() {
+        return draftCount.get();
+    }
+
+    public long publishedCount() {
+        return publishedCount.get();
+    }
+
+    public long size() {
+        return draftCount.get() + publishedCount.get();
+    }
+
+    public KeywordIndex keywordIndex() {
+        return keywordIndex;
+    }
+
+    public TimeIndex createdAtIndex() {
+        return createdAtIndex;
+    }
+
+    public TimeIndex publishedAtIndex() {
+        return publishedAtIndex;
+    }
+
+    public WordCountIndex wordCountIndex() {
+        return wordCountIndex;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.handson.service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.bulk.BatchResult;
+import com.example.handson.service.bulk.BulkRequest;
+import com.example.handson.service.bulk.BulkResult;
+import com.example.handson.service.bulk.ImportResult;
+import com.example.handson.service.search.QueryResult;
+import com.example.handson.service.search.RankedPost;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * PostService をイベントループから呼び出すためのノンブロッキングなファサード
+ * メモリ上で完結する参照は呼び出し元のスレッドでそのまま実行し、イベントループを止めうる処理は別のスケジューラで実行します
+ * <ul>
+ * <li>作成・公開・削除: 書き込み先行ログの同期やロックを待つことがあるため boundedElastic
+ * <li>検索・関連度順の検索: 件数に比例してCPUを使うため parallel
+ * </ul>
+ * 一覧は全件のリストを作らず、購読側の要求に応じて1件ずつ変換して流します
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePostService {
+
+    private final PostService postService;
+    private final ObjectMapper objectMapper;
+    private final Scheduler writeScheduler;
+    private final Scheduler searchScheduler;
+
+    public ReactivePostService(PostService postService, ObjectMapper objectMapper) {
+        this(postService, objectMapper, Schedulers.boundedElastic(), Schedulers.parallel());
+    }
+
+    ReactivePostService(PostService postService, ObjectMapper objectMapper, Scheduler writeScheduler,
+            Scheduler searchScheduler) {
+        this.postService = postService;
+        this.objectMapper = objectMapper;
+        this.writeScheduler = writeScheduler;
+        this.searchScheduler = searchScheduler;
+    }
+
+    public Mono<Post> createDraft(String content) {
+        return Mono.fromSupplier(() -> postService.createDraft(content)).subscribeOn(writeScheduler);
+    }
+
+    public Mono<BatchResult> createDrafts(List<String> contents) {
+        return Mono.fromSupplier(() -> postService.createDrafts(contents)).subscribeOn(writeScheduler);
+    }
+
+    /**
+     * NDJSONの本文を読み取った分から受け取りながら、PostImporter と同じ形式・単位で投稿を取り込みます
+     * 行への分割も PostImporter が行うため、MAX_LINE_LENGTH 文字を超える行はエラーにせず不正な行として数えます
+     * 本文は書き込み用のスケジューラで届いた順に処理し、処理が追いつくまで上流に次の本文を要求しません
+     */
+    public Mono<ImportResult> importPosts(Flux<DataBuffer> body) {
+        return Mono.defer(() -> {
+            PostImporter importer = new PostImporter(postService, objectMapper);
+            return body.publishOn(writeScheduler)
+                    .doOnNext(buffer -> {
+                        try (DataBuffer.ByteBufferIterator buffers = buffer.readableByteBuffers()) {
+                            buffers.forEachRemaining(importer::acceptBytes);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .then(Mono.fromSupplier(importer::finish));
+        });
+    }
+
+    /**
+     * 下書きを公開します。下書きでない、または存在しない場合は空を返します
+     */
+    public Mono<Post> publishPost(Long id) {
+        return Mono.fromSupplier(() -> postService.publishPost(id)).subscribeOn(writeScheduler);
+    }
+
+    public Mono<Boolean> deletePost(Long id) {
+        return Mono.fromSupplier(() -> postService.deletePost(id)).subscribeOn(writeScheduler);
+    }
+
+    public Mono<BulkResult> publishPosts(BulkRequest request) {
+        return Mono.fromSupplier(() -> postService.publishPosts(request)).subscribeOn(writeScheduler);
+    }
+
+    public Mono<BulkResult> deletePosts(BulkRequest request) {
+        return Mono.fromSupplier(() -> postService.deletePosts(request)).subscribeOn(writeScheduler);
+    }
+
+    /**
+     * 投稿の集合の版を返します。メモリ上の値を読むだけのため、呼び出し元のスレッドでそのまま返します
+     */
+    public DataVersion dataVersion() {
+        return postService.dataVersion();
+    }
+
+    public Mono<Post> getPost(Long id) {
+        return Mono.fromSupplier(() -> postService.getPost(id));
+    }
+
+    public Flux<Post> getPublishedPosts() {
+        return Flux.fromStream(postService::streamPublishedPosts);
+    }
+
+    public Flux<Post> getDraftPosts() {
+        return Flux.fromStream(postService::streamDraftPosts);
+    }
+
+    /**
+     * @throws IllegalArgumentException 日付の形式が不正な場合（エラーとして通知します）
+     */
+    public Mono<QueryResult> search(String keyword, Long beforeId, Long afterId, String fromDate, String toDate,
+            Boolean isDraft, Integer minWordCount, Integer maxWordCount) {
+        return Mono.fromSupplier(() -> postService.searchWithPlan(keyword, beforeId, afterId, fromDate, toDate,
+                isDraft, minWordCount, maxWordCount)).subscribeOn(searchScheduler);
+    }
+
+    /**
+     * search と同じ条件で検索し、一致した投稿をIDの昇順で1件ずつ流す Flux を返します
+     * 条件が不正な場合は、投稿を流し始める前に IllegalArgumentException で失敗します
+     * 検索の時点を固定するビューは Flux を購読した時点で開き、完了・エラー・キャンセルのいずれでも閉じます
+     */
+    public Mono<Flux<Post>> streamSearch(String keyword, Long beforeId, Long afterId, String fromDate,
+            String toDate, Boolean isDraft, Integer minWordCount, Integer maxWordCount) {
+        return Mono.fromSupplier(() -> postService.streamSearch(keyword, beforeId, afterId, fromDate, toDate,
+                        isDraft, minWordCount, maxWordCount))
+                .map(posts -> Flux.using(() -> posts, Flux::fromStream, Stream::close).subscribeOn(searchScheduler))
+                .subscribeOn(searchScheduler);
+    }
+
+    public Flux<RankedPost> rankPosts(String query, int limit, Boolean isDraft) {
+        return Mono.fromSupplier(() -> postService.rankPosts(query, limit, isDraft))
+                .subscribeOn(searchScheduler)
+                .flatMapIterable(posts -> posts);
+    }
+
+    public Flux<Post> getFeed(Instant before, int limit) {
+        return Mono.fromSupplier(() -> postService.getFeed(before, limit)).flatMapIterable(posts -> posts);
+    }
+
+    public Mono<List<Post>> getPublishedPostsPage(Long cursor, int limit) {
+        return Mono.fromSupplier(() -> postService.getPublishedPostsPage(cursor, limit));
+    }
+
+    public Mono<List<Post>> getDraftPostsPage(Long cursor, int limit) {
+        return Mono.fromSupplier(() -> postService.getDraftPostsPage(cursor, limit));
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.handson.service;
+
+import java.time.Instant;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.content.OffHeapContentStore;
+import com.example.handson.service.index.TimeIndex;
+
+/**
+ * ストアに保持する投稿の内部表現
+ * IDと日時をプリミティブ（日時はエポックからのナノ秒）で持つため、Post のように Long と3つの Instant を
+ * 別オブジェクトとして持たずに済みます。APIの境界でだけ toPost で Post に変換します
+ *
+ * <p>不変のため、公開などの状態の変更は新しいインスタンスへの置き換えで行います
+ *
+ * <p>本文をヒープ外に保持する場合は、本文の代わりに OffHeapContentStore を参照し、投稿IDで本文を引きます
+ */
+public final class StoredPost {
+
+    private static final byte DRAFT = 1;
+    private static final byte HAS_CREATED_AT = 1 << 1;
+    private static final byte HAS_UPDATED_AT = 1 << 2;
+    private static final byte HAS_PUBLISHED_AT = 1 << 3;
+
+    private final long id;
+    private final long createdAtNanos;
+    private final long updatedAtNanos;
+    private final long publishedAtNanos;
+    // String か、本文をヒープ外に保持している場合はそのストア
+    private final Object content;
+    private final int wordCount;
+    // 下書きかどうかと、各日時が設定されているかどうか
+    private final byte flags;
+
+    private StoredPost(long id, Object content, int wordCount, long createdAtNanos, long updatedAtNanos,
+            long publishedAtNanos, byte flags) {
+        this.id = id;
+        this.content = content;
+        this.wordCount = wordCount;
+        this.createdAtNanos = createdAtNanos;
+        this.updatedAtNanos = updatedAtNanos;
+        this.publishedAtNanos = publishedAtNanos;
+        this.flags = flags;
+    }
+
+    /**
+     * 作成日時と更新日時が createdAt の下書きを作ります
+     */
+    public static StoredPost draft(long id, String content, Instant createdAt) {
+        return of(id, content, createdAt, createdAt, null, true);
+    }
+
+    public static StoredPost of(Post post) {
+        return of(post.getId(), post.getContent(), post.getCreatedAt(), post.getUpdatedAt(), post.getPublishedAt(),
+                post.isDraft());
+    }
+
+    public static StoredPost of(long id, String content, Instant createdAt, Instant updatedAt, Instant publishedAt,
+            boolean draft) {
+        byte flags = (byte) ((draft ? DRAFT : 0)
+                | (createdAt != null ? HAS_CREATED_AT : 0)
+                | (updatedAt != null ? HAS_UPDATED_AT : 0)
+                | (publishedAt != null ? HAS_PUBLISHED_AT : 0));
+        return new StoredPost(id, content, Post.countWords(content), toNanos(createdAt), toNanos(updatedAt),
+                toNanos(publishedAt), flags);
+    }
+
+    /**
+     * スナップショットなどから、日時をナノ秒のまま復元します
+     */
+    public static StoredPost restore(long id, String content, long createdAtNanos, long updatedAtNanos,
+            long publishedAtNanos, byte flags) {
+        return new StoredPost(id, content, Post.countWords(content), createdAtNanos, updatedAtNanos,
+                publishedAtNanos, flags);
+    }
+
+    /**
+     * 公開済みにした投稿を返します
+     */
+    public StoredPost publish(Instant publishedAt) {
+        byte published = (byte) ((flags & ~DRAFT) | (publishedAt != null ? HAS_PUBLISHED_AT : 0));
+        return new StoredPost(id, content, wordCount, createdAtNanos, updatedAtNanos, toNanos(publishedAt),
+                published);
+    }
+
+    /**
+     * 本文をヒープ外のストアに保存済みの投稿として、本文の代わりにストアを参照する投稿を返します
+     */
+    public StoredPost withContentIn(OffHeapContentStore store) {
+        return new StoredPost(id, store, wordCount, createdAtNanos, updatedAtNanos, publishedAtNanos, flags);
+    }
+
+    /**
+     * APIで返す Post に変換します。本文がヒープ外にある場合、デコードは Post の本文が参照されるまで遅らせます
+     * 本文の位置は変換した時点で確定させるため、その後に投稿が削除されて本文が取り除かれても、変換した時点の本文を返します
+     */
+    public Post toPost() {
+        if (content instanceof OffHeapContentStore store) {
+            return new Post(id, store.loader(id), wordCount, createdAt(), updatedAt(), publishedAt(), isDraft());
+        }
+        return new Post(id, (String) content, createdAt(), updatedAt(), publishedAt(), isDraft());
+    }
+
+    public long id() {
+        return id;
+    }
+
+    /**
+     * 本文を返します。ヒープ外にある場合は呼び出すたびにデコードします
+     */
+    public String content() {
+        return content instanceof OffHeapContentStore store ? store.get(id) : (String) content;
+    }
+
+    public boolean hasContent() {
+        return content != null;
+    }
+
+    /**
+     * content().toLowerCase().contains(foldedKeyword) と同じ結果を返します
+     * ヒープ外にある本文は、デコードせずにバイト列のまま照合します
+     */
+    public boolean containsFolded(String foldedKeyword) {
+        if (content instanceof OffHeapContentStore store) {
+            return store.containsFolded(id, foldedKeyword);
+        }
+        return Post.containsFolded((String) content, foldedKeyword);
+    }
+
+    public int wordCount() {
+        return wordCount;
+    }
+
+    public boolean isDraft() {
+        return (flags & DRAFT) != 0;
+    }
+
+    public byte flags() {
+        return flags;
+    }
+
+    public boolean hasCreatedAt() {
+        return (flags & HAS_CREATED_AT) != 0;
+    }
+
+    public boolean hasPublishedAt() {
+        return (flags & HAS_PUBLISHED_AT) != 0;
+    }
+
+    public long createdAtNanos() {
+        return createdAtNanos;
+    }
+
+    public long updatedAtNanos() {
+        return updatedAtNanos;
+    }
+
+    public long publishedAtNanos() {
+        return publishedAtNanos;
+    }
+
+    public Instant createdAt() {
+        return hasCreatedAt() ? toInstant(createdAtNanos) : null;
+    }
+
+    public Instant updatedAt() {
+        return (flags & HAS_UPDATED_AT) != 0 ? toInstant(updatedAtNanos) : null;
+    }
+
+    public Instant publishedAt() {
+        return hasPublishedAt() ? toInstant(publishedAtNanos) : null;
+    }
+
+    private static long toNanos(Instant time) {
+        return time != null ? TimeIndex.toEpochNanos(time) : 0L;
+    }
+
+    private static Instant toInstant(long epochNanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L), Math.floorMod(epochNanos, 1_000_000_000L));
+    }
+
+    @Override
+    public String toString() {
+        return "StoredPost{id=" + id + ", draft=" + isDraft() + ", content='" + content + "'}";
+    }
+}
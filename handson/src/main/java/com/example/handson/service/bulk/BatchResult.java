@@ -0,0 +1,23 @@
+package com.example.handson.service.bulk;
+
+import java.util.List;
+
+import com.example.handson.model.Post;
+
+/**
+ * 一括作成の結果。作成できた投稿と、検証に失敗した要素を分けて返します
+ *
+ * @param created 作成された投稿（リクエストの順序のまま）
+ * @param failures 作成できなかった要素
+ */
+public record BatchResult(List<Post> created, List<Failure> failures) {
+
+    /**
+     * 検証に失敗した要素
+     *
+     * @param index リクエストの配列での位置（0始まり）
+     * @param message 失敗の理由
+     */
+    public record Failure(int index, String message) {
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.handson.service.bulk;
+
+import java.util.List;
+
+import com.example.handson.service.search.PostQuery;
+
+/**
+ * 一括公開・一括削除の対象。IDのリストか、検索と同じ条件のどちらか一方を指定します
+ * 条件を何も指定しないリクエストで全件が対象になることを防ぐため、どちらもない場合は不正として扱います
+ *
+ * @param ids 対象の投稿ID
+ * @param isDraft 下書き（true）か公開済み（false）か（一括削除の条件でのみ使用します）
+ */
+public record BulkRequest(List<Long> ids, String keyword, Long beforeId, Long afterId, String fromDate,
+        String toDate, Boolean isDraft, Integer minWordCount, Integer maxWordCount) {
+
+    public static BulkRequest ofIds(List<Long> ids) {
+        return new BulkRequest(ids, null, null, null, null, null, null, null, null);
+    }
+
+    public boolean hasIds() {
+        return ids != null && !ids.isEmpty();
+    }
+
+    public boolean hasFilter() {
+        return (keyword != null && !keyword.isEmpty()) || beforeId != null || afterId != null
+                || (fromDate != null && !fromDate.isEmpty()) || (toDate != null && !toDate.isEmpty())
+                || isDraft != null || minWordCount != null || maxWordCount != null;
+    }
+
+    /**
+     * 条件を検索条件に変換します。draft がnullでなければ状態の条件を置き換えます
+     *
+     * @throws IllegalArgumentException 日付の形式が不正な場合、または単語数が負の場合
+     */
+    public PostQuery toQuery(Boolean draft) {
+        return PostQuery.of(keyword, beforeId, afterId, fromDate, toDate, draft != null ? draft : isDraft,
+                minWordCount, maxWordCount);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.handson.service.bulk;
+
+import java.util.List;
+
+/**
+ * 一括公開・一括削除の結果。対象のIDごとの結果を指定された順に返します
+ *
+ * @param succeeded 状態を変更できた件数
+ * @param outcomes IDごとの結果
+ */
+public record BulkResult(int succeeded, List<Outcome> outcomes) {
+
+    public static BulkResult of(List<Outcome> outcomes) {
+        int succeeded = 0;
+        for (Outcome outcome : outcomes) {
+            if (outcome.status() == Status.PUBLISHED || outcome.status() == Status.DELETED) {
+                succeeded++;
+            }
+        }
+        return new BulkResult(succeeded, outcomes);
+    }
+
+    public record Outcome(Long id, Status status) {
+    }
+
+    public enum Status {
+        PUBLISHED,
+        DELETED,
+        // 公開済みのため公開しなかった
+        NOT_DRAFT,
+        NOT_FOUND
+    }
+}
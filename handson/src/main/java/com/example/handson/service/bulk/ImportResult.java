@@ -0,0 +1,26 @@
+package com.example.handson.service.bulk;
+
+import java.util.List;
+
+/**
+ * 取り込みの結果
+ *
+ * @param imported 取り込んだ投稿の件数
+ * @param published そのうち公開済みとして取り込んだ件数
+ * @param rejected 取り込めなかった行の件数
+ * @param failures 取り込めなかった行（先頭から最大 PostImporter.MAX_REPORTED_FAILURES 件）
+ * @param elapsedMillis 取り込みにかかった時間
+ * @param postsPerSecond 1秒あたりに取り込んだ投稿の件数
+ */
+public record ImportResult(long imported, long published, long rejected, List<Failure> failures,
+        long elapsedMillis, double postsPerSecond) {
+
+    /**
+     * 取り込めなかった行
+     *
+     * @param line 行番号（1始まり）
+     * @param message 失敗の理由
+     */
+    public record Failure(long line, String message) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.handson.service.bulk;
+
+import java.time.Instant;
+
+/**
+ * 取り込む投稿1件。作成日時と公開日時は元のデータの値をそのまま使います
+ *
+ * @param content 本文
+ * @param createdAt 作成日時（nullの場合は取り込んだ日時）
+ * @param publishedAt 公開日時（nullの場合は下書きとして取り込みます）
+ */
+public record ImportedPost(String content, Instant createdAt, Instant publishedAt) {
+
+    public ImportedPost {
+        if (content == null) {
+            throw new IllegalArgumentException("content is required");
+        }
+        if (createdAt != null && publishedAt != null && publishedAt.isBefore(createdAt)) {
+            throw new IllegalArgumentException("publishedAt must not be before createdAt");
+        }
+    }
+
+    public boolean isPublished() {
+        return publishedAt != null;
+    }
+}
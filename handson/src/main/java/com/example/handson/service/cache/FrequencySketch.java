@@ -0,0 +1,101 @@
+package com.example.handson.service.cache;
+
+/**
+ * キーごとの最近の参照回数を概算するカウントミンスケッチ
+ * 4ビットのカウンタ（最大15）を long に16個ずつ詰め、キーごとに4つのカウンタを増やして最小値を回数とします
+ *
+ * <p>増やした回数が表の大きさの10倍に達するとすべてのカウンタを半分にし、古い参照の影響を減らします
+ * スレッドセーフではありません。呼び出し側のロックを保持して使います
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MIN_LENGTH = 16;
+    // 表は最大で32MBです
+    private static final int MAX_LENGTH = 1 << 22;
+
+    private long[] table = new long[0];
+    private int tableMask;
+    private int sampleSize;
+    private int additions;
+
+    /**
+     * 少なくとも maximumSize 件のキーを区別できる大きさの表を用意します
+     * 表を大きくした場合はそれまでの回数を捨てます
+     */
+    void ensureCapacity(long maximumSize) {
+        int size = (int) Math.min(Math.max(maximumSize, MIN_LENGTH), MAX_LENGTH);
+        int length = Integer.highestOneBit(size - 1) << 1;
+        if (table.length >= length) {
+            return;
+        }
+        table = new long[length];
+        tableMask = length - 1;
+        sampleSize = length * 10;
+        additions = 0;
+    }
+
+    /**
+     * キーの参照回数の概算（0〜15）を返します
+     */
+    int frequency(long key) {
+        int hash = spread(key);
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * キーの参照回数を1増やします。すべてのカウンタが最大の場合は増やしません
+     */
+    void increment(long key) {
+        int hash = spread(key);
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    // すべてのカウンタを半分にします。奇数だったカウンタの切り捨て分を増やした回数からも引きます
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = (additions - (odd >>> 2)) >>> 1;
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private static int spread(long key) {
+        int h = Long.hashCode(key) * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.handson.service.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+import com.example.handson.service.index.ConcurrentLongMap;
+
+/**
+ * 値の重み（バイト数など）の合計を上限以下に保つ、long のキーのキャッシュ
+ * 追い出す要素は W-TinyLFU で選び、一度だけ参照された要素が頻繁に参照される要素を追い出さないようにします
+ *
+ * <p>要素は次の3つの領域のいずれかに、最近参照された順に並びます
+ * <ul>
+ * <li>ウィンドウ（上限の1%）: 追加した要素が最初に入ります
+ * <li>試用（残りの20%）: ウィンドウからあふれた要素が入ります。あふれた要素（候補）と試用の最も古い要素（犠牲）の
+ *     参照回数の概算を比べ、少ない方を追い出します
+ * <li>保護（残りの80%）: 試用の間に再び参照された要素が入ります。あふれた要素は試用に戻ります
+ * </ul>
+ *
+ * <p>読み取りはロックを取らず、参照の記録だけをスレッドごとに分けたバッファに残します
+ * バッファがいっぱいになったときか書き込みのときに、ロックを保持してまとめて順序と参照回数に反映します
+ * ロックが取れない間にいっぱいになったバッファへの記録は捨てるため、参照の順序は概算です
+ */
+public class WindowTinyLfuCache<V> {
+
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final long maximumWeight;
+    private final long maximumWindowWeight;
+    private final long maximumProtectedWeight;
+    private final ToIntFunction<V> weigher;
+    private final ConcurrentLongMap<Node<V>> data = new ConcurrentLongMap<>();
+    private final ReadBuffer<V>[] readBuffers;
+    private final LongAdder evictions = new LongAdder();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // 以下はロックを保持して読み書きします
+    private final AccessOrder<V> window = new AccessOrder<>();
+    private final AccessOrder<V> probation = new AccessOrder<>();
+    private final AccessOrder<V> protectedOrder = new AccessOrder<>();
+    private final FrequencySketch sketch = new FrequencySketch();
+    private long windowWeight;
+    private long protectedWeight;
+    private volatile long weightedSize;
+
+    @SuppressWarnings("unchecked")
+    public WindowTinyLfuCache(long maximumWeight, ToIntFunction<V> weigher) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("maximum weight must be positive: " + maximumWeight);
+        }
+        this.maximumWeight = maximumWeight;
+        this.maximumWindowWeight = Math.max(1, maximumWeight * WINDOW_PERCENT / 100);
+        this.maximumProtectedWeight = (maximumWeight - maximumWindowWeight) * PROTECTED_PERCENT / 100;
+        this.weigher = weigher;
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        this.readBuffers = new ReadBuffer[Math.min(stripes, 64)];
+        for (int i = 0; i < readBuffers.length; i++) {
+            readBuffers[i] = new ReadBuffer<>();
+        }
+    }
+
+    /**
+     * キーの値を返します。ない場合はnullを返します
+     */
+    public V get(long key) {
+        Node<V> node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        ReadBuffer<V> buffer = readBuffers[(int) Thread.currentThread().threadId() & (readBuffers.length - 1)];
+        if (!buffer.offer(node) && lock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    /**
+     * 値を追加するか置き換え、重みの合計が上限を超えた分を追い出します
+     * 重みが上限を超える値は保持しません（同じキーの古い値も取り除きます）
+     */
+    public void put(long key, V value) {
+        int weight = weigher.applyAsInt(value);
+        if (weight > maximumWeight) {
+            invalidate(key);
+            return;
+        }
+        lock.lock();
+        try {
+            drainReadBuffers();
+            sketch.ensureCapacity(data.size() + 1);
+            sketch.increment(key);
+            Node<V> node = data.get(key);
+            if (node != null) {
+                int delta = weight - node.weight;
+                node.weight = weight;
+                node.value = value;
+                weightedSize += delta;
+                if (node.region == Region.WINDOW) {
+                    windowWeight += delta;
+                } else if (node.region == Region.PROTECTED) {
+                    protectedWeight += delta;
+                }
+                onAccess(node);
+            } else {
+                node = new Node<>(key, value, weight);
+                node.region = Region.WINDOW;
+                window.addLast(node);
+                windowWeight += weight;
+                weightedSize += weight;
+                data.put(key, node);
+            }
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(long key) {
+        lock.lock();
+        try {
+            Node<V> node = data.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long size() {
+        return data.size();
+    }
+
+    public long weightedSize() {
+        return weightedSize;
+    }
+
+    public long maximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * 容量の不足で追い出した要素の件数（invalidate で取り除いた要素は含みません）
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private void drainReadBuffers() {
+        for (ReadBuffer<V> buffer : readBuffers) {
+            buffer.drainTo(this);
+        }
+    }
+
+    private void onRead(Node<V> node) {
+        if (node.region == Region.REMOVED) {
+            return;
+        }
+        sketch.increment(node.key);
+        onAccess(node);
+    }
+
+    private void onAccess(Node<V> node) {
+        switch (node.region) {
+            case WINDOW -> window.moveToLast(node);
+            case PROBATION -> {
+                probation.remove(node);
+                node.region = Region.PROTECTED;
+                protectedOrder.addLast(node);
+                protectedWeight += node.weight;
+                // 保護からあふれた要素は試用に戻します
+                while (protectedWeight > maximumProtectedWeight) {
+                    Node<V> demoted = protectedOrder.first();
+                    protectedOrder.remove(demoted);
+                    protectedWeight -= demoted.weight;
+                    demoted.region = Region.PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+            case PROTECTED -> protectedOrder.moveToLast(node);
+            case REMOVED -> {
+            }
+        }
+    }
+
+    private void evict() {
+        // ウィンドウからあふれた要素を試用の末尾に移し、最初に移した要素から順に候補にします
+        Node<V> candidate = null;
+        while (windowWeight > maximumWindowWeight) {
+            Node<V> node = window.first();
+            window.remove(node);
+            windowWeight -= node.weight;
+            node.region = Region.PROBATION;
+            probation.addLast(node);
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+        while (weightedSize > maximumWeight) {
+            Node<V> victim = probation.first();
+            if (candidate == null || victim == null || victim == candidate) {
+                // 比べる相手がない場合は、試用・保護・ウィンドウの順に最も古い要素を追い出します
+                Node<V> oldest = victim != null ? victim
+                        : protectedOrder.first() != null ? protectedOrder.first() : window.first();
+                if (oldest == candidate) {
+                    candidate = candidate.next;
+                }
+                evict(oldest);
+                continue;
+            }
+            Node<V> next = candidate.next;
+            if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evict(victim);
+            } else {
+                evict(candidate);
+            }
+            candidate = next;
+        }
+    }
+
+    private void evict(Node<V> node) {
+        data.remove(node.key);
+        unlink(node);
+        evictions.increment();
+    }
+
+    private void unlink(Node<V> node) {
+        switch (node.region) {
+            case WINDOW -> {
+                window.remove(node);
+                windowWeight -= node.weight;
+            }
+            case PROBATION -> probation.remove(node);
+            case PROTECTED -> {
+                protectedOrder.remove(node);
+                protectedWeight -= node.weight;
+            }
+            case REMOVED -> {
+                return;
+            }
+        }
+        weightedSize -= node.weight;
+        node.region = Region.REMOVED;
+    }
+
+    private enum Region {
+        WINDOW,
+        PROBATION,
+        PROTECTED,
+        REMOVED
+    }
+
+    private static final class Node<V> {
+        final long key;
+        volatile V value;
+        // 以下はロックを保持して読み書きします
+        int weight;
+        Region region;
+        Node<V> prev;
+        Node<V> next;
+
+        Node(long key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * 参照された順（先頭が最も古い）に要素を並べる双方向リスト
+     */
+    private static final class AccessOrder<V> {
+        private Node<V> head;
+        private Node<V> tail;
+
+        Node<V> first() {
+            return head;
+        }
+
+        void addLast(Node<V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void remove(Node<V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToLast(Node<V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    /**
+     * 読み取りで参照された要素を記録する固定長のリングバッファ
+     * 追加はロックを取らずに行い、取り出しはキャッシュのロックを保持して行います
+     */
+    private static final class ReadBuffer<V> {
+        private static final int SIZE = 16;
+        private static final int MASK = SIZE - 1;
+
+        private final AtomicReferenceArray<Node<V>> slots = new AtomicReferenceArray<>(SIZE);
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+
+        /**
+         * 要素を記録します。バッファがいっぱいの場合はfalseを返します
+         * 他のスレッドと同時に記録しようとした場合は、記録を捨ててtrueを返します
+         */
+        boolean offer(Node<V> node) {
+            long t = tail.get();
+            if (t - head >= SIZE) {
+                return false;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.lazySet((int) (t & MASK), node);
+            }
+            return true;
+        }
+
+        void drainTo(WindowTinyLfuCache<V> cache) {
+            long h = head;
+            long t = tail.get();
+            for (; h < t; h++) {
+                int index = (int) (h & MASK);
+                Node<V> node = slots.get(index);
+                if (node == null) {
+                    // 枠を確保したスレッドがまだ書き込んでいません。次回の取り出しで反映します
+                    break;
+                }
+                slots.lazySet(index, null);
+                cache.onRead(node);
+            }
+            head = h;
+        }
+    }
+}
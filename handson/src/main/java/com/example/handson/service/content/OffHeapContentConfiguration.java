@@ -0,0 +1,21 @@
+package com.example.handson.service.content;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * handson.content.off-heap.enabled=true の場合に、投稿の本文をヒープ外に保持します
+ * 無効の場合（既定）は、従来どおり本文をヒープ上の文字列として保持します
+ */
+@Configuration
+@ConditionalOnProperty(name = "handson.content.off-heap.enabled", havingValue = "true")
+public class OffHeapContentConfiguration {
+
+    @Bean
+    public OffHeapContentStore offHeapContentStore(
+            @Value("${handson.content.off-heap.segment-size-bytes:4194304}") int segmentSize) {
+        return new OffHeapContentStore(segmentSize);
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.handson.service.content;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import com.example.handson.service.index.ConcurrentLongMap;
+
+/**
+ * 投稿の本文をヒープの外（ダイレクトバッファのセグメント）にUTF-8のバイト列として保持するストア
+ * 本文の多い投稿を大量に保持しても、ヒープの使用量とGCの停止時間が本文の量に比例して増えないようにします
+ *
+ * <p>本文は投稿IDをハンドルとして参照します。ヒープ上に残るのは投稿ごとの位置情報（Extent）だけです
+ * 小文字化した本文が元の本文と異なる場合は、キーワード照合用にその直後に続けて保存します
+ *
+ * <p>書き込みは現在のセグメントの末尾への追記で、1つのロックで直列化します。読み取りはロックを取りません
+ * 削除でセグメントの半分以上が不要になると、残っている本文を現在のセグメントへ移してそのセグメントを手放します（コンパクション）
+ * 手放したセグメントのメモリは、参照している読み取りがなくなった後にGCによって解放されます
+ */
+public class OffHeapContentStore {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 4 << 20;
+
+    // レコードの先頭には、コンパクション時に投稿IDと長さが分かるようにヘッダーを置きます
+    // 投稿ID(8) + 本文のバイト数(4) + 小文字化した本文のバイト数(4。本文と同じ場合は -1)
+    private static final int HEADER = 8 + 4 + 4;
+    private static final int SAME_AS_CONTENT = -1;
+
+    private final int segmentSize;
+    private final ConcurrentLongMap<Extent> extents = new ConcurrentLongMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    // 以下はロックを保持して読み書きします
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private long allocatedBytes;
+    private long liveBytes;
+
+    // 同じキーワードで投稿ごとに照合するため、直前のキーワードのUTF-8表現を使い回します
+    private volatile EncodedKeyword lastKeyword = new EncodedKeyword("", new byte[0]);
+
+    public OffHeapContentStore() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    public OffHeapContentStore(int segmentSize) {
+        if (segmentSize < HEADER) {
+            throw new IllegalArgumentException("segment size is too small: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 投稿の本文を保存します。同じIDの本文が既にある場合は置き換えます
+     */
+    public void put(long id, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        String folded = content.toLowerCase();
+        byte[] foldedBytes = folded.equals(content) ? null : folded.getBytes(StandardCharsets.UTF_8);
+        int recordSize = HEADER + bytes.length + (foldedBytes != null ? foldedBytes.length : 0);
+
+        lock.lock();
+        try {
+            Segment segment = segmentFor(recordSize);
+            int offset = segment.position;
+            ByteBuffer buffer = segment.buffer;
+            buffer.putLong(offset, id);
+            buffer.putInt(offset + 8, bytes.length);
+            buffer.putInt(offset + 12, foldedBytes != null ? foldedBytes.length : SAME_AS_CONTENT);
+            buffer.put(offset + HEADER, bytes);
+            if (foldedBytes != null) {
+                buffer.put(offset + HEADER + bytes.length, foldedBytes);
+            }
+            segment.position += recordSize;
+            segment.liveBytes += recordSize;
+            liveBytes += recordSize;
+            // バイト列を書き終えてから位置情報を公開するため、位置情報が見えた読み取りには本文も見えます
+            Extent previous = extents.put(id, new Extent(id, segment, offset, bytes.length,
+                    foldedBytes != null ? foldedBytes.length : SAME_AS_CONTENT, folded.length()));
+            if (previous != null) {
+                release(previous);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 本文をデコードして返します。保存されていない場合はnullを返します
+     */
+    public String get(long id) {
+        Extent extent = extents.get(id);
+        return extent != null ? decode(extent, extent.contentOffset(), extent.length()) : null;
+    }
+
+    /**
+     * 現在の本文をデコードする関数を返します。保存されていない場合、関数はnullを返します
+     * 本文の位置を呼び出した時点で確定させるため、後から本文が削除・移動されても同じ本文をデコードします
+     * （レコードは書き換えず、手放したセグメントも参照が残っている間は解放されないため）
+     */
+    public Supplier<String> loader(long id) {
+        Extent extent = extents.get(id);
+        return extent != null ? () -> decode(extent, extent.contentOffset(), extent.length()) : () -> null;
+    }
+
+    /**
+     * 小文字化した本文をデコードして返します。保存されていない場合はnullを返します
+     */
+    public String getFolded(long id) {
+        Extent extent = extents.get(id);
+        return extent != null ? decode(extent, extent.foldedOffset(), extent.foldedByteCount()) : null;
+    }
+
+    /**
+     * 小文字化した本文の文字数を返します。保存されていない場合は -1 を返します
+     */
+    public int foldedLength(long id) {
+        Extent extent = extents.get(id);
+        return extent != null ? extent.foldedChars() : -1;
+    }
+
+    /**
+     * content.toLowerCase().contains(foldedKeyword) と同じ結果を、文字列を作らずにバイト列の照合で返します
+     * UTF-8は文字の境界が自己同期するため、バイト列としての部分一致は文字列としての部分一致と一致します
+     */
+    public boolean containsFolded(long id, String foldedKeyword) {
+        Extent extent = extents.get(id);
+        if (extent == null) {
+            return false;
+        }
+        byte[] keyword = encode(foldedKeyword);
+        ByteBuffer buffer = extent.segment().buffer;
+        int start = extent.foldedOffset();
+        int last = start + extent.foldedByteCount() - keyword.length;
+        if (keyword.length == 0) {
+            return true;
+        }
+        for (int i = start; i <= last; i++) {
+            if (buffer.get(i) != keyword[0]) {
+                continue;
+            }
+            int j = 1;
+            while (j < keyword.length && buffer.get(i + j) == keyword[j]) {
+                j++;
+            }
+            if (j == keyword.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 本文を削除し、削除した場合はtrueを返します
+     */
+    public boolean remove(long id) {
+        lock.lock();
+        try {
+            Extent extent = extents.remove(id);
+            if (extent == null) {
+                return false;
+            }
+            release(extent);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 本文を保存している投稿のIDを返します（順不同）
+     */
+    public List<Long> ids() {
+        List<Long> ids = new ArrayList<>();
+        for (Extent extent : extents) {
+            ids.add(extent.id());
+        }
+        return ids;
+    }
+
+    public long size() {
+        return extents.size();
+    }
+
+    /**
+     * 確保しているセグメントの合計バイト数を返します
+     */
+    public long allocatedBytes() {
+        lock.lock();
+        try {
+            return allocatedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 削除されていないレコードの合計バイト数を返します
+     */
+    public long liveBytes() {
+        lock.lock();
+        try {
+            return liveBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Segment segmentFor(int recordSize) {
+        if (active != null && active.position + recordSize <= active.buffer.capacity()) {
+            return active;
+        }
+        Segment sealed = active;
+        // セグメントより大きい本文には、その本文だけのセグメントを割り当てます
+        active = new Segment(Math.max(segmentSize, recordSize));
+        segments.add(active);
+        allocatedBytes += active.buffer.capacity();
+        if (sealed != null) {
+            compactIfSparse(sealed);
+        }
+        return active;
+    }
+
+    private void release(Extent extent) {
+        Segment segment = extent.segment();
+        int recordSize = extent.recordSize();
+        segment.liveBytes -= recordSize;
+        liveBytes -= recordSize;
+        if (segment != active) {
+            compactIfSparse(segment);
+        }
+    }
+
+    /**
+     * 使われている領域が半分を下回ったセグメントの本文を現在のセグメントへ移し、セグメントを手放します
+     * 移動中の本文を読み取っている処理は古いセグメントへの参照を保持しているため、そのまま読み終えられます
+     */
+    private void compactIfSparse(Segment segment) {
+        if (segment.liveBytes * 2L >= segment.position || !segments.contains(segment)) {
+            return;
+        }
+        segments.remove(segment);
+        allocatedBytes -= segment.buffer.capacity();
+        ByteBuffer source = segment.buffer;
+        for (int offset = 0; offset < segment.position && segment.liveBytes > 0;) {
+            long id = source.getLong(offset);
+            int length = source.getInt(offset + 8);
+            int foldedBytes = source.getInt(offset + 12);
+            int recordSize = HEADER + length + Math.max(foldedBytes, 0);
+            Extent extent = extents.get(id);
+            if (extent != null && extent.segment() == segment && extent.offset() == offset) {
+                Segment target = segmentFor(recordSize);
+                int targetOffset = target.position;
+                byte[] record = new byte[recordSize];
+                source.get(offset, record);
+                target.buffer.put(targetOffset, record);
+                target.position += recordSize;
+                target.liveBytes += recordSize;
+                segment.liveBytes -= recordSize;
+                extents.put(id, new Extent(id, target, targetOffset, length, foldedBytes, extent.foldedChars()));
+            }
+            offset += recordSize;
+        }
+    }
+
+    private static String decode(Extent extent, int offset, int length) {
+        byte[] bytes = new byte[length];
+        extent.segment().buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private byte[] encode(String keyword) {
+        EncodedKeyword last = lastKeyword;
+        if (last.keyword().equals(keyword)) {
+            return last.bytes();
+        }
+        byte[] bytes = keyword.getBytes(StandardCharsets.UTF_8);
+        lastKeyword = new EncodedKeyword(keyword, bytes);
+        return bytes;
+    }
+
+    private record EncodedKeyword(String keyword, byte[] bytes) {
+    }
+
+    /**
+     * 本文1件の位置。小文字化した本文が元の本文と同じ場合は foldedLength が -1 です
+     */
+    private record Extent(long id, Segment segment, int offset, int length, int foldedLength, int foldedChars) {
+
+        int contentOffset() {
+            return offset + HEADER;
+        }
+
+        int foldedOffset() {
+            return foldedLength == SAME_AS_CONTENT ? contentOffset() : contentOffset() + length;
+        }
+
+        int foldedByteCount() {
+            return foldedLength == SAME_AS_CONTENT ? length : foldedLength;
+        }
+
+        int recordSize() {
+            return HEADER + length + Math.max(foldedLength, 0);
+        }
+    }
+
+    private static final class Segment {
+        final ByteBuffer buffer;
+        // 以下はストアのロックを保持して読み書きします
+        int position;
+        int liveBytes;
+
+        Segment(int capacity) {
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package com.example.handson.service.index;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * キーをプリミティブの long のまま保持する並行ハッシュマップ
+ * ConcurrentHashMap や ConcurrentSkipListMap と違い、キーのボクシングもエントリごとのノードも必要ありません
+ *
+ * <p>キーのハッシュ値で選んだセグメントごとに、線形探索のオープンアドレス法の表を持ちます
+ * 読み取りはロックを取らず、書き込みはセグメントごとのロックで直列化します
+ * ただし既存の値の置き換えと削除は、期待する値と比べて入れ替える（CAS）ロックを取らない操作も使えます（replace, remove）
+ * 表の拡張もセグメントごとに新しい表を作って差し替えるため、他のセグメントの書き込みや読み取りは止まりません
+ * 差し替える前に古い表の値を Moved で包んで固定するため、拡張と同時に行われたCASの更新が新しい表に移し漏れることはありません
+ *
+ * <p>反復は ConcurrentHashMap と同じく弱い一貫性で、反復中の更新は反映される場合とされない場合があります
+ */
+public class ConcurrentLongMap<V> implements Iterable<V> {
+
+    /**
+     * キーと現在の値から新しい値を求める関数。キーをボクシングせずに渡します
+     */
+    @FunctionalInterface
+    public interface Remapping<V> {
+        V apply(long key, V value);
+    }
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final int MIN_CAPACITY = 16;
+    // 探索の長さを抑えるため、削除済みを含めて使用中のスロットが半分を超えたら表を作り直します
+    private static final int MAX_LOAD_PERCENT = 50;
+    // 0 は空きスロットの印に使うため、キー 0 の値はセグメントのフィールドに別に持ちます
+    private static final long EMPTY = 0L;
+
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final VarHandle ZERO_VALUE;
+    private static final VarHandle COUNT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            ZERO_VALUE = lookup.findVarHandle(Segment.class, "zeroValue", Object.class);
+            COUNT = lookup.findVarHandle(Segment.class, "count", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public ConcurrentLongMap() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    public V get(long key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        if (key == EMPTY) {
+            return cast(segment.zeroValue);
+        }
+        Table table = segment.table;
+        int slot = table.find(key, hash);
+        return slot < 0 ? null : cast(unwrap(VALUES.getAcquire(table.values, slot)));
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * 値を設定し、以前の値（なければnull）を返します
+     */
+    public V put(long key, V value) {
+        return update(key, value, false);
+    }
+
+    /**
+     * 値がない場合だけ設定し、既存の値（なければnull）を返します
+     */
+    public V putIfAbsent(long key, V value) {
+        return update(key, value, true);
+    }
+
+    /**
+     * 値がある場合に関数の結果で置き換え、新しい値を返します。関数がnullを返した場合は削除します
+     * 関数はセグメントのロックを保持したまま呼ばれるため、短く、このマップを操作しないものにしてください
+     * ロックを取らない replace や remove と競合した場合は、新しい値に対してもう一度呼ばれます
+     */
+    public V computeIfPresent(long key, Remapping<V> remapping) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            Table table = segment.table;
+            int slot = key == EMPTY ? -1 : table.find(key, hash);
+            if (key != EMPTY && slot < 0) {
+                return null;
+            }
+            while (true) {
+                V current = cast(key == EMPTY ? segment.zeroValue : VALUES.getAcquire(table.values, slot));
+                if (current == null) {
+                    return null;
+                }
+                V next = remapping.apply(key, current);
+                if (compareAndSet(segment, table, slot, current, next)) {
+                    if (next == null) {
+                        COUNT.getAndAdd(segment, -1);
+                    }
+                    return next;
+                }
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * 値を削除し、削除した値（なければnull）を返します
+     */
+    public V remove(long key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            Table table = segment.table;
+            int slot = key == EMPTY ? -1 : table.find(key, hash);
+            if (key != EMPTY && slot < 0) {
+                return null;
+            }
+            while (true) {
+                V previous = cast(key == EMPTY ? segment.zeroValue : VALUES.getAcquire(table.values, slot));
+                if (previous == null) {
+                    return null;
+                }
+                // キーは残したまま値だけを消します。読み取り側の探索はこのスロットを越えて続けられます
+                if (compareAndSet(segment, table, slot, previous, null)) {
+                    COUNT.getAndAdd(segment, -1);
+                    return previous;
+                }
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * 現在の値が expected（同一のインスタンス）の場合だけ next に置き換えます。ロックは取りません
+     * 不変の値を置き換えることで、読み取りと同じくロックを取らずに状態を遷移させるために使います
+     *
+     * @return 置き換えた場合はtrue、値がないか expected と異なる場合はfalse
+     */
+    public boolean replace(long key, V expected, V next) {
+        if (expected == null || next == null) {
+            throw new NullPointerException(expected == null ? "expected" : "next");
+        }
+        return casExisting(key, expected, next);
+    }
+
+    /**
+     * 現在の値が expected（同一のインスタンス）の場合だけ削除します。ロックは取りません
+     *
+     * @return 削除した場合はtrue
+     */
+    public boolean remove(long key, V expected) {
+        if (expected == null) {
+            throw new NullPointerException("expected");
+        }
+        if (!casExisting(key, expected, null)) {
+            return false;
+        }
+        COUNT.getAndAdd(segmentFor(hash(key)), -1);
+        return true;
+    }
+
+    private boolean casExisting(long key, V expected, V next) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        while (true) {
+            if (key == EMPTY) {
+                return ZERO_VALUE.compareAndSet(segment, expected, next);
+            }
+            Table table = segment.table;
+            int slot = table.find(key, hash);
+            if (slot < 0) {
+                return false;
+            }
+            Object current = VALUES.getAcquire(table.values, slot);
+            if (current instanceof Moved) {
+                // 表の拡張中です。拡張はロックを保持して行うため、ロックの解放を待ってから新しい表で試します
+                segment.lock.lock();
+                segment.lock.unlock();
+                continue;
+            }
+            if (current != expected) {
+                return false;
+            }
+            if (VALUES.compareAndSet(table.values, slot, expected, next)) {
+                return true;
+            }
+        }
+    }
+
+    // ロックを保持して呼びます。ロックを取らない書き込みと競合した場合はfalseを返します
+    private static boolean compareAndSet(Segment segment, Table table, int slot, Object expected, Object next) {
+        return slot < 0 ? ZERO_VALUE.compareAndSet(segment, expected, next)
+                : VALUES.compareAndSet(table.values, slot, expected, next);
+    }
+
+    /**
+     * 値の件数を返します。更新中はセグメントごとの件数を足し合わせた近似値になります
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.count;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 値を順不同で返します
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new ValueIterator();
+    }
+
+    private V update(long key, V value, boolean onlyIfAbsent) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            Table table = segment.table;
+            int slot = key == EMPTY ? -1 : table.find(key, hash);
+            if (key == EMPTY || slot >= 0) {
+                while (true) {
+                    V previous = cast(key == EMPTY ? segment.zeroValue : VALUES.getAcquire(table.values, slot));
+                    if (previous != null && onlyIfAbsent) {
+                        return previous;
+                    }
+                    if (compareAndSet(segment, table, slot, previous, value)) {
+                        if (previous == null) {
+                            COUNT.getAndAdd(segment, 1);
+                        }
+                        return previous;
+                    }
+                }
+            }
+            if ((segment.used + 1) * 100L > (long) table.keys.length * MAX_LOAD_PERCENT) {
+                table = segment.rebuild();
+            }
+            // 値を先に書いてからキーを公開するため、キーが見えた読み取りには必ず値も見えます
+            slot = table.freeSlot(hash);
+            VALUES.setRelease(table.values, slot, value);
+            KEYS.setRelease(table.keys, slot, key);
+            segment.used++;
+            COUNT.getAndAdd(segment, 1);
+            return null;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (Long.SIZE - SEGMENT_BITS))];
+    }
+
+    // 連番のIDでも上位ビット（セグメントの選択）と下位ビット（スロットの選択）の両方が散らばるように混ぜます
+    private static long hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    private static Object unwrap(Object value) {
+        return value instanceof Moved moved ? moved.value : value;
+    }
+
+    /**
+     * 拡張で新しい表に移した値。古い表のスロットをこれで置き換え、以降のCASが失敗するようにします
+     * 古い表を読んでいる読み取りには、包んだ値をそのまま返します
+     */
+    private record Moved(Object value) {
+    }
+
+    /**
+     * オープンアドレス法の表。差し替えた後の古い表は書き換えないため、読み取り中の表が途中で壊れることはありません
+     * 一度書いたスロットのキーは変わらず、削除は値をnullにすることで表します
+     */
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+        }
+
+        int find(long key, long hash) {
+            for (int slot = (int) hash & mask;; slot = (slot + 1) & mask) {
+                long current = (long) KEYS.getAcquire(keys, slot);
+                if (current == key) {
+                    return slot;
+                }
+                if (current == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        int freeSlot(long hash) {
+            int slot = (int) hash & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+    private static final class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile Table table = new Table(MIN_CAPACITY);
+        volatile Object zeroValue;
+        // 値のあるエントリ数（キー 0 を含む）。ロックを取らない削除もあるため COUNT で増減します
+        volatile int count;
+        // 削除済みを含めてキーを書いたスロットの数。ロックを保持して読み書きします
+        int used;
+
+        /**
+         * 生きているエントリだけを、件数に見合った大きさの新しい表に移して差し替えます
+         * 削除済みのスロットもここで取り除かれます
+         */
+        Table rebuild() {
+            Table old = table;
+            int live = count - (zeroValue != null ? 1 : 0);
+            int capacity = MIN_CAPACITY;
+            while ((live + 1) * 100L * 2 > (long) capacity * MAX_LOAD_PERCENT) {
+                capacity <<= 1;
+            }
+            Table next = new Table(capacity);
+            int moved = 0;
+            for (int i = 0; i < old.keys.length; i++) {
+                Object value = freeze(old.values, i);
+                if (value != null) {
+                    int slot = next.freeSlot(hash(old.keys[i]));
+                    next.keys[slot] = old.keys[i];
+                    next.values[slot] = value;
+                    moved++;
+                }
+            }
+            used = moved;
+            // volatile書き込みで公開するため、新しい表の中身は読み取り側から完成した状態で見えます
+            table = next;
+            return next;
+        }
+
+        /**
+         * スロットの値を Moved で包んで固定し、固定した値を返します
+         * 値がない（削除済みの）スロットは、ロックを取らない書き込みが値を入れることはないため固定しません
+         */
+        private static Object freeze(Object[] values, int i) {
+            while (true) {
+                Object value = VALUES.getAcquire(values, i);
+                if (value == null || VALUES.compareAndSet(values, i, value, new Moved(value))) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    private final class ValueIterator implements Iterator<V> {
+        private int segmentIndex = -1;
+        private Table table;
+        private int slot;
+        private V next;
+
+        ValueIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public V next() {
+            V result = next;
+            if (result == null) {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return result;
+        }
+
+        private void advance() {
+            next = null;
+            while (true) {
+                if (table != null) {
+                    while (slot < table.values.length) {
+                        V value = cast(unwrap(VALUES.getAcquire(table.values, slot++)));
+                        if (value != null) {
+                            next = value;
+                            return;
+                        }
+                    }
+                }
+                if (++segmentIndex >= SEGMENTS) {
+                    return;
+                }
+                Segment segment = segments[segmentIndex];
+                table = segment.table;
+                slot = 0;
+                V zero = cast(segment.zeroValue);
+                if (zero != null) {
+                    next = zero;
+                    return;
+                }
+            }
+        }
+    }
+}
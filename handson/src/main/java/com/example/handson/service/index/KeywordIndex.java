@@ -0,0 +1,325 @@
+package com.example.handson.service.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongPredicate;
+
+/**
+ * 投稿本文のキーワード検索用の転置インデックス
+ * 1文字・2文字のn-gramごとに、投稿IDと出現回数のポスティングをIDの昇順のプリミティブの配列で保持します
+ * 検索時はキーワードのn-gramを持つ候補だけを元の本文との部分一致で検証するため、結果は String#contains と同じになります
+ * 小文字化した本文は登録時にn-gramを数えるためだけに作り、保持しません
+ * 出現回数と本文の長さを使って、BM25によるスコア順の検索も行えます
+ */
+public class KeywordIndex {
+
+    private static final int GRAM_SIZE = 2;
+    // BM25のパラメータ（一般的な既定値）
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final Map<String, PostingList> postings = new ConcurrentHashMap<>();
+    // 登録済みの投稿IDと、本文の文字数 + 1（値は0より大きい必要があるため）。更新は documentsLock で直列化します
+    private final PostingList documents = new PostingList();
+    private final ReentrantLock documentsLock = new ReentrantLock();
+    private final AtomicLong totalLength = new AtomicLong();
+    private final Texts texts;
+
+    /**
+     * 候補の照合に、指定された関数から投稿の本文を参照します（本文は投稿の保存先が持ちます）
+     */
+    public KeywordIndex(Texts texts) {
+        this.texts = texts;
+    }
+
+    public void add(long id, String content) {
+        if (content == null) {
+            return;
+        }
+        String folded = content.toLowerCase();
+        indexGrams(folded).forEach((gram, frequency) -> postings.compute(gram, (key, list) -> {
+            PostingList target = list != null ? list : new PostingList();
+            target.put(id, frequency);
+            return target;
+        }));
+        documentsLock.lock();
+        try {
+            int previous = documents.value(id);
+            documents.put(id, folded.length() + 1);
+            totalLength.addAndGet(folded.length() - Math.max(previous - 1, 0));
+        } finally {
+            documentsLock.unlock();
+        }
+    }
+
+    /**
+     * 複数の投稿をまとめて登録します
+     * n-gramごとのポスティングをバッチ内で集約してから反映するため、同じn-gramの更新は1回で済みます
+     */
+    public void addAll(Map<Long, String> contents) {
+        Map<String, PostingList.Builder> batch = new HashMap<>();
+        PostingList.Builder lengths = new PostingList.Builder();
+        long length = 0;
+        for (Map.Entry<Long, String> entry : contents.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            long id = entry.getKey();
+            String folded = entry.getValue().toLowerCase();
+            lengths.add(id, folded.length() + 1);
+            length += folded.length();
+            indexGrams(folded).forEach((gram, frequency) ->
+                    batch.computeIfAbsent(gram, key -> new PostingList.Builder()).add(id, frequency));
+        }
+        batch.forEach((gram, frequencies) -> postings.compute(gram, (key, list) -> {
+            PostingList target = list != null ? list : new PostingList();
+            target.putAll(frequencies);
+            return target;
+        }));
+        documentsLock.lock();
+        try {
+            // 登録し直す投稿は、前の本文の長さを差し引きます
+            for (Map.Entry<Long, String> entry : contents.entrySet()) {
+                if (entry.getValue() != null) {
+                    length -= Math.max(documents.value(entry.getKey()) - 1, 0);
+                }
+            }
+            documents.putAll(lengths);
+            totalLength.addAndGet(length);
+        } finally {
+            documentsLock.unlock();
+        }
+    }
+
+    /**
+     * 投稿を取り除きます。content には登録した本文を指定します（取り除くn-gramを本文から求めるため）
+     */
+    public void remove(long id, String content) {
+        if (content == null) {
+            return;
+        }
+        documentsLock.lock();
+        try {
+            int length = documents.value(id);
+            if (length == 0) {
+                return;
+            }
+            documents.remove(id);
+            totalLength.addAndGet(-(length - 1));
+        } finally {
+            documentsLock.unlock();
+        }
+        for (String gram : indexGrams(content.toLowerCase()).keySet()) {
+            postings.computeIfPresent(gram, (key, list) -> list.remove(id) ? null : list);
+        }
+    }
+
+    /**
+     * 本文にキーワードを含む投稿IDを返します（大文字・小文字は区別しません）
+     */
+    public List<Long> search(String keyword) {
+        String foldedKeyword = keyword.toLowerCase();
+        if (foldedKeyword.isEmpty()) {
+            return ids(documents.snapshot());
+        }
+
+        List<PostingList.Block> lists = postingsOf(queryGrams(foldedKeyword));
+        if (lists.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Long> result = new ArrayList<>();
+        PostingList.Block first = lists.get(0);
+        for (int i = 0; i < first.size(); i++) {
+            long id = first.ids()[i];
+            if (first.values()[i] != 0 && containsInAll(lists, id) && texts.containsFolded(id, foldedKeyword)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * キーワードにマッチする投稿数の上限（最も短いポスティングの長さ）を返します
+     */
+    public long estimate(String keyword) {
+        String foldedKeyword = keyword.toLowerCase();
+        if (foldedKeyword.isEmpty()) {
+            return documents.size();
+        }
+        long min = Long.MAX_VALUE;
+        for (String gram : queryGrams(foldedKeyword)) {
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                return 0;
+            }
+            min = Math.min(min, list.size());
+        }
+        return min;
+    }
+
+    /**
+     * クエリの語（空白区切りの語ごとのn-gram）をすべて含む投稿を、BM25のスコアが高い順に最大k件返します
+     * 最も短いポスティングから1件ずつスコアを計算し、件数kの最小ヒープで上位だけを保持するため、
+     * 使用するメモリはマッチした件数ではなくkに比例します
+     *
+     * @param filter 対象にする投稿IDの条件（状態による絞り込みなど）
+     */
+    public List<Scored> rank(String query, int k, LongPredicate filter) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String word : query.toLowerCase().split("\\s+")) {
+            if (!word.isEmpty()) {
+                terms.addAll(queryGrams(word));
+            }
+        }
+        List<PostingList.Block> lists = postingsOf(terms);
+        PostingList.Block lengths = documents.snapshot();
+        long documentCount = lengths.live();
+        if (lists.isEmpty() || documentCount == 0 || k <= 0) {
+            return Collections.emptyList();
+        }
+
+        double averageLength = Math.max(1.0, (double) totalLength.get() / documentCount);
+        double[] idf = new double[lists.size()];
+        for (int i = 0; i < lists.size(); i++) {
+            double df = lists.get(i).live();
+            idf[i] = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+        }
+
+        // スコアが同じ場合はIDの小さい方を上位とします
+        Comparator<Scored> order = Comparator.comparingDouble(Scored::score)
+                .thenComparing(Comparator.comparingLong(Scored::id).reversed());
+        PriorityQueue<Scored> top = new PriorityQueue<>(k + 1, order);
+        PostingList.Block first = lists.get(0);
+        for (int i = 0; i < first.size(); i++) {
+            long id = first.ids()[i];
+            int frequency = first.values()[i];
+            int length = lengths.value(id) - 1;
+            if (frequency == 0 || length < 0 || !filter.test(id)) {
+                continue;
+            }
+            double score = score(lists, idf, frequency, id, K1 * (1 - B + B * length / averageLength));
+            if (score < 0) {
+                continue;
+            }
+            Scored scored = new Scored(id, score);
+            if (top.size() < k) {
+                top.add(scored);
+            } else if (order.compare(scored, top.peek()) > 0) {
+                top.poll();
+                top.add(scored);
+            }
+        }
+
+        List<Scored> result = new ArrayList<>(top);
+        result.sort(order.reversed());
+        return result;
+    }
+
+    // すべての語を含まない投稿は -1 を返します
+    private static double score(List<PostingList.Block> lists, double[] idf, int firstFrequency, long id,
+            double lengthNorm) {
+        double score = 0;
+        for (int i = 0; i < lists.size(); i++) {
+            int frequency = i == 0 ? firstFrequency : lists.get(i).value(id);
+            if (frequency == 0) {
+                return -1;
+            }
+            score += idf[i] * frequency * (K1 + 1) / (frequency + lengthNorm);
+        }
+        return score;
+    }
+
+    /**
+     * 語ごとのポスティングを、読み始めた時点の短い順に返します。存在しない語が1つでもあれば空のリストを返します
+     */
+    private List<PostingList.Block> postingsOf(Set<String> grams) {
+        List<PostingList.Block> lists = new ArrayList<>();
+        for (String gram : grams) {
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                return Collections.emptyList();
+            }
+            lists.add(list.snapshot());
+        }
+        lists.sort(Comparator.comparingInt(PostingList.Block::live));
+        return lists;
+    }
+
+    private static boolean containsInAll(List<PostingList.Block> lists, long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (lists.get(i).value(id) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Long> ids(PostingList.Block block) {
+        List<Long> result = new ArrayList<>(block.live());
+        for (int i = 0; i < block.size(); i++) {
+            if (block.values()[i] != 0) {
+                result.add(block.ids()[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 本文から登録するn-gram（1文字と2文字）と、その出現回数を列挙します
+     */
+    private static Map<String, Integer> indexGrams(String text) {
+        Map<String, Integer> result = new HashMap<>();
+        for (int i = 0; i < text.length(); i++) {
+            result.merge(text.substring(i, i + 1), 1, Integer::sum);
+            if (i + GRAM_SIZE <= text.length()) {
+                result.merge(text.substring(i, i + GRAM_SIZE), 1, Integer::sum);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * キーワードの照会に使うn-gramを列挙します
+     * 1文字のキーワードは1-gram、それ以外は2-gramで候補を絞り込みます
+     */
+    private static Set<String> queryGrams(String keyword) {
+        Set<String> result = new LinkedHashSet<>();
+        if (keyword.length() < GRAM_SIZE) {
+            result.add(keyword);
+            return result;
+        }
+        for (int i = 0; i + GRAM_SIZE <= keyword.length(); i++) {
+            result.add(keyword.substring(i, i + GRAM_SIZE));
+        }
+        return result;
+    }
+
+    /**
+     * スコア付きの投稿ID
+     */
+    public record Scored(long id, double score) {
+    }
+
+    /**
+     * 候補の照合に使う、投稿の本文の参照先
+     */
+    @FunctionalInterface
+    public interface Texts {
+
+        /**
+         * 投稿の本文を小文字化したものが foldedKeyword を含むかを返します。投稿がない場合はfalseを返します
+         */
+        boolean containsFolded(long id, String foldedKeyword);
+    }
+}
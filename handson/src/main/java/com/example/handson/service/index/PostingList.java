@@ -0,0 +1,252 @@
+package com.example.handson.service.index;
+
+import java.util.Arrays;
+
+/**
+ * 投稿IDと値（n-gramの出現回数など、0より大きい int）を、IDの昇順に並べたプリミティブの配列で保持するポスティングリスト
+ * 投稿ごとにノードやボクシングした値を持たないため、1件あたりの保持量は配列の要素の12バイト（ID 8 + 値 4）だけです
+ *
+ * <p>書き込みは呼び出し側がリストごとに直列化します。読み取りはロックを取らず、読み始めた時点の Block を最後まで使います
+ * 書き込みは次のように、読み取り中の Block の範囲を書き換えません
+ * <ul>
+ * <li>末尾への追加: 配列の空きに書いてから、件数を増やした Block を公開します。古い Block の件数より後ろは読まれません
+ * <li>削除: 値を0にして削除済みの印にし、削除済みが半分を超えたら詰めた配列の Block に差し替えます
+ * <li>途中への追加（IDの昇順に追加されなかった場合）: 挿入した新しい配列の Block に差し替えます
+ * </ul>
+ */
+final class PostingList {
+
+    private static final int MIN_CAPACITY = 2;
+
+    private volatile Block block = new Block(new long[MIN_CAPACITY], new int[MIN_CAPACITY], 0, 0);
+
+    /**
+     * 読み始めた時点のリスト。値が0の要素は削除済みです
+     */
+    record Block(long[] ids, int[] values, int size, int live) {
+
+        /**
+         * IDの値を返します。ない場合は0を返します
+         */
+        int value(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            return index >= 0 ? values[index] : 0;
+        }
+    }
+
+    Block snapshot() {
+        return block;
+    }
+
+    /**
+     * 削除されていない要素の件数を返します
+     */
+    int size() {
+        return block.live;
+    }
+
+    int value(long id) {
+        return block.value(id);
+    }
+
+    /**
+     * IDの値を設定します。value は0より大きい値です
+     */
+    void put(long id, int value) {
+        Block current = block;
+        int size = current.size;
+        if (size == 0 || id > current.ids[size - 1]) {
+            Block target = size < current.ids.length ? current : grow(current, 1);
+            target.ids[target.size] = id;
+            target.values[target.size] = value;
+            block = new Block(target.ids, target.values, target.size + 1, target.live + 1);
+            return;
+        }
+        int index = Arrays.binarySearch(current.ids, 0, size, id);
+        if (index >= 0) {
+            boolean removed = current.values[index] == 0;
+            current.values[index] = value;
+            if (removed) {
+                block = new Block(current.ids, current.values, size, current.live + 1);
+            }
+            return;
+        }
+        int insertion = -(index + 1);
+        long[] ids = new long[capacity(size + 1)];
+        int[] values = new int[ids.length];
+        System.arraycopy(current.ids, 0, ids, 0, insertion);
+        System.arraycopy(current.values, 0, values, 0, insertion);
+        ids[insertion] = id;
+        values[insertion] = value;
+        System.arraycopy(current.ids, insertion, ids, insertion + 1, size - insertion);
+        System.arraycopy(current.values, insertion, values, insertion + 1, size - insertion);
+        block = new Block(ids, values, size + 1, current.live + 1);
+    }
+
+    /**
+     * 一括登録でまとめた要素を設定します
+     * すべて末尾より大きい場合は配列の末尾にまとめて追加し、そうでない場合は既存の要素と併合した配列に差し替えます
+     */
+    void putAll(Builder batch) {
+        batch.sort();
+        long[] ids = batch.ids;
+        int[] values = batch.values;
+        int count = batch.size;
+        if (count == 0) {
+            return;
+        }
+        Block current = block;
+        int size = current.size;
+        if (size == 0 || ids[0] > current.ids[size - 1]) {
+            Block target = size + count <= current.ids.length ? current : grow(current, count);
+            System.arraycopy(ids, 0, target.ids, target.size, count);
+            System.arraycopy(values, 0, target.values, target.size, count);
+            block = new Block(target.ids, target.values, target.size + count, target.live + count);
+            return;
+        }
+        long[] mergedIds = new long[capacity(current.live + count)];
+        int[] mergedValues = new int[mergedIds.length];
+        int merged = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < count) {
+            if (i < size && current.values[i] == 0) {
+                i++;
+                continue;
+            }
+            long next;
+            int value;
+            if (j == count || (i < size && current.ids[i] < ids[j])) {
+                next = current.ids[i];
+                value = current.values[i++];
+            } else {
+                if (i < size && current.ids[i] == ids[j]) {
+                    i++;
+                }
+                next = ids[j];
+                value = values[j++];
+            }
+            mergedIds[merged] = next;
+            mergedValues[merged++] = value;
+        }
+        block = new Block(mergedIds, mergedValues, merged, merged);
+    }
+
+    /**
+     * IDを削除し、削除した結果リストが空になった場合はtrueを返します
+     */
+    boolean remove(long id) {
+        Block current = block;
+        int index = Arrays.binarySearch(current.ids, 0, current.size, id);
+        if (index < 0 || current.values[index] == 0) {
+            return current.live == 0;
+        }
+        current.values[index] = 0;
+        int live = current.live - 1;
+        if (live * 2 < current.size && current.size > MIN_CAPACITY) {
+            block = compact(current, live);
+        } else {
+            block = new Block(current.ids, current.values, current.size, live);
+        }
+        return live == 0;
+    }
+
+    // 削除済みの要素を除いて、さらに additional 件を追加できる配列に移します
+    private static Block grow(Block current, int additional) {
+        Block compacted = compact(current, current.live);
+        if (compacted.size + additional <= compacted.ids.length) {
+            return compacted;
+        }
+        long[] ids = Arrays.copyOf(compacted.ids, capacity(compacted.size + additional));
+        int[] values = Arrays.copyOf(compacted.values, ids.length);
+        return new Block(ids, values, compacted.size, compacted.live);
+    }
+
+    private static Block compact(Block current, int live) {
+        long[] ids = new long[capacity(live)];
+        int[] values = new int[ids.length];
+        int size = 0;
+        for (int i = 0; i < current.size; i++) {
+            if (current.values[i] != 0) {
+                ids[size] = current.ids[i];
+                values[size++] = current.values[i];
+            }
+        }
+        return new Block(ids, values, size, size);
+    }
+
+    // 追加が続いても配列の作り直しが償却定数回で済むよう、1.5倍の余裕を持たせます
+    private static int capacity(int size) {
+        return Math.max(MIN_CAPACITY, size + (size >> 1));
+    }
+
+    /**
+     * 一括登録する要素を、IDの重複なしに追加順で集めるバッファ
+     */
+    static final class Builder {
+        private long[] ids = new long[MIN_CAPACITY];
+        private int[] values = new int[MIN_CAPACITY];
+        private int size;
+
+        void add(long id, int value) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, capacity(size + 1));
+                values = Arrays.copyOf(values, ids.length);
+            }
+            ids[size] = id;
+            values[size++] = value;
+        }
+
+        // 投稿IDの順に追加されることが多いため、並んでいる場合は並べ替えません
+        private void sort() {
+            for (int i = 1; i < size; i++) {
+                if (ids[i - 1] > ids[i]) {
+                    sortByIds(ids, values, 0, size);
+                    return;
+                }
+            }
+        }
+    }
+
+    // ids の昇順に、values も同じ順に並べ替えます
+    private static void sortByIds(long[] ids, int[] values, int from, int to) {
+        while (to - from > 16) {
+            long pivot = ids[(from + to) >>> 1];
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (ids[i] < pivot) {
+                    i++;
+                }
+                while (ids[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(ids, values, i++, j--);
+                }
+            }
+            // 短い方を再帰で、長い方をループで処理して、再帰の深さを抑えます
+            if (j - from < to - i) {
+                sortByIds(ids, values, from, j + 1);
+                from = i;
+            } else {
+                sortByIds(ids, values, i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && ids[j - 1] > ids[j]; j--) {
+                swap(ids, values, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(long[] ids, int[] values, int i, int j) {
+        long id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.handson.service.index;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 日時（エポックナノ秒）の順に投稿IDを保持する二次インデックス
+ * 同じ日時の投稿はIDの昇順に並びます
+ */
+public class TimeIndex {
+
+    private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    public void add(long id, long epochNanos) {
+        entries.add(new Entry(epochNanos, id));
+    }
+
+    public void remove(long id, long epochNanos) {
+        entries.remove(new Entry(epochNanos, id));
+    }
+
+    /**
+     * from以降かつto以前（両端を含む）の投稿IDを日時の昇順で返します（どちらも省略可）
+     */
+    public List<Long> range(Instant from, Instant to) {
+        List<Long> result = new ArrayList<>();
+        for (Entry entry : view(from, to)) {
+            result.add(entry.id());
+        }
+        return result;
+    }
+
+    /**
+     * before より前（beforeを含まない）の投稿IDを、日時の新しい順に1件ずつ返します（beforeは省略可）
+     * 返したIDの投稿が条件に合わない場合に、必要な件数が揃うまで辿るために使います
+     */
+    public Iterator<Long> latest(Instant before) {
+        NavigableSet<Entry> head = before == null ? entries
+                : entries.headSet(new Entry(toEpochNanos(before), Long.MIN_VALUE), false);
+        Iterator<Entry> descending = head.descendingIterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return descending.hasNext();
+            }
+
+            @Override
+            public Long next() {
+                return descending.next().id();
+            }
+        };
+    }
+
+    /**
+     * 範囲内のエントリ数を数えます。limitを超えた時点で数えるのをやめ、limit + 1 を返します
+     */
+    public long count(Instant from, Instant to, long limit) {
+        long count = 0;
+        for (Iterator<Entry> it = view(from, to).iterator(); it.hasNext() && count <= limit; it.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    private NavigableSet<Entry> view(Instant from, Instant to) {
+        Entry lower = from == null ? null : new Entry(toEpochNanos(from), Long.MIN_VALUE);
+        Entry upper = to == null ? null : new Entry(toEpochNanos(to), Long.MAX_VALUE);
+        if (lower != null && upper != null) {
+            return lower.compareTo(upper) <= 0 ? entries.subSet(lower, true, upper, true) : new ConcurrentSkipListSet<>();
+        }
+        if (lower != null) {
+            return entries.tailSet(lower, true);
+        }
+        if (upper != null) {
+            return entries.headSet(upper, true);
+        }
+        return entries;
+    }
+
+    /**
+     * 日時をエポックからのナノ秒に変換します。表現できない遠い日時は範囲の端に丸めます
+     */
+    public static long toEpochNanos(Instant time) {
+        try {
+            return Math.addExact(Math.multiplyExact(time.getEpochSecond(), 1_000_000_000L), time.getNano());
+        } catch (ArithmeticException e) {
+            return time.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    private record Entry(long epochNanos, long id) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byTime = Long.compare(epochNanos, other.epochNanos);
+            return byTime != 0 ? byTime : Long.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.handson.service.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 単語数ごとのバケットに投稿IDを保持する二次インデックス
+ * 単語数の範囲指定は該当するバケットだけを集めるため、本文を参照しません
+ */
+public class WordCountIndex {
+
+    private final NavigableMap<Integer, Set<Long>> buckets = new ConcurrentSkipListMap<>();
+
+    public void add(Long id, int wordCount) {
+        buckets.compute(wordCount, (key, ids) -> {
+            Set<Long> target = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            target.add(id);
+            return target;
+        });
+    }
+
+    public void remove(Long id, int wordCount) {
+        buckets.computeIfPresent(wordCount, (key, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * 単語数がmin以上max以下（両端を含む）の投稿IDを返します（どちらも省略可）
+     */
+    public List<Long> range(Integer min, Integer max) {
+        List<Long> result = new ArrayList<>();
+        for (Set<Long> ids : view(min, max).values()) {
+            result.addAll(ids);
+        }
+        return result;
+    }
+
+    /**
+     * 単語数がmin以上max以下の投稿数を、バケットの件数の合計で返します
+     */
+    public long count(Integer min, Integer max) {
+        long count = 0;
+        for (Set<Long> ids : view(min, max).values()) {
+            count += ids.size();
+        }
+        return count;
+    }
+
+    private NavigableMap<Integer, Set<Long>> view(Integer min, Integer max) {
+        if (min != null && max != null) {
+            return min <= max ? buckets.subMap(min, true, max, true) : new ConcurrentSkipListMap<>();
+        }
+        if (min != null) {
+            return buckets.tailMap(min, true);
+        }
+        if (max != null) {
+            return buckets.headMap(max, true);
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.handson.service.persistence;
+
+/**
+ * 書き込み先行ログ（WAL）に追記したレコードを、いつディスクに同期（fsync）するかの方針
+ */
+public enum DurabilityPolicy {
+    /**
+     * 書き込みごとに同期してから応答します
+     * 同時に待っている書き込みは、先に同期を始めた書き込みの fsync をまとめて共有します（グループコミット）
+     */
+    PER_WRITE,
+    /**
+     * 一定間隔の同期を待ってから応答します
+     * 同期の回数は間隔ごとに1回になるため、書き込みの遅延と引き換えにスループットが上がります
+     */
+    BATCHED,
+    /**
+     * 同期を待たずに応答します。同期は一定間隔で行うため、OSのクラッシュ時にはその間隔分の書き込みを失う可能性があります
+     */
+    ASYNC
+}
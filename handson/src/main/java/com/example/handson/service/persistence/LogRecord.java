@@ -0,0 +1,34 @@
+package com.example.handson.service.persistence;
+
+import java.time.Instant;
+
+import com.example.handson.service.StoredPost;
+
+/**
+ * 書き込み先行ログの1レコード。投稿に対する1回の変更を表します
+ *
+ * @param type 変更の種類
+ * @param id 投稿ID
+ * @param timestamp 作成日時（CREATE）または公開日時（PUBLISH）。DELETE ではnull
+ * @param content 本文（CREATE のみ）
+ */
+public record LogRecord(Type type, long id, Instant timestamp, String content) {
+
+    public static LogRecord create(StoredPost post) {
+        return new LogRecord(Type.CREATE, post.id(), post.createdAt(), post.content());
+    }
+
+    public static LogRecord publish(StoredPost post) {
+        return new LogRecord(Type.PUBLISH, post.id(), post.publishedAt(), null);
+    }
+
+    public static LogRecord delete(long id) {
+        return new LogRecord(Type.DELETE, id, null, null);
+    }
+
+    public enum Type {
+        CREATE,
+        PUBLISH,
+        DELETE
+    }
+}
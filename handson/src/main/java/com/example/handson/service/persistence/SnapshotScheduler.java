@@ -0,0 +1,29 @@
+package com.example.handson.service.persistence;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import com.example.handson.service.PostService;
+
+/**
+ * handson.snapshot.interval-millis ごとに、バックグラウンドで投稿ストアのスナップショットを保存します
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = {"handson.wal.enabled", "handson.snapshot.enabled"}, havingValue = "true")
+public class SnapshotScheduler {
+
+    private final PostService postService;
+
+    public SnapshotScheduler(PostService postService) {
+        this.postService = postService;
+    }
+
+    @Scheduled(initialDelayString = "${handson.snapshot.interval-millis:60000}",
+            fixedDelayString = "${handson.snapshot.interval-millis:60000}")
+    public void snapshot() {
+        postService.snapshot();
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.handson.service.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+import com.example.handson.service.StoredPost;
+
+/**
+ * 投稿ストアのスナップショットを、書き込み先行ログの世代ごとのファイル（「ファイル名.世代」）に保存・読み込みします
+ * 世代nのスナップショットは、ログの世代n以降を再生すれば最新の状態になることを表します
+ *
+ * <p>形式: [マジック][バージョン][世代][次のID] [投稿]... [件数][CRC32C]
+ * 書き込みは一時ファイルに行い、同期してから名前を変更し、名前の変更もディレクトリを同期して確定させます。
+ * そのため読み込む側が書きかけのファイルを見ることはなく、古いログを削除した後に名前の変更が失われることもありません
+ * 読み込みはファイルを WINDOW_BYTES ずつメモリマップして直接デコードします。1つのマップは2GBまでのため、
+ * それより大きなファイルも窓を移しながら読み込みます
+ */
+public class SnapshotStore {
+
+    private static final int MAGIC = 0x48534E50;
+    private static final int VERSION = 2;
+    private static final int NO_VALUE = -1;
+    private static final int TRAILER = 8 + 4;
+    // 投稿の本文より前の固定長の部分: ID(8) + 状態(1) + 日時(8 * 3) + 本文のバイト数(4)
+    private static final int POST_HEADER = 8 + 1 + 8 * 3 + 4;
+    static final long WINDOW_BYTES = 1L << 30;
+
+    private final Path path;
+    private final long windowBytes;
+
+    public SnapshotStore(Path path) throws IOException {
+        this(path, WINDOW_BYTES);
+    }
+
+    SnapshotStore(Path path, long windowBytes) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.path = path;
+        this.windowBytes = windowBytes;
+    }
+
+    /**
+     * 読み込んだスナップショット
+     *
+     * @param generation 続けて再生するログの世代
+     * @param nextId スナップショットを取り始めた時点の次のID
+     * @param posts 投稿（IDの昇順）
+     */
+    public record Snapshot(long generation, long nextId, List<StoredPost> posts) {
+    }
+
+    /**
+     * 投稿を世代generationのスナップショットとして保存します
+     * posts は保存中に更新されてもかまいません（更新分は続く世代のログの再生で反映されます）
+     */
+    public void save(long generation, long nextId, Iterable<StoredPost> posts) {
+        Path file = file(generation);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CRC32C crc = new CRC32C();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            out.writeLong(nextId);
+            long count = 0;
+            for (StoredPost post : posts) {
+                writePost(out, post);
+                count++;
+            }
+            out.writeLong(count);
+            out.flush();
+            ByteBuffer checksum = ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip();
+            while (checksum.hasRemaining()) {
+                channel.write(checksum);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory(file.toAbsolutePath().getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 名前の変更を永続化するため、ディレクトリを同期します
+     * Windows はディレクトリを開いて同期できないため、名前の変更は MoveFileEx の完了をもって確定したものとします
+     */
+    private static void syncDirectory(Path dir) throws IOException {
+        if (System.getProperty("os.name", "").startsWith("Windows")) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * 最新の世代のスナップショットを読み込みます。スナップショットがなければ空を返します
+     *
+     * @throws IllegalStateException スナップショットが壊れている場合
+     */
+    public Optional<Snapshot> loadLatest() {
+        try {
+            List<Long> generations = generations();
+            if (generations.isEmpty()) {
+                return Optional.empty();
+            }
+            return Optional.of(load(file(generations.get(generations.size() - 1))));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 指定した世代より古いスナップショットを削除します
+     */
+    public void deleteBefore(long generation) {
+        try {
+            for (long existing : generations()) {
+                if (existing < generation) {
+                    Files.deleteIfExists(file(existing));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Snapshot load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 4 + 4 + 8 + 8 + TRAILER) {
+                throw new IllegalStateException("snapshot is truncated: " + file);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER);
+            while (trailer.hasRemaining()) {
+                channel.read(trailer, size - TRAILER + trailer.position());
+            }
+            long count = trailer.getLong(0);
+            CRC32C crc = new CRC32C();
+            for (long position = 0; position < size - 4; position += windowBytes) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(windowBytes, size - 4 - position)));
+            }
+            Window window = new Window(channel, size - TRAILER);
+            ByteBuffer header = window.next(4 + 4 + 8 + 8);
+            if ((int) crc.getValue() != trailer.getInt(8) || header.getInt() != MAGIC) {
+                throw new IllegalStateException("snapshot is corrupt: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IllegalStateException("unsupported snapshot version " + version + ": " + file);
+            }
+            long generation = header.getLong();
+            long nextId = header.getLong();
+            List<StoredPost> posts = new ArrayList<>((int) Math.min(count, Integer.MAX_VALUE - 8));
+            for (long i = 0; i < count; i++) {
+                posts.add(readPost(window));
+            }
+            return new Snapshot(generation, nextId, posts);
+        }
+    }
+
+    /**
+     * ファイルの先頭から順に読むための、windowBytes ずつのメモリマップ
+     * 要素が窓の終わりをまたぐ場合は、その要素の先頭から窓を張り直します
+     */
+    private final class Window {
+        private final FileChannel channel;
+        private final long end;
+        private long start;
+        private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+        Window(FileChannel channel, long end) {
+            this.channel = channel;
+            this.end = end;
+        }
+
+        /**
+         * 次の bytes バイトを読める位置にしたバッファを返します
+         */
+        ByteBuffer next(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                long position = start + buffer.position();
+                if (end - position < bytes) {
+                    throw new IllegalStateException("snapshot is truncated: " + path);
+                }
+                start = position;
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(end - position, Math.max(windowBytes, bytes)));
+            }
+            return buffer;
+        }
+    }
+
+    // 投稿: ID(8) + 状態(1) + 作成・更新・公開日時のナノ秒(8 * 3) + 本文のバイト数(4) + 本文
+    private static void writePost(DataOutputStream out, StoredPost post) throws IOException {
+        out.writeLong(post.id());
+        out.writeByte(post.flags());
+        out.writeLong(post.createdAtNanos());
+        out.writeLong(post.updatedAtNanos());
+        out.writeLong(post.publishedAtNanos());
+        if (post.content() == null) {
+            out.writeInt(NO_VALUE);
+        } else {
+            byte[] content = post.content().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(content.length);
+            out.write(content);
+        }
+    }
+
+    private static StoredPost readPost(Window window) throws IOException {
+        ByteBuffer buffer = window.next(POST_HEADER);
+        long id = buffer.getLong();
+        byte flags = buffer.get();
+        long createdAtNanos = buffer.getLong();
+        long updatedAtNanos = buffer.getLong();
+        long publishedAtNanos = buffer.getLong();
+        int length = buffer.getInt();
+        String content = null;
+        if (length != NO_VALUE) {
+            byte[] bytes = new byte[length];
+            window.next(length).get(bytes);
+            content = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return StoredPost.restore(id, content, createdAtNanos, updatedAtNanos, publishedAtNanos, flags);
+    }
+
+    // 存在するスナップショットの世代を昇順に返します
+    private List<Long> generations() throws IOException {
+        List<Long> result = new ArrayList<>();
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path.toAbsolutePath().getParent(), prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    result.add(Long.parseLong(suffix));
+                }
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    private Path file(long generation) {
+        return path.resolveSibling(path.getFileName() + "." + generation);
+    }
+}
@@ -0,0 +1,459 @@
+package com.example.handson.service.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * 投稿の変更を追記していく書き込み先行ログ（WAL）
+ * レコードは [ペイロード長][CRC32C][ペイロード] の形式でファイル末尾に追記し、起動時に先頭から再生します
+ * 書き込みの途中でプロセスが停止した場合に残る不完全な末尾のレコードは、再生時に切り捨てます
+ *
+ * <p>ログは世代ごとのセグメントに分かれます。世代0は指定されたファイル自身、世代nは「ファイル名.n」です。
+ * スナップショットを取る際に rotate で新しい世代に切り替え、スナップショットに含まれる古い世代は削除できます
+ *
+ * <p>追記は appendLock で直列化し、同期（fsync）は syncLock で直列化します。
+ * 同期する側は、その時点までに追記されたすべてのレコードをまとめて同期するため、
+ * 同期を待っている他の書き込みは自分のレコードが同期済みであれば fsync を行わずに戻ります（グループコミット）
+ * 追記位置はセグメントをまたいで単調に増える論理的な位置で表します
+ */
+public class WriteAheadLog implements Closeable {
+
+    // ペイロード: 種類(1) + ID(8) + 秒(8) + ナノ秒(4) + 本文のバイト数(4)
+    private static final int FIXED_PAYLOAD = 1 + 8 + 8 + 4 + 4;
+    private static final int HEADER = 4 + 4;
+    private static final int NO_VALUE = -1;
+
+    private final Path path;
+    private final DurabilityPolicy policy;
+    private final long syncIntervalNanos;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition syncedCondition = syncLock.newCondition();
+    // 追記中のセグメント。切り替えは appendLock と syncLock の両方を保持して行います
+    private FileChannel channel;
+    private long generation;
+    // 追記中のセグメントの先頭の論理的な位置
+    private long segmentBase;
+    private long appendedPosition;
+    private volatile boolean recovered;
+
+    // 追記位置は appendLock、同期済みの位置は syncLock の下で更新しますが、待つ側はロックなしで読みます
+    private volatile long latestAppended;
+    private volatile long syncedPosition;
+    private volatile boolean closed;
+    private volatile UncheckedIOException syncFailure;
+
+    private final Thread syncer;
+
+    public WriteAheadLog(Path path, DurabilityPolicy policy, long syncIntervalMillis) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.path = path;
+        this.policy = policy;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, syncIntervalMillis));
+        this.syncer = policy == DurabilityPolicy.PER_WRITE ? null
+                : Thread.ofPlatform().daemon().name("wal-sync").unstarted(this::syncPeriodically);
+    }
+
+    public DurabilityPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * すべての世代のレコードを先頭から順に consumer に渡します
+     */
+    public void replay(Consumer<LogRecord> consumer) {
+        replay(0, consumer);
+    }
+
+    /**
+     * fromGeneration 以降の世代のレコードを古い順に consumer に渡します。追記の前に一度だけ呼び出す必要があります
+     * 最新の世代の不完全なレコードやチェックサムの一致しないレコード以降は切り捨て、その位置から追記を再開します
+     *
+     * @throws IllegalStateException 最新でない世代のレコードが壊れている場合
+     */
+    public void replay(long fromGeneration, Consumer<LogRecord> consumer) {
+        appendLock.lock();
+        try {
+            if (recovered) {
+                throw new IllegalStateException("write-ahead log has already been replayed");
+            }
+            List<Long> generations = new ArrayList<>();
+            for (long existing : generations()) {
+                if (existing >= fromGeneration) {
+                    generations.add(existing);
+                }
+            }
+            if (generations.isEmpty()) {
+                generations.add(fromGeneration);
+            }
+            long last = generations.get(generations.size() - 1);
+            for (long replayed : generations) {
+                FileChannel segment = FileChannel.open(segment(replayed), StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                long valid = replaySegment(segment, consumer);
+                if (replayed != last) {
+                    boolean intact = valid == segment.size();
+                    segment.close();
+                    if (!intact) {
+                        throw new IllegalStateException("write-ahead log segment is corrupt: " + segment(replayed));
+                    }
+                    continue;
+                }
+                segment.truncate(valid);
+                segment.position(valid);
+                segment.force(true);
+                channel = segment;
+                generation = replayed;
+            }
+            appendedPosition = channel.position();
+            latestAppended = appendedPosition;
+            syncedPosition = appendedPosition;
+            recovered = true;
+            if (syncer != null) {
+                syncer.start();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // セグメントの有効なレコードを再生し、有効な部分の長さを返します
+    private static long replaySegment(FileChannel segment, Consumer<LogRecord> consumer) throws IOException {
+        long valid = 0;
+        long size = segment.size();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(segment), 1 << 16));
+        CRC32C crc = new CRC32C();
+        while (true) {
+            byte[] payload;
+            try {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < FIXED_PAYLOAD || length > size - valid - HEADER) {
+                    break;
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+            consumer.accept(decode(ByteBuffer.wrap(payload)));
+            valid += HEADER + payload.length;
+        }
+        return valid;
+    }
+
+    /**
+     * 新しい世代のセグメントに切り替え、その世代を返します
+     * 切り替え前に追記されたレコードはすべて古い世代に同期されます
+     */
+    public long rotate() {
+        appendLock.lock();
+        syncLock.lock();
+        try {
+            if (!recovered || closed) {
+                throw new IllegalStateException("write-ahead log is not open for appending");
+            }
+            FileChannel next = FileChannel.open(segment(generation + 1), StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.force(false);
+            channel.close();
+            channel = next;
+            generation++;
+            segmentBase = appendedPosition;
+            syncedPosition = appendedPosition;
+            syncedCondition.signalAll();
+            return generation;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            syncLock.unlock();
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 指定した世代より古いセグメントを削除します。スナップショットを保存した後に使用します
+     */
+    public void deleteSegmentsBefore(long generation) {
+        try {
+            for (long existing : generations()) {
+                if (existing < generation) {
+                    Files.deleteIfExists(segment(existing));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 追記中のセグメントの世代を返します
+     */
+    public long generation() {
+        appendLock.lock();
+        try {
+            return generation;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // 存在するセグメントの世代を昇順に返します
+    private List<Long> generations() throws IOException {
+        List<Long> result = new ArrayList<>();
+        if (Files.exists(path)) {
+            result.add(0L);
+        }
+        String prefix = path.getFileName() + ".";
+        Path dir = path.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    result.add(Long.parseLong(suffix));
+                }
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    private Path segment(long generation) {
+        return generation == 0 ? path : path.resolveSibling(path.getFileName() + "." + generation);
+    }
+
+    /**
+     * レコードを追記し、追記後のログの末尾の位置を返します。この時点ではまだ同期されていません
+     */
+    public long append(LogRecord record) {
+        return appendAll(List.of(record));
+    }
+
+    /**
+     * 追記できる状態であることを確かめます。ストアに反映してから記録する変更を、記録できないと分かっている状態で反映しないために使います
+     *
+     * @throws IllegalStateException ログが閉じられている場合、再生が終わっていない場合
+     */
+    public void checkOpen() {
+        if (!recovered || closed) {
+            throw new IllegalStateException("write-ahead log is not open for appending");
+        }
+    }
+
+    /**
+     * 複数のレコードを1回の書き込みで追記し、追記後のログの末尾の位置を返します
+     */
+    public long appendAll(List<LogRecord> records) {
+        ByteBuffer buffer = encode(records);
+        appendLock.lock();
+        try {
+            if (!recovered || closed) {
+                throw new IllegalStateException("write-ahead log is not open for appending");
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            appendedPosition = segmentBase + channel.position();
+            latestAppended = appendedPosition;
+            return appendedPosition;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 指定した位置までのレコードが、方針に従って永続化されるまで待ちます
+     */
+    public void awaitDurable(long position) {
+        switch (policy) {
+            case PER_WRITE -> syncTo(position);
+            case BATCHED -> awaitSync(position);
+            case ASYNC -> {
+            }
+        }
+    }
+
+    /**
+     * レコードを追記し、方針に従って永続化されるまで待ちます
+     */
+    public void write(LogRecord record) {
+        awaitDurable(append(record));
+    }
+
+    public long size() {
+        return latestAppended;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // FileChannel の入出力中に割り込むとチャネルが閉じられるため、割り込みではなく unpark で停止を通知します
+        if (syncer != null && syncer.isAlive()) {
+            LockSupport.unpark(syncer);
+            try {
+                syncer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        appendLock.lock();
+        try {
+            if (channel != null && channel.isOpen()) {
+                syncTo(appendedPosition);
+                channel.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // 同期済みでなければ、その時点までに追記されたすべてのレコードを同期します
+    private void syncTo(long position) {
+        if (syncedPosition >= position) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (syncedPosition >= position) {
+                return;
+            }
+            long target = latestAppended;
+            channel.force(false);
+            syncedPosition = target;
+            syncedCondition.signalAll();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void awaitSync(long position) {
+        if (syncedPosition >= position) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            while (syncedPosition < position) {
+                if (syncFailure != null) {
+                    throw syncFailure;
+                }
+                if (!channel.isOpen()) {
+                    throw new IllegalStateException("write-ahead log was closed before the record was synced");
+                }
+                syncedCondition.await(syncIntervalNanos * 2, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the write-ahead log to sync", e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void signalWaiters() {
+        syncLock.lock();
+        try {
+            syncedCondition.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void syncPeriodically() {
+        while (!closed) {
+            LockSupport.parkNanos(syncIntervalNanos);
+            try {
+                syncTo(latestAppended);
+            } catch (UncheckedIOException e) {
+                // 同期できなかったことを待っている書き込みに伝えて停止します
+                syncFailure = e;
+                signalWaiters();
+                return;
+            }
+        }
+    }
+
+    private static ByteBuffer encode(List<LogRecord> records) {
+        byte[][] contents = new byte[records.size()][];
+        int size = 0;
+        for (int i = 0; i < records.size(); i++) {
+            String content = records.get(i).content();
+            contents[i] = content != null ? content.getBytes(StandardCharsets.UTF_8) : null;
+            size += HEADER + FIXED_PAYLOAD + (contents[i] != null ? contents[i].length : 0);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32C crc = new CRC32C();
+        for (int i = 0; i < records.size(); i++) {
+            LogRecord record = records.get(i);
+            byte[] content = contents[i];
+            int start = buffer.position();
+            int payloadLength = FIXED_PAYLOAD + (content != null ? content.length : 0);
+            buffer.putInt(payloadLength).putInt(0);
+            buffer.put((byte) record.type().ordinal()).putLong(record.id());
+            if (record.timestamp() != null) {
+                buffer.putLong(record.timestamp().getEpochSecond()).putInt(record.timestamp().getNano());
+            } else {
+                buffer.putLong(0).putInt(NO_VALUE);
+            }
+            buffer.putInt(content != null ? content.length : NO_VALUE);
+            if (content != null) {
+                buffer.put(content);
+            }
+            crc.reset();
+            crc.update(buffer.array(), start + HEADER, payloadLength);
+            buffer.putInt(start + 4, (int) crc.getValue());
+        }
+        return buffer.flip();
+    }
+
+    private static LogRecord decode(ByteBuffer payload) {
+        LogRecord.Type type = LogRecord.Type.values()[payload.get()];
+        long id = payload.getLong();
+        long seconds = payload.getLong();
+        int nanos = payload.getInt();
+        int contentLength = payload.getInt();
+        Instant timestamp = nanos == NO_VALUE ? null : Instant.ofEpochSecond(seconds, nanos);
+        String content = null;
+        if (contentLength != NO_VALUE) {
+            content = new String(payload.array(), payload.position(), contentLength, StandardCharsets.UTF_8);
+        }
+        return new LogRecord(type, id, timestamp, content);
+    }
+}
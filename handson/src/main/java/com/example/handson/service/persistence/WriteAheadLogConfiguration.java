@@ -0,0 +1,33 @@
+package com.example.handson.service.persistence;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * handson.wal.enabled=true の場合に、投稿の変更を記録する書き込み先行ログを有効にします
+ * 無効の場合（既定）は、従来どおりメモリ上だけで投稿を保持します
+ * さらに handson.snapshot.enabled=true の場合は、定期的なスナップショットで起動時に再生するログを短く保ちます
+ */
+@Configuration
+@ConditionalOnProperty(name = "handson.wal.enabled", havingValue = "true")
+public class WriteAheadLogConfiguration {
+
+    @Bean
+    public WriteAheadLog writeAheadLog(@Value("${handson.wal.path:data/posts.wal}") String path,
+            @Value("${handson.wal.durability:PER_WRITE}") DurabilityPolicy durability,
+            @Value("${handson.wal.sync-interval-millis:2}") long syncIntervalMillis) throws IOException {
+        return new WriteAheadLog(Path.of(path), durability, syncIntervalMillis);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "handson.snapshot.enabled", havingValue = "true")
+    public SnapshotStore snapshotStore(@Value("${handson.snapshot.path:data/posts.snapshot}") String path)
+            throws IOException {
+        return new SnapshotStore(Path.of(path));
+    }
+}
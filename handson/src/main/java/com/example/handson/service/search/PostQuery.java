@@ -0,0 +1,180 @@
+package com.example.handson.service.search;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.StoredPost;
+import com.example.handson.service.index.TimeIndex;
+
+/**
+ * 投稿検索の条件。nullの項目は条件として扱いません
+ * searchPostsWithFilters の引数と Post.SearchParams の両方をこの形に正規化してから検索します
+ *
+ * @param keyword 本文に含まれるキーワード（小文字化済み。大文字・小文字は区別しません）
+ * @param beforeId このIDより小さい投稿
+ * @param afterId このIDより大きい投稿
+ * @param createdFrom この日時以降に作成された投稿
+ * @param createdTo この日時以前に作成された投稿
+ * @param publishedAfter この日時以降に公開された投稿
+ * @param publishedBefore この日時以前に公開された投稿
+ * @param isDraft 下書き（true）か公開済み（false）か
+ * @param minWordCount 単語数の下限
+ * @param maxWordCount 単語数の上限
+ */
+public record PostQuery(String keyword, Long beforeId, Long afterId, Instant createdFrom, Instant createdTo,
+        Instant publishedAfter, Instant publishedBefore, Boolean isDraft, Integer minWordCount,
+        Integer maxWordCount) {
+
+    public PostQuery {
+        keyword = keyword == null || keyword.isEmpty() ? null : keyword.toLowerCase();
+        if (minWordCount != null && minWordCount < 0) {
+            throw new IllegalArgumentException("minWordCount must not be negative: " + minWordCount);
+        }
+        if (maxWordCount != null && maxWordCount < 0) {
+            throw new IllegalArgumentException("maxWordCount must not be negative: " + maxWordCount);
+        }
+    }
+
+    /**
+     * searchPostsWithFilters の引数から検索条件を作ります
+     * 日付は yyyy-MM-dd 形式で、システムのタイムゾーンでのその日の0時として扱います
+     *
+     * @throws IllegalArgumentException 日付の形式が不正な場合、または単語数が負の場合
+     */
+    public static PostQuery of(String keyword, Long beforeId, Long afterId, String fromDate, String toDate,
+            Boolean isDraft, Integer minWordCount, Integer maxWordCount) {
+        return new PostQuery(keyword, beforeId, afterId, parseDate("fromDate", fromDate),
+                parseDate("toDate", toDate), null, null, isDraft, minWordCount, maxWordCount);
+    }
+
+    /**
+     * Post.SearchParams から検索条件を作ります（Post#matchesSearchCriteria と同じく公開済みの投稿だけが対象です）
+     */
+    public static PostQuery from(Post.SearchParams searchParams) {
+        if (searchParams == null) {
+            return new PostQuery(null, null, null, null, null, null, null, false, null, null);
+        }
+        return new PostQuery(searchParams.getContentKeyword(), null, null, null, null,
+                searchParams.getPublishedAfter(), searchParams.getPublishedBefore(), false, null, null);
+    }
+
+    public boolean hasKeyword() {
+        return keyword != null;
+    }
+
+    public boolean hasIdRange() {
+        return afterId != null || beforeId != null;
+    }
+
+    public boolean hasCreatedRange() {
+        return createdFrom != null || createdTo != null;
+    }
+
+    public boolean hasPublishedRange() {
+        return publishedAfter != null || publishedBefore != null;
+    }
+
+    public boolean hasWordCountRange() {
+        return minWordCount != null || maxWordCount != null;
+    }
+
+    /**
+     * 指定された条件だけを述語の連鎖にコンパイルします
+     * 各述語は検索前に確定した値だけを参照するため、投稿ごとの評価でオブジェクトを生成しません
+     * 日時はエポックからのナノ秒に変換しておき、プリミティブのまま比較します
+     */
+    public Predicate<StoredPost> compile() {
+        List<Predicate<StoredPost>> chain = new ArrayList<>();
+        if (isDraft != null) {
+            chain.add(statusPredicate());
+        }
+        if (hasIdRange()) {
+            chain.add(idRangePredicate());
+        }
+        if (hasCreatedRange()) {
+            chain.add(createdAtPredicate());
+        }
+        if (hasPublishedRange()) {
+            chain.add(publishedAtPredicate());
+        }
+        if (hasWordCountRange()) {
+            chain.add(wordCountPredicate());
+        }
+        if (hasKeyword()) {
+            chain.add(keywordPredicate());
+        }
+        return chain(chain);
+    }
+
+    static Predicate<StoredPost> chain(List<Predicate<StoredPost>> predicates) {
+        if (predicates.isEmpty()) {
+            return post -> true;
+        }
+        if (predicates.size() == 1) {
+            return predicates.get(0);
+        }
+        @SuppressWarnings("unchecked")
+        Predicate<StoredPost>[] steps = predicates.toArray(new Predicate[0]);
+        return post -> {
+            for (Predicate<StoredPost> step : steps) {
+                if (!step.test(post)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    Predicate<StoredPost> statusPredicate() {
+        boolean draft = isDraft;
+        return post -> post.isDraft() == draft;
+    }
+
+    Predicate<StoredPost> idRangePredicate() {
+        long lower = afterId != null ? afterId : Long.MIN_VALUE;
+        long upper = beforeId != null ? beforeId : Long.MAX_VALUE;
+        boolean hasLower = afterId != null;
+        boolean hasUpper = beforeId != null;
+        return post -> (!hasLower || post.id() > lower) && (!hasUpper || post.id() < upper);
+    }
+
+    Predicate<StoredPost> createdAtPredicate() {
+        long from = createdFrom != null ? TimeIndex.toEpochNanos(createdFrom) : Long.MIN_VALUE;
+        long to = createdTo != null ? TimeIndex.toEpochNanos(createdTo) : Long.MAX_VALUE;
+        return post -> post.hasCreatedAt() && post.createdAtNanos() >= from && post.createdAtNanos() <= to;
+    }
+
+    Predicate<StoredPost> publishedAtPredicate() {
+        long after = publishedAfter != null ? TimeIndex.toEpochNanos(publishedAfter) : Long.MIN_VALUE;
+        long before = publishedBefore != null ? TimeIndex.toEpochNanos(publishedBefore) : Long.MAX_VALUE;
+        return post -> post.hasPublishedAt() && post.publishedAtNanos() >= after && post.publishedAtNanos() <= before;
+    }
+
+    Predicate<StoredPost> wordCountPredicate() {
+        int min = minWordCount != null ? minWordCount : Integer.MIN_VALUE;
+        int max = maxWordCount != null ? maxWordCount : Integer.MAX_VALUE;
+        return post -> post.hasContent() && post.wordCount() >= min && post.wordCount() <= max;
+    }
+
+    Predicate<StoredPost> keywordPredicate() {
+        String foldedKeyword = keyword;
+        return post -> post.containsFolded(foldedKeyword);
+    }
+
+    private static Instant parseDate(String name, String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault()).toInstant();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be in yyyy-MM-dd format: " + value, e);
+        }
+    }
+}
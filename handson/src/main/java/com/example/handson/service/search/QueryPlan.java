@@ -0,0 +1,24 @@
+package com.example.handson.service.search;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 検索の実行計画と実行結果の統計（explain=true で返します）
+ *
+ * @param driver 候補の取得に使ったアクセスパス
+ * @param estimates アクセスパスごとの推定件数
+ * @param stages 実行したステージ（候補の取得と各フィルタ）
+ * @param totalNanos 計画と実行にかかった合計時間
+ */
+public record QueryPlan(String driver, Map<String, Long> estimates, List<Stage> stages, long totalNanos) {
+
+    /**
+     * @param name ステージ名
+     * @param estimatedRows 計画時の推定件数
+     * @param rows ステージ通過後の件数
+     * @param nanos ステージの所要時間
+     */
+    public record Stage(String name, long estimatedRows, long rows, long nanos) {
+    }
+}
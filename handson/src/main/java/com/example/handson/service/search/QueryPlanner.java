@@ -0,0 +1,336 @@
+package com.example.handson.service.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.PostStore;
+import com.example.handson.service.StoredPost;
+
+/**
+ * 投稿検索の実行計画を立てて実行するクラス
+ * 条件ごとにインデックスから推定件数を求め、最も件数の少ないアクセスパスで候補を取得し、
+ * 残りの条件は推定件数の少ない（絞り込み効果の高い）順にフィルタとして適用します
+ *
+ * <p>投稿はストアのビュー（PostStore.ReadView）から読むため、検索中に公開・削除があっても、結果は1つの時点の投稿の集合に
+ * 対するものになります。推定件数とインデックスは最新の状態を使い、インデックスから得たIDはビューの時点の投稿で確かめます
+ */
+public class QueryPlanner {
+
+    private static final String FULL_SCAN = "fullScan";
+
+    private final PostStore store;
+
+    public QueryPlanner(PostStore store) {
+        this.store = store;
+    }
+
+    public QueryResult execute(PostQuery query) {
+        try (PostStore.ReadView view = store.openView()) {
+            Execution execution = run(view, query);
+            return new QueryResult(execution.plan(), toPosts(execution.matches()));
+        }
+    }
+
+    /**
+     * execute と同じ実行計画で検索し、一致した投稿のIDを昇順で返します。投稿はAPIで返す形に変換しません
+     */
+    public List<Long> ids(PostQuery query) {
+        try (PostStore.ReadView view = store.openView()) {
+            List<StoredPost> matches = run(view, query).matches();
+            List<Long> ids = new ArrayList<>(matches.size());
+            for (StoredPost match : matches) {
+                ids.add(match.id());
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * execute と同じ実行計画で、ビューの時点の投稿を検索し、一致した投稿を内部表現のままIDの昇順で返します
+     */
+    Execution run(PostStore.ReadView view, PostQuery query) {
+        long start = System.nanoTime();
+        Plan plan = plan(query);
+
+        List<QueryPlan.Stage> stages = new ArrayList<>();
+        long stageStart = System.nanoTime();
+        List<StoredPost> candidates;
+        if (plan.driver() == null) {
+            candidates = new ArrayList<>();
+            scanBases(view, query).forEachRemaining(candidates::add);
+        } else {
+            // インデックスから得たIDはビューで引き、状態とID範囲は値で確かめます
+            candidates = new ArrayList<>();
+            Predicate<StoredPost> recheck = recheck(plan.driver());
+            for (Long id : plan.driver().fetch().get()) {
+                StoredPost post = view.get(id);
+                if (post != null && inBase(post, query) && recheck.test(post)) {
+                    candidates.add(post);
+                }
+            }
+        }
+        String driverName = plan.driverName();
+        stages.add(new QueryPlan.Stage("scan:" + driverName, plan.estimates().get(driverName), candidates.size(),
+                System.nanoTime() - stageStart));
+
+        for (Filter filter : plan.residuals()) {
+            stageStart = System.nanoTime();
+            Predicate<StoredPost> test = filter.test();
+            candidates.removeIf(post -> !test.test(post));
+            stages.add(new QueryPlan.Stage("filter:" + filter.name(), filter.estimate(), candidates.size(),
+                    System.nanoTime() - stageStart));
+        }
+
+        // インデックス経由の候補はインデックスの順に並ぶため、結果は常にIDの昇順に揃えます
+        if (plan.driver() != null) {
+            candidates.sort(Comparator.comparingLong(StoredPost::id));
+        }
+        QueryPlan queryPlan = new QueryPlan(driverName, plan.estimates(), stages, System.nanoTime() - start);
+        return new Execution(queryPlan, candidates);
+    }
+
+    // APIで返す形への変換は、すべての条件を適用した後の結果に対してだけ行います
+    static List<Post> toPosts(List<StoredPost> matches) {
+        List<Post> posts = new ArrayList<>(matches.size());
+        for (StoredPost match : matches) {
+            posts.add(match.toPost());
+        }
+        return posts;
+    }
+
+    /**
+     * execute と同じ実行計画で検索し、条件に一致する投稿をIDの昇順で1件ずつ返します
+     * 区画の走査では候補のリストを作らず、インデックスを使う場合も保持するのは一致したIDの配列だけです
+     * 実行計画は呼び出し時に立てるため、条件が不正な場合はストリームを返す前に例外になります
+     * ビューは要素を読み始めた時点で開き、ストリームを閉じるまで開いたままにします
+     */
+    public Stream<Post> stream(PostQuery query) {
+        Plan plan = plan(query);
+        return store.streamInView(view -> candidates(view, query, plan).map(StoredPost::toPost));
+    }
+
+    private Stream<StoredPost> candidates(PostStore.ReadView view, PostQuery query, Plan plan) {
+        Stream<StoredPost> candidates;
+        if (plan.driver() == null) {
+            candidates = StreamSupport.stream(Spliterators.spliteratorUnknownSize(scanBases(view, query),
+                    Spliterator.ORDERED | Spliterator.NONNULL), false);
+        } else {
+            long[] ids = plan.driver().fetch().get().stream().mapToLong(Long::longValue).sorted().toArray();
+            Predicate<StoredPost> recheck = recheck(plan.driver());
+            candidates = Arrays.stream(ids)
+                    .mapToObj(view::get)
+                    .filter(post -> post != null && inBase(post, query) && recheck.test(post));
+        }
+        for (Filter filter : plan.residuals()) {
+            candidates = candidates.filter(filter.test());
+        }
+        return candidates;
+    }
+
+    /**
+     * インデックスから得た投稿を、ビューの時点の版でも条件に一致するか確かめる述語を返します
+     * 公開日時は公開で変わるため、公開前の時点のビューでは公開日時のインデックスと一致しないことがあります
+     */
+    private static Predicate<StoredPost> recheck(Filter driver) {
+        return driver.stable() ? post -> true : driver.test();
+    }
+
+    /**
+     * 条件ごとの推定件数を求め、候補を取得するアクセスパス（driver）と残りの条件を決めます
+     */
+    private Plan plan(PostQuery query) {
+        // 状態とID範囲は区画の走査の範囲で表現できるため、どのアクセスパスでも常に適用されます
+        String baseName = baseName(query);
+        long best = baseEstimate(query);
+
+        Map<String, Long> estimates = new LinkedHashMap<>();
+        estimates.put(baseName, best);
+        List<Filter> filters = new ArrayList<>();
+        if (query.hasKeyword()) {
+            filters.add(keywordFilter(query));
+        }
+        if (query.hasWordCountRange()) {
+            filters.add(wordCountFilter(query));
+        }
+        for (Filter filter : filters) {
+            best = Math.min(best, filter.estimate());
+        }
+        // 日時範囲の件数は数えるしかないため、ここまでの最小値を超えた時点で数えるのをやめます
+        if (query.hasCreatedRange()) {
+            Filter filter = createdAtFilter(query, best);
+            filters.add(filter);
+            best = Math.min(best, filter.estimate());
+        }
+        if (query.hasPublishedRange()) {
+            filters.add(publishedAtFilter(query, best));
+        }
+        for (Filter filter : filters) {
+            estimates.put(filter.name(), filter.estimate());
+        }
+
+        Filter driver = filters.stream()
+                .filter(filter -> filter.estimate() < estimates.get(baseName))
+                .min(Comparator.comparingLong(Filter::estimate))
+                .orElse(null);
+        return new Plan(baseName, estimates, filters, driver);
+    }
+
+    private Filter keywordFilter(PostQuery query) {
+        return new Filter("keyword",
+                store.keywordIndex().estimate(query.keyword()),
+                () -> store.keywordIndex().search(query.keyword()),
+                query.keywordPredicate(), true);
+    }
+
+    private Filter wordCountFilter(PostQuery query) {
+        return new Filter("wordCount",
+                store.wordCountIndex().count(query.minWordCount(), query.maxWordCount()),
+                () -> store.wordCountIndex().range(query.minWordCount(), query.maxWordCount()),
+                query.wordCountPredicate(), true);
+    }
+
+    private Filter createdAtFilter(PostQuery query, long limit) {
+        return new Filter("createdAt",
+                store.createdAtIndex().count(query.createdFrom(), query.createdTo(), limit),
+                () -> store.createdAtIndex().range(query.createdFrom(), query.createdTo()),
+                query.createdAtPredicate(), true);
+    }
+
+    private Filter publishedAtFilter(PostQuery query, long limit) {
+        return new Filter("publishedAt",
+                store.publishedAtIndex().count(query.publishedAfter(), query.publishedBefore(), limit),
+                () -> store.publishedAtIndex().range(query.publishedAfter(), query.publishedBefore()),
+                query.publishedAtPredicate(), false);
+    }
+
+    private static boolean inBase(StoredPost post, PostQuery query) {
+        return (query.isDraft() == null || post.isDraft() == query.isDraft())
+                && (query.afterId() == null || post.id() > query.afterId())
+                && (query.beforeId() == null || post.id() < query.beforeId());
+    }
+
+    /**
+     * ビューの時点の区画を、状態とID範囲の条件の範囲だけIDの昇順に走査します
+     */
+    private static Iterator<StoredPost> scanBases(PostStore.ReadView view, PostQuery query) {
+        if (query.isDraft() != null) {
+            return view.scan(query.isDraft(), query.afterId(), query.beforeId());
+        }
+        return new MergingIterator(view.scan(true, query.afterId(), query.beforeId()),
+                view.scan(false, query.afterId(), query.beforeId()));
+    }
+
+    private static String baseName(PostQuery query) {
+        boolean hasIdRange = query.hasIdRange();
+        if (query.isDraft() != null) {
+            return hasIdRange ? "status+idRange" : "status";
+        }
+        return hasIdRange ? "idRange" : FULL_SCAN;
+    }
+
+    /**
+     * 区画の件数と、IDが連番であることを前提としたID範囲の幅のうち小さい方を推定件数とします
+     */
+    private long baseEstimate(PostQuery query) {
+        long estimate = query.isDraft() == null ? store.size()
+                : query.isDraft() ? store.draftCount() : store.publishedCount();
+        if (query.hasIdRange()) {
+            long lower = query.afterId() != null ? query.afterId() : 0L;
+            long upper = query.beforeId() != null ? query.beforeId() : Long.MAX_VALUE;
+            long width = upper > lower ? upper - lower - 1 : 0L;
+            if (width < 0) {
+                // 差がlongに収まらない場合
+                width = Long.MAX_VALUE;
+            }
+            estimate = Math.min(estimate, width);
+        }
+        return estimate;
+    }
+
+    /**
+     * @param matches 一致した投稿（IDの昇順）
+     */
+    record Execution(QueryPlan plan, List<StoredPost> matches) {
+    }
+
+    /**
+     * @param stable インデックスの値が投稿のどの版でも同じかどうか
+     */
+    private record Filter(String name, long estimate, Supplier<List<Long>> fetch, Predicate<StoredPost> test,
+            boolean stable) {
+    }
+
+    /**
+     * @param driver 候補を取得するインデックスの条件。区画を走査する場合はnull
+     */
+    private record Plan(String baseName, Map<String, Long> estimates, List<Filter> filters, Filter driver) {
+
+        String driverName() {
+            return driver == null ? baseName : driver.name();
+        }
+
+        /**
+         * driver 以外の条件を、推定件数の少ない（絞り込み効果の高い）順に返します
+         */
+        List<Filter> residuals() {
+            List<Filter> residuals = new ArrayList<>(filters);
+            residuals.remove(driver);
+            residuals.sort(Comparator.comparingLong(Filter::estimate));
+            return residuals;
+        }
+    }
+
+    /**
+     * IDの昇順に並んだ2つの区画を、IDの昇順のまま1つにまとめて走査します
+     * 同じ時点のビューでは1つの投稿は一方の区画にしか見えませんが、両方に見えた場合は1件として扱います
+     */
+    private static final class MergingIterator implements Iterator<StoredPost> {
+        private final Iterator<StoredPost> left;
+        private final Iterator<StoredPost> right;
+        private StoredPost a;
+        private StoredPost b;
+
+        MergingIterator(Iterator<StoredPost> left, Iterator<StoredPost> right) {
+            this.left = left;
+            this.right = right;
+            a = this.left.hasNext() ? this.left.next() : null;
+            b = this.right.hasNext() ? this.right.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return a != null || b != null;
+        }
+
+        @Override
+        public StoredPost next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (b == null || (a != null && a.id() < b.id())) {
+                StoredPost next = a;
+                a = left.hasNext() ? left.next() : null;
+                return next;
+            }
+            if (a != null && a.id() == b.id()) {
+                a = left.hasNext() ? left.next() : null;
+            }
+            StoredPost next = b;
+            b = right.hasNext() ? right.next() : null;
+            return next;
+        }
+    }
+}
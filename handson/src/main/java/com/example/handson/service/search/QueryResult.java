@@ -0,0 +1,11 @@
+package com.example.handson.service.search;
+
+import java.util.List;
+
+import com.example.handson.model.Post;
+
+/**
+ * 検索結果と、その検索の実行計画
+ */
+public record QueryResult(QueryPlan plan, List<Post> posts) {
+}
@@ -0,0 +1,9 @@
+package com.example.handson.service.search;
+
+import com.example.handson.model.Post;
+
+/**
+ * 関連度（BM25のスコア）付きの検索結果
+ */
+public record RankedPost(Post post, double score) {
+}
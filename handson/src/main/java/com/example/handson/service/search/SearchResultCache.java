@@ -0,0 +1,219 @@
+package com.example.handson.service.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.PostStore;
+import com.example.handson.service.StoredPost;
+
+/**
+ * 検索条件ごとに検索結果を保持し、同じ条件の検索を走査せずに返すLRUキャッシュ
+ * キーは正規化した PostQuery（キーワードは小文字化、日付は日時に変換済み）のため、表記の違う同じ条件も同じ要素を使います
+ *
+ * <p>要素には検索したビューの時点（ストアの版）を記録し、結果はその時点の投稿の集合に対するものです。取得時にそれ以降の変更をストアの最近の変更から確かめ、
+ * 削除・公開前の投稿が結果に含まれず、追加・公開後の投稿が条件に一致しない場合は、結果を変えない変更として要素を使い続けます
+ * 変更が結果に影響する場合と、変更の内容が残っていない場合は検索し直します。そのため読み取りの多い間は書き込みがあっても
+ * 多くの条件をメモリから返し、古い結果は返しません。検索した時点より前の時点のビューには、要素を使いません
+ *
+ * <p>結果は投稿IDの配列として保持し、返すときにビューから投稿を引きます。投稿への参照を持たないため、
+ * 結果1件あたり BYTES_PER_MATCH バイトと要素ごとの ENTRY_OVERHEAD バイトで見積もった合計が保持する実際の量で、
+ * これが上限を超えないように、最も長く使われていない要素から追い出します
+ */
+public class SearchResultCache {
+
+    static final String DRIVER = "cache";
+    static final int ENTRY_OVERHEAD = 256;
+    static final int BYTES_PER_MATCH = 8;
+
+    private final PostStore store;
+    private final QueryPlanner planner;
+    private final long maxBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // 以下はロックを保持して読み書きします
+    private final LinkedHashMap<PostQuery, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weightedSize;
+
+    public SearchResultCache(PostStore store, QueryPlanner planner, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maximum bytes must be positive: " + maxBytes);
+        }
+        this.store = store;
+        this.planner = planner;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 保持している結果が現在の投稿の集合でも正しい場合はそれを返し、そうでない場合は検索して保持します
+     * 保持している結果を返した場合、実行計画は driver が "cache" の1ステージだけになります
+     */
+    public QueryResult execute(PostQuery query) {
+        // 結果を変換し終えるまで、結果の投稿（ヒープ外の本文を含む）を取り除かせないようにビューを開いておきます
+        try (PostStore.ReadView view = store.openView()) {
+            return execute(view, query);
+        }
+    }
+
+    /**
+     * ビューの時点の投稿の集合に対して execute と同じ検索をします
+     */
+    QueryResult execute(PostStore.ReadView view, PostQuery query) {
+        long start = System.nanoTime();
+        long current = view.version();
+        Entry entry = get(query);
+        List<Post> posts = entry != null && entry.isValidAt(current, store) ? entry.resolve(view) : null;
+        if (posts != null) {
+            hits.increment();
+            long rows = posts.size();
+            long nanos = System.nanoTime() - start;
+            QueryPlan plan = new QueryPlan(DRIVER, Map.of(DRIVER, rows),
+                    List.of(new QueryPlan.Stage("scan:" + DRIVER, rows, rows, nanos)), nanos);
+            return new QueryResult(plan, posts);
+        }
+        misses.increment();
+        QueryPlanner.Execution execution = planner.run(view, query);
+        put(query, new Entry(current, query.compile(), execution.matches()));
+        return new QueryResult(execution.plan(), QueryPlanner.toPosts(execution.matches()));
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long weightedSize() {
+        lock.lock();
+        try {
+            return weightedSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry get(PostQuery query) {
+        lock.lock();
+        try {
+            return entries.get(query);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(PostQuery query, Entry entry) {
+        if (entry.weight > maxBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            Entry previous = entries.get(query);
+            // 他のスレッドが保持した結果が、この結果の版でも正しいことを確かめ済みの場合は置き換えません
+            if (previous != null && previous.validated.get() >= entry.base) {
+                return;
+            }
+            entries.put(query, entry);
+            weightedSize += entry.weight - (previous != null ? previous.weight : 0);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (weightedSize > maxBytes && eldest.hasNext()) {
+                weightedSize -= eldest.next().weight;
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        // 検索したビューの時点と、結果が正しいことを確かめた最新の版。結果はこの2つの間のどの版でも正しい結果です
+        final long base;
+        final AtomicLong validated;
+        final Predicate<StoredPost> predicate;
+        // 結果の投稿ID（昇順）
+        final long[] ids;
+        final long weight;
+
+        Entry(long version, Predicate<StoredPost> predicate, List<StoredPost> matches) {
+            this.base = version;
+            this.validated = new AtomicLong(version);
+            this.predicate = predicate;
+            this.ids = new long[matches.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = matches.get(i).id();
+            }
+            this.weight = ENTRY_OVERHEAD + (long) BYTES_PER_MATCH * ids.length;
+        }
+
+        /**
+         * 結果が current の版でも正しい場合はtrueを返します
+         * 検索した版より前の版は確かめられないためfalseを返し、確かめた版より後の版は、その間の変更がすべて結果に
+         * 影響しない場合にtrueを返して確かめた版を進めます
+         */
+        boolean isValidAt(long current, PostStore store) {
+            if (current < base) {
+                return false;
+            }
+            long from = validated.get();
+            if (current <= from) {
+                return true;
+            }
+            if (current - from > PostStore.RECENT_CHANGES) {
+                return false;
+            }
+            for (long v = from + 1; v <= current; v++) {
+                PostStore.Change change = store.change(v);
+                if (change == null || affects(change)) {
+                    return false;
+                }
+            }
+            validated.accumulateAndGet(current, Math::max);
+            return true;
+        }
+
+        /**
+         * 結果の投稿をビューから引いて返します。ビューに見えない投稿がある場合はnullを返します
+         */
+        List<Post> resolve(PostStore.ReadView view) {
+            List<Post> posts = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                StoredPost post = view.get(id);
+                if (post == null) {
+                    return null;
+                }
+                posts.add(post.toPost());
+            }
+            return posts;
+        }
+
+        private boolean affects(PostStore.Change change) {
+            for (StoredPost before : change.before()) {
+                if (contains(before.id())) {
+                    return true;
+                }
+            }
+            for (StoredPost after : change.after()) {
+                if (predicate.test(after)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // 結果はIDの昇順のため二分探索します
+        private boolean contains(long id) {
+            return Arrays.binarySearch(ids, id) >= 0;
+        }
+    }
+}
@@ -1,22 +1,55 @@
 package com.example.handson.controller;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.handson.model.Post;
+import com.example.handson.service.DataVersion;
 import com.example.handson.service.PostService;
+import com.example.handson.service.bulk.BatchResult;
+import com.example.handson.service.bulk.BulkRequest;
+import com.example.handson.service.bulk.BulkResult;
+import com.example.handson.service.bulk.ImportResult;
+import com.example.handson.service.search.QueryPlan;
+import com.example.handson.service.search.QueryResult;
+import com.example.handson.service.search.RankedPost;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 /**
  * PostControllerのテストクラス
@@ -26,9 +59,23 @@ import com.example.handson.service.PostService;
 @ExtendWith(MockitoExtension.class)
 class PostControllerTest {
 
+    private static final DataVersion VERSION = new DataVersion(1L, 1L, Instant.parse("2025-01-01T00:00:00Z"));
+
     @Mock
     private PostService postService;
 
+    @Spy
+    private ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Spy
+    private ConditionalGets conditionalGets = new ConditionalGets(new SimpleMeterRegistry());
+
+    @Spy
+    private PostJsonCache jsonCache = new PostJsonCache(objectMapper, new SimpleMeterRegistry(), 1 << 20, false);
+
+    @Mock
+    private WebRequest webRequest;
+
     @InjectMocks
     private PostController postController;
 
@@ -83,7 +130,7 @@ class PostControllerTest {
      * - 存在する投稿IDでHTTP 200 OKと投稿が返されること
      */
     @Test
-    void getPost_ShouldReturnOkStatusAndPost() {
+    void getPost_ShouldReturnOkStatusAndPost() throws Exception {
         // Given
         Long id = 1L;
         Post post = new Post("Test content");
@@ -92,11 +139,12 @@ class PostControllerTest {
         when(postService.getPost(id)).thenReturn(post);
         
         // When
-        ResponseEntity<Post> response = postController.getPost(id);
+        ResponseEntity<byte[]> response = postController.getPost(id, webRequest);
         
         // Then
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(post, response.getBody());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        assertEquals(1L, objectMapper.readTree(response.getBody()).get("id").asLong());
     }
     
     /**
@@ -129,9 +177,10 @@ class PostControllerTest {
         );
         
         when(postService.getAllPublishedPosts()).thenReturn(posts);
+        when(postService.dataVersion()).thenReturn(VERSION);
         
         // When
-        ResponseEntity<List<Post>> response = postController.getAllPublishedPosts();
+        ResponseEntity<List<Post>> response = postController.getAllPublishedPosts(webRequest);
         
         // Then
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -151,12 +200,359 @@ class PostControllerTest {
         );
         
         when(postService.getAllDraftPosts()).thenReturn(posts);
+        when(postService.dataVersion()).thenReturn(VERSION);
+        
+        // When
+        ResponseEntity<List<Post>> response = postController.getAllDraftPosts(webRequest);
+        
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(posts, response.getBody());
+    }
+    
+    /**
+     * 公開済み投稿のページ取得エンドポイントが正常に動作することを検証するテスト
+     * - ページが埋まった場合は次ページ用のカーソルがヘッダーで返されること
+     */
+    @Test
+    void getPublishedPostsPage_ShouldReturnNextCursorWhenPageIsFull() {
+        // Given
+        Post post1 = new Post("Post 1");
+        post1.setId(3L);
+        Post post2 = new Post("Post 2");
+        post2.setId(5L);
+        List<Post> posts = Arrays.asList(post1, post2);
+        
+        when(postService.getPublishedPostsPage(1L, 2)).thenReturn(posts);
+        when(postService.dataVersion()).thenReturn(VERSION);
+        
+        // When
+        ResponseEntity<List<Post>> response = postController.getPublishedPostsPage(2, 1L, webRequest);
+        
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(posts, response.getBody());
+        assertEquals("5", response.getHeaders().getFirst(PostController.NEXT_CURSOR_HEADER));
+    }
+    
+    /**
+     * 下書き投稿のページ取得エンドポイントで不正な件数を指定した場合のテスト
+     * - HTTP 400 Bad Requestが返されること
+     */
+    @Test
+    void getDraftPostsPage_ShouldReturnBadRequestForInvalidLimit() {
+        // When
+        ResponseEntity<List<Post>> response = postController.getDraftPostsPage(0, null, webRequest);
+        
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+    
+    /**
+     * 検索エンドポイントが正常に動作することを検証するテスト
+     * - 通常は投稿のリストが、explain=trueの場合は実行計画を含む結果が返されること
+     */
+    @Test
+    void searchPosts_ShouldReturnPostsOrPlanWhenExplainRequested() {
+        // Given
+        List<Post> posts = Arrays.asList(new Post("Post 1"));
+        QueryPlan plan = new QueryPlan("keyword", Map.of("keyword", 1L), List.of(), 1000L);
+        QueryResult result = new QueryResult(plan, posts);
+        
+        when(postService.searchWithPlan("Post", null, null, null, null, null, null, null)).thenReturn(result);
+        
+        // When
+        ResponseEntity<Object> response = postController.searchPosts("Post", null, null, null, null, null, null, null, false);
+        ResponseEntity<Object> explained = postController.searchPosts("Post", null, null, null, null, null, null, null, true);
+        
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(posts, response.getBody());
+        assertEquals(result, explained.getBody());
+    }
+    
+    /**
+     * 検索エンドポイントで不正な検索条件を指定した場合のテスト
+     * - HTTP 400 Bad Requestが返されること
+     */
+    @Test
+    void searchPosts_ShouldReturnBadRequestForInvalidParameters() {
+        // Given
+        when(postService.searchWithPlan(null, null, null, "2025/07/01", null, null, null, null))
+                .thenThrow(new IllegalArgumentException("fromDate must be in yyyy-MM-dd format: 2025/07/01"));
         
         // When
-        ResponseEntity<List<Post>> response = postController.getAllDraftPosts();
+        ResponseEntity<Object> response = postController.searchPosts(null, null, null, "2025/07/01", null, null, null, null, false);
+        
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+    
+    /**
+     * フィード取得エンドポイントが正常に動作することを検証するテスト
+     * - エポックミリ秒で指定した日時より前のフィードが返されること
+     * - 不正な日時を指定した場合はHTTP 400 Bad Requestが返されること
+     */
+    @Test
+    void getFeed_ShouldParseBeforeTimestamp() {
+        // Given
+        List<Post> posts = Arrays.asList(new Post("Post 1"));
+        when(postService.getFeed(Instant.ofEpochMilli(1750000000000L), 10)).thenReturn(posts);
+        when(postService.dataVersion()).thenReturn(VERSION);
+        
+        // When
+        ResponseEntity<List<Post>> response = postController.getFeed(10, "1750000000000", webRequest);
+        ResponseEntity<List<Post>> invalid = postController.getFeed(10, "yesterday", webRequest);
         
         // Then
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(posts, response.getBody());
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+    }
+    
+    /**
+     * 関連度順の検索エンドポイントのテスト
+     * - 検索結果がスコアとともに返されること
+     * - 空のクエリや範囲外の件数を指定した場合はHTTP 400 Bad Requestが返されること
+     */
+    @Test
+    void rankPosts_ShouldReturnRankedPostsOrBadRequest() {
+        // Given
+        List<RankedPost> ranked = Arrays.asList(new RankedPost(new Post("Spring"), 1.5));
+        when(postService.rankPosts("spring", 5, false)).thenReturn(ranked);
+        
+        // When
+        ResponseEntity<List<RankedPost>> response = postController.rankPosts("spring", 5, false);
+        
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(ranked, response.getBody());
+        assertEquals(HttpStatus.BAD_REQUEST, postController.rankPosts(" ", 5, null).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, postController.rankPosts("spring", 0, null).getStatusCode());
+    }
+    
+    /**
+     * 下書きの一括作成エンドポイントのテスト
+     * - 本文のない要素を含んでいても、作成できた投稿と失敗した要素がHTTP 201 Createdで返されること
+     * - 空の配列を指定した場合はHTTP 400 Bad Requestが返されること
+     */
+    @Test
+    void createDrafts_ShouldReturnCreatedWithFailures() {
+        // Given
+        Map<String, String> valid = new HashMap<>();
+        valid.put("content", "Batch content");
+        BatchResult result = new BatchResult(List.of(new Post("Batch content")),
+                List.of(new BatchResult.Failure(1, "content is required")));
+        when(postService.createDrafts(Arrays.asList("Batch content", null))).thenReturn(result);
+        
+        // When
+        ResponseEntity<BatchResult> response = postController.createDrafts(Arrays.asList(valid, new HashMap<>()));
+        
+        // Then
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(result, response.getBody());
+        assertEquals(HttpStatus.BAD_REQUEST, postController.createDrafts(List.of()).getStatusCode());
+    }
+    
+    /**
+     * 一括公開・一括削除エンドポイントのテスト
+     * - IDのリストを指定した場合はIDごとの結果が返されること
+     * - IDのリストも条件も指定しない場合、または両方を指定した場合はHTTP 400 Bad Requestが返されること
+     */
+    @Test
+    void bulkOperations_ShouldReturnOutcomesOrBadRequest() {
+        // Given
+        BulkRequest request = BulkRequest.ofIds(List.of(1L, 2L));
+        BulkResult result = new BulkResult(1, List.of(
+                new BulkResult.Outcome(1L, BulkResult.Status.DELETED),
+                new BulkResult.Outcome(2L, BulkResult.Status.NOT_FOUND)));
+        when(postService.deletePosts(request)).thenReturn(result);
+        
+        // When
+        ResponseEntity<BulkResult> response = postController.deletePosts(request);
+        
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(result, response.getBody());
+        assertEquals(HttpStatus.BAD_REQUEST, postController.deletePosts(BulkRequest.ofIds(List.of())).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, postController.publishPosts(
+                new BulkRequest(List.of(1L), "keyword", null, null, null, null, null, null, null)).getStatusCode());
+    }
+    
+    /**
+     * NDJSONでの一覧取得エンドポイントのテスト
+     * - 投稿が1行に1件ずつJSONで書き出されること
+     * - 投稿のストリームは、応答を書き出し始めるまで取得されないこと
+     */
+    @Test
+    void streamPublishedPosts_ShouldWriteOnePostPerLine() throws Exception {
+        // Given
+        Post post1 = new Post("Post 1");
+        post1.setId(1L);
+        Post post2 = new Post("Post 2");
+        post2.setId(2L);
+        when(postService.streamPublishedPosts()).thenReturn(Stream.of(post1, post2));
+        when(postService.dataVersion()).thenReturn(VERSION);
+        
+        // When
+        ResponseEntity<StreamingResponseBody> response = postController.streamPublishedPosts(webRequest);
+        verify(postService, never()).streamPublishedPosts();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        
+        // Then
+        assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1L, objectMapper.readTree(lines[0]).get("id").asLong());
+        assertEquals("Post 2", objectMapper.readTree(lines[1]).get("content").asText());
+    }
+    
+    /**
+     * NDJSONでの検索エンドポイントで不正な検索条件を指定した場合のテスト
+     * - 書き出しを始める前にHTTP 400 Bad Requestが返されること
+     */
+    @Test
+    void streamSearchPosts_ShouldReturnBadRequestForInvalidParameters() {
+        // Given
+        when(postService.streamSearch(null, null, null, "2025/07/01", null, null, null, null))
+                .thenThrow(new IllegalArgumentException("fromDate must be in yyyy-MM-dd format: 2025/07/01"));
+        
+        // When
+        ResponseEntity<?> response = postController.streamSearchPosts(null, null, null, "2025/07/01", null, null, null, null);
+        
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+    
+    /**
+     * NDJSONの取り込みエンドポイントのテスト
+     * - 取り込んだ件数と不正な行の件数が返されること
+     * - 1件も取り込めなかった場合はHTTP 400 Bad Requestが返されること
+     */
+    @Test
+    void importPosts_ShouldReturnCountsOrBadRequest() throws Exception {
+        // Given
+        String body = "{\"content\":\"Imported\",\"publishedAt\":\"2025-01-01T00:00:00Z\"}\nnot json\n";
+        
+        // When
+        ResponseEntity<ImportResult> response = postController.importPosts(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        ResponseEntity<ImportResult> invalid = postController.importPosts(
+                new ByteArrayInputStream("not json\n".getBytes(StandardCharsets.UTF_8)));
+        
+        // Then
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(1L, response.getBody().imported());
+        assertEquals(1L, response.getBody().rejected());
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+    }
+    
+    /**
+     * 条件付きGETのテスト
+     * - 投稿のETagが一致する場合はHTTP 304 Not Modifiedが返されること
+     * - 一覧のETagが一致する場合は一覧を取得せずにHTTP 304 Not Modifiedが返され、ヒット率に反映されること
+     */
+    @Test
+    void conditionalGet_ShouldReturnNotModifiedWithoutLoadingList() {
+        // Given
+        Post post = new Post("Test content");
+        post.setId(1L);
+        post.setUpdatedAt(VERSION.modifiedAt());
+        String postETag = ConditionalGets.etag(post);
+        String listETag = ConditionalGets.etag(VERSION, PostController.JSON);
+        when(postService.getPost(1L)).thenReturn(post);
+        when(postService.dataVersion()).thenReturn(VERSION);
+        when(webRequest.checkNotModified(eq(postETag), anyLong())).thenReturn(true);
+        when(webRequest.checkNotModified(eq(listETag), anyLong())).thenReturn(true);
+        
+        // When
+        ResponseEntity<byte[]> postResponse = postController.getPost(1L, webRequest);
+        ResponseEntity<List<Post>> listResponse = postController.getAllPublishedPosts(webRequest);
+        
+        // Then
+        assertEquals(HttpStatus.NOT_MODIFIED, postResponse.getStatusCode());
+        assertEquals(postETag, postResponse.getHeaders().getETag());
+        assertEquals(HttpStatus.NOT_MODIFIED, listResponse.getStatusCode());
+        verify(postService, never()).getAllPublishedPosts();
+        assertEquals(1.0, conditionalGets.hitRatio("published"));
+    }
+    
+    /**
+     * 変換済みのJSONのキャッシュのテスト
+     * - 変更のない投稿は2回目以降、保持しているバイト列がそのまま返されること
+     * - 公開でETagが変わると保持しているJSONは使われず、公開後のJSONが返されること
+     */
+    @Test
+    void getPost_ShouldServeCachedJsonUntilPostChanges() throws Exception {
+        // Given
+        Post post = new Post(1L, "Test content", VERSION.modifiedAt(), VERSION.modifiedAt(), null, true);
+        when(postService.getPost(1L)).thenReturn(post);
+        
+        // When
+        byte[] first = postController.getPost(1L, webRequest).getBody();
+        byte[] second = postController.getPost(1L, webRequest).getBody();
+        post.setPublishedAt(Instant.parse("2025-01-02T00:00:00Z"));
+        post.setDraft(false);
+        byte[] published = postController.getPost(1L, webRequest).getBody();
+        
+        // Then
+        assertSame(first, second);
+        assertTrue(objectMapper.readTree(first).get("draft").asBoolean());
+        assertFalse(objectMapper.readTree(published).get("draft").asBoolean());
+        assertEquals(1L, jsonCache.hitCount());
+        assertEquals(2L, jsonCache.missCount());
+    }
+    
+    /**
+     * 圧縮したJSONのキャッシュのテスト
+     * - Accept-Encoding に gzip を含む場合は、大きなJSONが圧縮して返されること
+     * - gzip を含まない場合や q=0 の場合は圧縮されないこと
+     * - 圧縮した表現と圧縮しない表現で ETag が異なり、どちらにも Vary: Accept-Encoding が付くこと
+     */
+    @Test
+    void getPost_ShouldReturnGzippedJsonWhenAccepted() throws Exception {
+        // Given
+        PostJsonCache gzipCache = new PostJsonCache(objectMapper, new SimpleMeterRegistry(), 1 << 20, true);
+        Post post = new Post(1L, "word ".repeat(1000), VERSION.modifiedAt(), VERSION.modifiedAt(), null, true);
+        String gzipETag = gzipCache.etag(post, "br, gzip;q=0.8");
+        String plainETag = gzipCache.etag(post, "gzip;q=0");
+        
+        // When
+        ResponseEntity<byte[]> gzipped = gzipCache.response(post, gzipETag, "br, gzip;q=0.8");
+        ResponseEntity<byte[]> plain = gzipCache.response(post, plainETag, "gzip;q=0");
+        
+        // Then
+        assertEquals(ConditionalGets.etag(post), plainETag);
+        assertEquals(plainETag.substring(0, plainETag.length() - 1) + "-gz\"", gzipETag);
+        assertEquals(gzipETag, gzipped.getHeaders().getETag());
+        assertEquals(plainETag, plain.getHeaders().getETag());
+        assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), gzipped.getHeaders().getVary());
+        assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), gzipCache.notModified(gzipETag).getHeaders().getVary());
+        assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))) {
+            assertArrayEquals(plain.getBody(), in.readAllBytes());
+        }
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(gzipped.getBody().length < plain.getBody().length);
+    }
+    
+    /**
+     * 一覧のETagのテスト
+     * - 投稿の集合の版が変わるとETagが変わり、同じURLでもJSONとNDJSONでETagが異なること
+     */
+    @Test
+    void listETag_ShouldChangeWithVersionAndRepresentation() {
+        // Given
+        DataVersion next = new DataVersion(VERSION.epoch(), VERSION.counter() + 1, VERSION.modifiedAt());
+        DataVersion restarted = new DataVersion(VERSION.epoch() + 1, VERSION.counter(), VERSION.modifiedAt());
+        
+        // When
+        String etag = ConditionalGets.etag(VERSION, PostController.JSON);
+        
+        // Then
+        assertNotEquals(etag, ConditionalGets.etag(next, PostController.JSON));
+        assertNotEquals(etag, ConditionalGets.etag(restarted, PostController.JSON));
+        assertNotEquals(etag, ConditionalGets.etag(VERSION, PostController.NDJSON));
     }
 }
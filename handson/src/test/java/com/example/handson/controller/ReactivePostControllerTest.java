@@ -0,0 +1,148 @@
+package com.example.handson.controller;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.DataVersion;
+import com.example.handson.service.PostService;
+import com.example.handson.service.ReactivePostService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * ReactivePostControllerのテストクラス
+ * WebFlux版のエンドポイントが PostController と同じステータスコードとレスポンスを返すことを検証します
+ * サービス層はモック化したPostServiceをReactivePostServiceで包んで使います
+ */
+@ExtendWith(MockitoExtension.class)
+class ReactivePostControllerTest {
+
+    @Mock
+    private PostService postService;
+
+    @Mock
+    private ServerWebExchange exchange;
+
+    private ReactivePostController postController;
+
+    @BeforeEach
+    void setUp() {
+        postController = new ReactivePostController(new ReactivePostService(postService, new ObjectMapper()),
+                new ConditionalGets(new SimpleMeterRegistry()),
+                new PostJsonCache(new ObjectMapper(), new SimpleMeterRegistry(), 1 << 20, false));
+    }
+
+    /**
+     * 下書き作成エンドポイントのテスト
+     * - 有効なリクエストでHTTP 201 Createdと作成された投稿が返されること
+     * - 本文がない場合はHTTP 400 Bad Requestが返されること
+     */
+    @Test
+    void createDraft_ShouldReturnCreatedOrBadRequest() {
+        // Given
+        Post post = new Post("Test content");
+        post.setId(1L);
+        when(postService.createDraft("Test content")).thenReturn(post);
+
+        // When
+        ResponseEntity<Post> response = postController.createDraft(Map.of("content", "Test content")).block();
+        ResponseEntity<Post> invalid = postController.createDraft(Map.of()).block();
+
+        // Then
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(post, response.getBody());
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+    }
+
+    /**
+     * 存在しない投稿の公開・取得・削除のテスト
+     * - いずれもHTTP 404 Not Foundが返されること
+     */
+    @Test
+    void missingPost_ShouldReturnNotFound() {
+        // Given
+        when(postService.publishPost(99L)).thenReturn(null);
+        when(postService.getPost(99L)).thenReturn(null);
+        when(postService.deletePost(99L)).thenReturn(false);
+
+        // When / Then
+        assertEquals(HttpStatus.NOT_FOUND, postController.publishPost(99L).block().getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, postController.getPost(99L, exchange).block().getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, postController.deletePost(99L).block().getStatusCode());
+    }
+
+    /**
+     * 公開済み投稿の一覧エンドポイントのテスト
+     * - サービスのストリームの投稿が順に流れること
+     */
+    @Test
+    void getAllPublishedPosts_ShouldStreamPosts() {
+        // Given
+        List<Post> posts = Arrays.asList(new Post("Post 1"), new Post("Post 2"));
+        when(postService.streamPublishedPosts()).thenReturn(posts.stream());
+        when(postService.dataVersion()).thenReturn(new DataVersion(1L, 1L, Instant.parse("2025-01-01T00:00:00Z")));
+
+        // When
+        List<Post> response = postController.getAllPublishedPosts(exchange).block().getBody().collectList().block();
+
+        // Then
+        assertEquals(posts, response);
+    }
+
+    /**
+     * 検索エンドポイントで不正な検索条件を指定した場合のテスト
+     * - HTTP 400 Bad Requestとエラーメッセージが返されること
+     */
+    @Test
+    void searchPosts_ShouldReturnBadRequestForInvalidParameters() {
+        // Given
+        when(postService.searchWithPlan(null, null, null, "2025/07/01", null, null, null, null))
+                .thenThrow(new IllegalArgumentException("fromDate must be in yyyy-MM-dd format: 2025/07/01"));
+
+        // When
+        ResponseEntity<Object> response = postController
+                .searchPosts(null, null, null, "2025/07/01", null, null, null, null, false).block();
+
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("fromDate must be in yyyy-MM-dd format: 2025/07/01", response.getBody());
+    }
+
+    /**
+     * 下書きのページ取得エンドポイントのテスト
+     * - ページが埋まった場合は次ページ用のカーソルがヘッダーで返されること
+     * - 不正な件数ではHTTP 400 Bad Requestが返されること
+     */
+    @Test
+    void getDraftPostsPage_ShouldReturnNextCursorOrBadRequest() {
+        // Given
+        Post post = new Post("Post 1");
+        post.setId(7L);
+        when(postService.getDraftPostsPage(null, 1)).thenReturn(List.of(post));
+        when(postService.dataVersion()).thenReturn(new DataVersion(1L, 1L, Instant.parse("2025-01-01T00:00:00Z")));
+
+        // When
+        ResponseEntity<List<Post>> response = postController.getDraftPostsPage(1, null, exchange).block();
+        ResponseEntity<List<Post>> invalid = postController.getDraftPostsPage(0, null, exchange).block();
+
+        // Then
+        assertEquals(List.of(post), response.getBody());
+        assertEquals("7", response.getHeaders().getFirst(PostController.NEXT_CURSOR_HEADER));
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+    }
+}
@@ -314,4 +314,57 @@ public class PostTest {
         assertTrue(result.contains("content='テスト投稿'"));
         assertTrue(result.contains("isDraft=true"));
     }
+    
+    /**
+     * 単語数の計算が正規表現による分割と一致することをテスト
+     */
+    @Test
+    @DisplayName("単語数が正規表現による分割と同じ値になること")
+    public void testCountWordsMatchesRegexSplit() {
+        // 準備
+        String[] contents = {"", " ", "   ", "one", "one two", " one two", "one two ", "\tone\n two\r\n", "投稿1です。", "a　b"};
+        
+        // 実行と検証
+        for (String content : contents) {
+            assertEquals(content.split("\\s+").length, Post.countWords(content), "content=[" + content + "]");
+        }
+        assertEquals(0, Post.countWords(null));
+    }
+    
+    /**
+     * コンテンツ設定時に単語数が更新されることをテスト
+     */
+    @Test
+    @DisplayName("コンテンツ設定時に単語数が更新されること")
+    public void testSetContentUpdatesWordCount() {
+        // 準備
+        Post post = new Post("one two");
+        assertEquals(2, post.getWordCount());
+        
+        // 実行
+        post.setContent("one two three");
+        
+        // 検証
+        assertEquals(3, post.getWordCount());
+    }
+    
+    /**
+     * 小文字化済みキーワードの部分一致判定が toLowerCase().contains と一致することをテスト
+     */
+    @Test
+    @DisplayName("小文字化済みキーワードの部分一致判定がtoLowerCase().containsと同じ結果になること")
+    public void testContainsFoldedMatchesToLowerCaseContains() {
+        // 準備
+        String[] contents = {"Hello World", "投稿1です。", "İstanbul", "ΟΔΟΣ ΟΔΟΣ", "\uD801\uDC00abc", "", "ABC"};
+        String[] keywords = {"hello", "world", "投稿", "i̇stanbul", "istanbul", "οδος", "οδοσ", "\uD801\uDC28", "", "abcd", "c"};
+        
+        // 実行と検証
+        for (String content : contents) {
+            for (String keyword : keywords) {
+                assertEquals(content.toLowerCase().contains(keyword), Post.containsFolded(content, keyword),
+                        "content=[" + content + "], keyword=[" + keyword + "]");
+            }
+        }
+        assertFalse(Post.containsFolded(null, "a"));
+    }
 }
@@ -0,0 +1,69 @@
+package com.example.handson.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * CommitSequenceのテストクラス
+ * 先に振られた番号が終わるまで visible が進まず、待つのは終わった番号を見ようとする読み取りの側だけであることを検証します
+ */
+class CommitSequenceTest {
+
+    /**
+     * 後の番号は先の番号を待たずに終わり、awaitCompleted は先の番号が終わって後の番号が visible に取り込まれるまで戻らないことを確認
+     */
+    @Test
+    void awaitCompleted_ShouldWaitForEarlierCommits() throws Exception {
+        // Given
+        CommitSequence commits = new CommitSequence();
+        long first = commits.begin();
+        long second = commits.begin();
+
+        // When
+        commits.complete(second);
+        CompletableFuture<Long> reader = CompletableFuture.supplyAsync(commits::awaitCompleted);
+
+        // Then
+        assertThrows(TimeoutException.class, () -> reader.get(200, TimeUnit.MILLISECONDS));
+        assertEquals(0L, commits.visible());
+
+        // When
+        commits.complete(first);
+
+        // Then
+        assertEquals(second, (long) reader.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 終わっていない番号が WINDOW 個を超えても begin は待たず、complete が先の番号が終わるまで待つことを確認
+     */
+    @Test
+    void complete_ShouldWaitWhenWindowIsFull() throws Exception {
+        // Given
+        CommitSequence commits = new CommitSequence();
+        long first = commits.begin();
+        for (int i = 1; i < CommitSequence.WINDOW; i++) {
+            commits.complete(commits.begin());
+        }
+        long next = commits.begin();
+
+        // When
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> commits.complete(next));
+
+        // Then
+        assertEquals(CommitSequence.WINDOW + 1L, next);
+        assertThrows(TimeoutException.class, () -> writer.get(200, TimeUnit.MILLISECONDS));
+
+        // When
+        commits.complete(first);
+
+        // Then
+        writer.get(5, TimeUnit.SECONDS);
+        assertEquals(CommitSequence.WINDOW + 1L, commits.visible());
+    }
+}
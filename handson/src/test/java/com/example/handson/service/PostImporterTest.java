@@ -0,0 +1,164 @@
+package com.example.handson.service;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.bulk.ImportResult;
+import com.example.handson.service.persistence.DurabilityPolicy;
+import com.example.handson.service.persistence.WriteAheadLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * PostImporterのテストクラス
+ * NDJSONの行を1行ずつ取り込み、元の日時の維持と不正な行の扱いを検証します
+ */
+class PostImporterTest {
+
+    /**
+     * 公開日時のある行は公開済み、ない行は下書きとして元の日時のまま取り込まれ、
+     * 不正な行は行番号と理由が報告されて残りの行の取り込みが続くことを確認
+     */
+    @Test
+    void accept_ShouldImportValidLinesAndReportRejectedLines() {
+        // Given
+        PostService service = new PostService();
+        PostImporter importer = new PostImporter(service, new ObjectMapper());
+
+        // When
+        importer.accept("{\"content\":\"old draft\",\"createdAt\":\"2020-01-01T00:00:00Z\"}");
+        importer.accept("{\"content\":\"old post\",\"createdAt\":1577836800000,\"publishedAt\":\"2020-01-02T00:00:00Z\"}");
+        importer.accept("");
+        importer.accept("{\"content\":");
+        importer.accept("{\"createdAt\":\"2020-01-01T00:00:00Z\"}");
+        importer.accept("{\"content\":\"bad date\",\"createdAt\":\"yesterday\"}");
+        importer.accept("[\"not an object\"]");
+        ImportResult result = importer.finish();
+
+        // Then
+        assertEquals(2L, result.imported());
+        assertEquals(1L, result.published());
+        assertEquals(4L, result.rejected());
+        assertEquals(List.of(4L, 5L, 6L, 7L), result.failures().stream().map(ImportResult.Failure::line).toList());
+        assertEquals("content is required", result.failures().get(1).message());
+
+        List<Post> drafts = service.getAllDraftPosts();
+        assertEquals(1, drafts.size());
+        assertEquals(Instant.parse("2020-01-01T00:00:00Z"), drafts.get(0).getCreatedAt());
+        assertNull(drafts.get(0).getPublishedAt());
+        List<Post> published = service.getAllPublishedPosts();
+        assertEquals(1, published.size());
+        assertEquals(Instant.parse("2020-01-01T00:00:00Z"), published.get(0).getCreatedAt());
+        assertEquals(Instant.parse("2020-01-02T00:00:00Z"), published.get(0).getPublishedAt());
+        assertFalse(published.get(0).isDraft());
+    }
+
+    /**
+     * 入力から読んだ行のうち、MAX_LINE_LENGTH 文字を超える行（改行で終わらない最後の行を含みます）だけが
+     * 行番号とともに拒否され、CRLFの行や前後の行は取り込まれることを確認
+     */
+    @Test
+    void acceptAll_ShouldRejectLinesLongerThanLimit() throws Exception {
+        // Given
+        PostService service = new PostService();
+        PostImporter importer = new PostImporter(service, new ObjectMapper());
+        String longContent = "a".repeat(PostImporter.MAX_LINE_LENGTH);
+        String body = "{\"content\":\"first\"}\r\n"
+                + "{\"content\":\"" + longContent + "\"}\n"
+                + "{\"content\":\"" + longContent.substring(20) + "\"}\r\n"
+                + "{\"content\":\"last\"}\n"
+                + longContent + "b";
+
+        // When
+        importer.acceptAll(new StringReader(body));
+        ImportResult result = importer.finish();
+
+        // Then
+        assertEquals(3L, result.imported());
+        assertEquals(2L, result.rejected());
+        assertEquals(List.of(2L, 5L), result.failures().stream().map(ImportResult.Failure::line).toList());
+        assertEquals("line exceeds " + PostImporter.MAX_LINE_LENGTH + " characters",
+                result.failures().get(0).message());
+        assertEquals(List.of("first", "last"), service.getAllDraftPosts().stream()
+                .map(Post::getContent)
+                .filter(content -> content.length() < 10)
+                .sorted()
+                .toList());
+    }
+
+    /**
+     * 本文のバイト列を文字の途中で区切って渡しても、日本語の行が復元され、
+     * MAX_LINE_LENGTH 文字を超える行がエラーにならずに拒否されることを確認
+     */
+    @Test
+    void acceptBytes_ShouldSplitLinesAcrossChunksAndRejectLongLines() {
+        // Given
+        PostService service = new PostService();
+        PostImporter importer = new PostImporter(service, new ObjectMapper());
+        String longContent = "あ".repeat(PostImporter.MAX_LINE_LENGTH);
+        byte[] body = ("{\"content\":\"投稿1です\"}\r\n"
+                + "{\"content\":\"" + longContent + "\"}\n"
+                + "{\"content\":\"投稿2です\"}\n"
+                + "{\"content\":\"最後の行\"}").getBytes(StandardCharsets.UTF_8);
+
+        // When
+        for (int offset = 0; offset < body.length; offset += 7) {
+            importer.acceptBytes(ByteBuffer.wrap(body, offset, Math.min(7, body.length - offset)));
+        }
+        ImportResult result = importer.finish();
+
+        // Then
+        assertEquals(3L, result.imported());
+        assertEquals(1L, result.rejected());
+        assertEquals(List.of(2L), result.failures().stream().map(ImportResult.Failure::line).toList());
+        assertEquals(List.of("投稿1です", "投稿2です", "最後の行"),
+                service.getAllDraftPosts().stream().map(Post::getContent).toList());
+    }
+
+    /**
+     * 複数のバッチに分かれる件数を取り込んでも、書き込み先行ログから同じ投稿と日時が復元されることを確認
+     */
+    @Test
+    void finish_ShouldImportAllBatchesDurably(@TempDir Path dir) throws Exception {
+        // Given
+        Path path = dir.resolve("posts.wal");
+        int count = PostImporter.MICRO_BATCH_SIZE * 2 + 500;
+        ImportResult result;
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.PER_WRITE, 1)) {
+            PostImporter importer = new PostImporter(new PostService(log, null), new ObjectMapper());
+
+            // When
+            for (int i = 0; i < count; i++) {
+                long createdAt = 1_600_000_000_000L + i * 1000L;
+                importer.accept("{\"content\":\"imported post " + i + "\",\"createdAt\":" + createdAt
+                        + (i % 2 == 0 ? ",\"publishedAt\":" + (createdAt + 500) : "") + "}");
+            }
+            result = importer.finish();
+        }
+
+        // Then
+        assertEquals((long) count, result.imported());
+        assertEquals((long) (count / 2), result.published());
+        assertEquals(0L, result.rejected());
+        assertTrue(result.postsPerSecond() > 0);
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.PER_WRITE, 1)) {
+            PostService restored = new PostService(log, null);
+            assertEquals(count / 2, restored.getAllPublishedPosts().size());
+            assertEquals(count - count / 2, restored.getAllDraftPosts().size());
+            Post last = restored.getPost((long) count);
+            assertEquals("imported post " + (count - 1), last.getContent());
+            assertEquals(Instant.ofEpochMilli(1_600_000_000_000L + (count - 1) * 1000L), last.getCreatedAt());
+        }
+    }
+}
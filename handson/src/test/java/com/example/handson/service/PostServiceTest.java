@@ -1,16 +1,37 @@
 package com.example.handson.service;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import com.example.handson.model.Post;
+import com.example.handson.service.bulk.BatchResult;
+import com.example.handson.service.bulk.BulkRequest;
+import com.example.handson.service.bulk.BulkResult;
+import com.example.handson.service.content.OffHeapContentStore;
+import com.example.handson.service.persistence.DurabilityPolicy;
+import com.example.handson.service.persistence.SnapshotStore;
+import com.example.handson.service.persistence.WriteAheadLog;
+import com.example.handson.service.search.RankedPost;
 
 /**
  * PostServiceのテストクラス
@@ -139,6 +160,37 @@ class PostServiceTest {
         assertFalse(result);
     }
     
+    /**
+     * データの版のテスト
+     * - 作成・公開・削除のたびに版が進むことを確認
+     * - 読み出しや対象のない更新では版が変わらないことを確認
+     */
+    @Test
+    void dataVersion_ShouldAdvanceOnlyWhenPostsChange() {
+        // Given
+        DataVersion initial = postService.dataVersion();
+
+        // When
+        Post draft = postService.createDraft("Test content");
+        DataVersion created = postService.dataVersion();
+        postService.getAllDraftPosts();
+        postService.publishPost(999L);
+        postService.deletePost(999L);
+        DataVersion unchanged = postService.dataVersion();
+        postService.publishPost(draft.getId());
+        DataVersion published = postService.dataVersion();
+        postService.deletePost(draft.getId());
+        DataVersion deleted = postService.dataVersion();
+
+        // Then
+        assertEquals(initial.epoch(), deleted.epoch());
+        assertEquals(initial.counter() + 1, created.counter());
+        assertEquals(created, unchanged);
+        assertEquals(created.counter() + 1, published.counter());
+        assertEquals(published.counter() + 1, deleted.counter());
+        assertFalse(deleted.modifiedAt().isBefore(created.modifiedAt()));
+    }
+
     /**
      * 投稿取得機能のテスト
      * - 正しい投稿IDで投稿が取得できることを確認
@@ -224,4 +276,548 @@ class PostServiceTest {
             assertNull(post.getPublishedAt());
         }
     }
+    
+    /**
+     * キーワード検索機能のテスト
+     * - 大文字・小文字を区別せず本文の部分一致で検索されることを確認
+     * - 削除済みの投稿が検索結果に含まれないことを確認
+     */
+    @Test
+    void searchPostsWithFilters_ShouldFindPostsByKeyword() {
+        // Given
+        Post hello = postService.createDraft("Hello World");
+        Post other = postService.createDraft("Another post");
+        Post deleted = postService.createDraft("hello again");
+        postService.deletePost(deleted.getId());
+        
+        // When
+        List<Post> result = postService.searchPostsWithFilters("WORLD", null, null, null, null, null, null, null);
+        List<Post> helloResult = postService.searchPostsWithFilters("hello", null, null, null, null, null, null, null);
+        
+        // Then
+        assertEquals(List.of(hello), result);
+        assertEquals(List.of(hello), helloResult);
+        assertFalse(helloResult.contains(other));
+    }
+    
+    /**
+     * 公開・削除による区画間の移動のテスト
+     * - 公開した投稿が下書き一覧から消え、公開済み一覧に現れることを確認
+     * - 削除した公開済み投稿が公開済み一覧から消えることを確認
+     */
+    @Test
+    void publishAndDelete_ShouldMovePostsBetweenPartitions() {
+        // Given
+        Post first = postService.createDraft("First");
+        Post second = postService.createDraft("Second");
+        
+        // When
+        postService.publishPost(first.getId());
+        postService.publishPost(second.getId());
+        postService.deletePost(second.getId());
+        
+        // Then
+        assertEquals(List.of(first), postService.getAllPublishedPosts());
+        assertTrue(postService.getAllDraftPosts().isEmpty());
+        assertEquals(List.of(first), postService.searchPostsWithFilters(null, null, null, null, null, false, null, null));
+    }
+    
+    /**
+     * 一覧と検索のストリームが、読み始めた時点の投稿を返すことのテスト
+     * - 読み始めた後に削除・作成した投稿が、結果に反映されないことを確認
+     * - 削除した投稿の本文（ヒープ外）も、ストリームを閉じるまで読めることを確認
+     */
+    @Test
+    void streamPosts_ShouldReturnPostsAsOfFirstRead() {
+        // Given
+        OffHeapContentStore contents = new OffHeapContentStore(1024);
+        PostService offHeapService = new PostService(null, null, contents);
+        Post first = offHeapService.createDraft("First");
+        Post second = offHeapService.createDraft("Second");
+        offHeapService.publishPost(first.getId());
+        offHeapService.publishPost(second.getId());
+
+        // When
+        try (Stream<Post> published = offHeapService.streamPublishedPosts();
+                Stream<Post> searched = offHeapService.streamSearch(null, null, null, null, null, null, null, null)) {
+            Iterator<Post> publishedPosts = published.iterator();
+            Iterator<Post> searchedPosts = searched.iterator();
+            assertEquals(first.getId(), publishedPosts.next().getId());
+            assertEquals("First", searchedPosts.next().getContent());
+            offHeapService.deletePost(second.getId());
+            offHeapService.createDraft("Third");
+
+            // Then
+            assertEquals(second.getId(), publishedPosts.next().getId());
+            assertFalse(publishedPosts.hasNext());
+            assertEquals("Second", searchedPosts.next().getContent());
+            assertFalse(searchedPosts.hasNext());
+        }
+        assertEquals(List.of(first), offHeapService.getAllPublishedPosts());
+        assertNull(contents.get(second.getId()));
+    }
+    
+        /**
+     * ID範囲による絞り込みのテスト
+     * - afterIdより大きくbeforeIdより小さいIDの投稿だけが返されることを確認
+     */
+    @Test
+    void searchPostsWithFilters_ShouldFilterByIdRange() {
+        // Given
+        Post first = postService.createDraft("Post 1");
+        Post second = postService.createDraft("Post 2");
+        Post third = postService.createDraft("Post 3");
+        
+        // When
+        List<Post> result = postService.searchPostsWithFilters(null, third.getId(), first.getId(), null, null, null, null, null);
+        List<Post> emptyResult = postService.searchPostsWithFilters(null, first.getId(), third.getId(), null, null, null, null, null);
+        
+        // Then
+        assertEquals(List.of(second), result);
+        assertTrue(emptyResult.isEmpty());
+    }
+    
+    /**
+     * キーセットページングのテスト
+     * - カーソルより大きいIDの投稿が昇順に指定件数ずつ返されることを確認
+     */
+    @Test
+    void getDraftPostsPage_ShouldPageThroughDraftsInIdOrder() {
+        // Given
+        Post first = postService.createDraft("Draft 1");
+        Post second = postService.createDraft("Draft 2");
+        Post third = postService.createDraft("Draft 3");
+        
+        // When
+        List<Post> firstPage = postService.getDraftPostsPage(null, 2);
+        List<Post> secondPage = postService.getDraftPostsPage(firstPage.get(1).getId(), 2);
+        
+        // Then
+        assertEquals(List.of(first, second), firstPage);
+        assertEquals(List.of(third), secondPage);
+        assertTrue(postService.getPublishedPostsPage(null, 2).isEmpty());
+    }
+    
+    /**
+     * 作成日による絞り込みのテスト
+     * - 指定した期間に作成された投稿だけが返されることを確認
+     */
+    @Test
+    void searchPostsWithFilters_ShouldFilterByCreatedDate() {
+        // Given
+        Post post = postService.createDraft("Test content");
+        
+        // When
+        List<Post> inRange = postService.searchPostsWithFilters(null, null, null, "2000-01-01", "2999-12-31", null, null, null);
+        List<Post> outOfRange = postService.searchPostsWithFilters(null, null, null, "2999-01-01", null, null, null, null);
+        
+        // Then
+        assertEquals(List.of(post), inRange);
+        assertTrue(outOfRange.isEmpty());
+    }
+    
+    /**
+     * 公開日時による公開済み投稿の検索のテスト
+     * - 公開日時の範囲内の公開済み投稿だけが返されることを確認
+     * - 下書きと削除済みの投稿が含まれないことを確認
+     */
+    @Test
+    void searchPublishedPosts_ShouldFilterByPublishedAtRange() {
+        // Given
+        Instant before = Instant.now().minusSeconds(1);
+        Post published = postService.createDraft("Published");
+        Post deleted = postService.createDraft("Deleted");
+        postService.createDraft("Draft");
+        postService.publishPost(published.getId());
+        postService.publishPost(deleted.getId());
+        postService.deletePost(deleted.getId());
+        
+        Post.SearchParams inRange = new Post.SearchParams();
+        inRange.setPublishedAfter(before);
+        inRange.setPublishedBefore(Instant.now().plusSeconds(1));
+        Post.SearchParams outOfRange = new Post.SearchParams();
+        outOfRange.setPublishedBefore(before);
+        
+        // When & Then
+        assertEquals(List.of(published), postService.searchPublishedPosts(inRange));
+        assertTrue(postService.searchPublishedPosts(outOfRange).isEmpty());
+    }
+    
+    /**
+     * 単語数による絞り込みのテスト
+     * - 単語数が指定した範囲内の投稿だけが返されることを確認
+     */
+    @Test
+    void searchPostsWithFilters_ShouldFilterByWordCount() {
+        // Given
+        postService.createDraft("one");
+        Post two = postService.createDraft("one two");
+        Post three = postService.createDraft("one two three");
+        
+        // When
+        List<Post> result = postService.searchPostsWithFilters(null, null, null, null, null, null, 2, 3);
+        List<Post> withKeyword = postService.searchPostsWithFilters("three", null, null, null, null, null, null, 2);
+        
+        // Then
+        assertEquals(2, result.size());
+        assertTrue(result.containsAll(List.of(two, three)));
+        assertTrue(withKeyword.isEmpty());
+    }
+    
+    /**
+     * 不正な日付形式で検索した場合のテスト
+     * - エラーを無視せず IllegalArgumentException で拒否されることを確認
+     */
+    @Test
+    void searchPostsWithFilters_ShouldRejectInvalidDate() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class,
+                () -> postService.searchPostsWithFilters(null, null, null, "not-a-date", null, null, null, null));
+    }
+    
+    /**
+     * フィード取得機能のテスト
+     * - 公開済み投稿が公開日時の新しい順に指定件数だけ返されることを確認
+     * - 指定日時より前に公開された投稿だけが返されることを確認
+     */
+    @Test
+    void getFeed_ShouldReturnLatestPublishedPostsFirst() throws InterruptedException {
+        // Given
+        Post first = postService.createDraft("First");
+        Post second = postService.createDraft("Second");
+        Post third = postService.createDraft("Third");
+        postService.createDraft("Draft");
+        postService.publishPost(first.getId());
+        Thread.sleep(2);
+        postService.publishPost(third.getId());
+        Thread.sleep(2);
+        postService.publishPost(second.getId());
+        
+        // When
+        List<Post> latest = postService.getFeed(null, 2);
+        List<Post> older = postService.getFeed(latest.get(1).getPublishedAt(), 10);
+        
+        // Then
+        assertEquals(List.of(second, third), latest);
+        assertEquals(List.of(first), older);
+    }
+    
+    /**
+     * 関連度順の検索機能のテスト
+     * - 指定した状態の投稿だけが関連度の高い順に返されることを確認
+     */
+    @Test
+    void rankPosts_ShouldReturnPostsOrderedByRelevance() {
+        // Given
+        Post once = postService.createDraft("Spring Boot tutorial for beginners");
+        Post twice = postService.createDraft("Spring Spring");
+        Post draft = postService.createDraft("Spring");
+        postService.publishPost(once.getId());
+        postService.publishPost(twice.getId());
+        
+        // When
+        List<RankedPost> result = postService.rankPosts("spring", 10, false);
+        
+        // Then
+        assertEquals(List.of(twice, once), result.stream().map(RankedPost::post).toList());
+        assertFalse(result.stream().anyMatch(ranked -> ranked.post().equals(draft)));
+    }
+    
+    /**
+     * 下書きの一括作成機能のテスト
+     * - 有効な要素に連続したIDが割り当てられること
+     * - 本文のない要素は失敗として位置とともに返され、他の要素の作成は続行されること
+     * - 作成した投稿がインデックス経由で検索できること
+     */
+    @Test
+    void createDrafts_ShouldCreateValidItemsAndReportFailures() {
+        // Given
+        Post before = postService.createDraft("Existing");
+        
+        // When
+        BatchResult result = postService.createDrafts(Arrays.asList("Batch one", null, "Batch two"));
+        Post after = postService.createDraft("Next");
+        
+        // Then
+        assertEquals(2, result.created().size());
+        assertEquals(before.getId() + 1, (long) result.created().get(0).getId());
+        assertEquals(before.getId() + 2, (long) result.created().get(1).getId());
+        assertEquals(before.getId() + 3, (long) after.getId());
+        assertEquals(List.of(new BatchResult.Failure(1, "content is required")), result.failures());
+        assertEquals(4, postService.getAllDraftPosts().size());
+        assertEquals(result.created(), postService.searchPostsWithFilters("batch", null, null, null, null, true, null, null));
+    }
+    
+    /**
+     * IDのリストによる一括公開・一括削除のテスト
+     * - IDごとの結果が指定した順に返されること
+     * - 公開済み・存在しないIDはそれぞれの理由で失敗として返されること
+     */
+    @Test
+    void publishAndDeletePosts_ShouldReturnOutcomePerId() {
+        // Given
+        Post first = postService.createDraft("First");
+        Post second = postService.createDraft("Second");
+        postService.publishPost(second.getId());
+        
+        // When
+        BulkResult published = postService.publishPosts(List.of(first.getId(), second.getId(), 999L));
+        BulkResult deleted = postService.deletePosts(List.of(second.getId(), 999L));
+        
+        // Then
+        assertEquals(1, published.succeeded());
+        assertEquals(List.of(
+                new BulkResult.Outcome(first.getId(), BulkResult.Status.PUBLISHED),
+                new BulkResult.Outcome(second.getId(), BulkResult.Status.NOT_DRAFT),
+                new BulkResult.Outcome(999L, BulkResult.Status.NOT_FOUND)), published.outcomes());
+        assertEquals(1, deleted.succeeded());
+        assertEquals(BulkResult.Status.NOT_FOUND, deleted.outcomes().get(1).status());
+        assertEquals(List.of(first), postService.getAllPublishedPosts());
+    }
+    
+    /**
+     * 検索条件による一括公開・一括削除のテスト
+     * - 一括公開は条件に一致する下書きだけが対象になること
+     * - 並列処理される件数でも、すべての投稿が区画とインデックスから正しく更新されること
+     */
+    @Test
+    void publishAndDeletePosts_ShouldApplyToPostsMatchingFilter() {
+        // Given
+        List<String> contents = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            contents.add(i % 2 == 0 ? "campaign " + i : "regular " + i);
+        }
+        postService.createDrafts(contents);
+        BulkRequest campaign = new BulkRequest(null, "campaign", null, null, null, null, null, null, null);
+        
+        // When
+        BulkResult published = postService.publishPosts(campaign);
+        int publishedCampaign = postService.getAllPublishedPosts().size();
+        BulkResult deleted = postService.deletePosts(campaign);
+        
+        // Then
+        assertEquals(2500, published.succeeded());
+        assertEquals(2500, publishedCampaign);
+        assertEquals(2500, deleted.succeeded());
+        assertTrue(postService.getAllPublishedPosts().isEmpty());
+        assertEquals(2500, postService.getAllDraftPosts().size());
+        assertTrue(postService.searchPostsWithFilters("campaign", null, null, null, null, null, null, null).isEmpty());
+        assertTrue(postService.getFeed(null, 10).isEmpty());
+    }
+    
+    /**
+     * 本文をヒープ外に保持する場合のテスト
+     * - 作成・公開した投稿の本文が読み出せ、キーワード検索と関連度順の検索が同じ結果になること
+     * - 削除した投稿の本文がヒープ外のストアからも削除されること
+     */
+    @Test
+    void offHeapContent_ShouldBehaveLikeHeapContent() {
+        // Given
+        OffHeapContentStore contents = new OffHeapContentStore(1024);
+        PostService offHeap = new PostService(null, null, contents);
+        for (PostService service : List.of(postService, offHeap)) {
+            service.createDraft("Spring Boot 入門");
+            service.createDraft("spring spring spring");
+            service.createDraft("Deleted SPRING post");
+            service.publishPost(1L);
+            service.deletePost(3L);
+        }
+
+        // When & Then
+        assertEquals("Spring Boot 入門", offHeap.getPost(1L).getContent());
+        assertEquals(postService.getAllPublishedPosts(), offHeap.getAllPublishedPosts());
+        assertEquals(postService.searchPostsWithFilters("SPRING", null, null, null, null, null, null, null),
+                offHeap.searchPostsWithFilters("SPRING", null, null, null, null, null, null, null));
+        assertEquals(postService.searchPostsWithFilters("入門", null, null, null, null, null, 2, null),
+                offHeap.searchPostsWithFilters("入門", null, null, null, null, null, 2, null));
+        assertEquals(postService.rankPosts("spring", 10, null), offHeap.rankPosts("spring", 10, null));
+        assertEquals(2L, contents.size());
+        assertNull(contents.get(3L));
+    }
+    
+    /**
+     * 書き込み先行ログによる永続化のテスト
+     * - 作成・公開・削除した投稿が、ログの再生によって同じ状態に復元されること
+     * - 復元後に作成した投稿に、既存のIDと重複しないIDが割り当てられること
+     */
+    @Test
+    void writeAheadLog_ShouldRestorePostsAfterRestart(@TempDir Path dir) throws IOException {
+        // Given
+        Path path = dir.resolve("posts.wal");
+        Post draft;
+        Post published;
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.PER_WRITE, 1)) {
+            PostService service = new PostService(log, null);
+            draft = service.createDraft("Draft content");
+            Long publishedId = service.createDraft("Published content").getId();
+            Post deleted = service.createDraft("Deleted content");
+            published = service.publishPost(publishedId);
+            service.deletePost(deleted.getId());
+        }
+        
+        // When
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.PER_WRITE, 1)) {
+            PostService restored = new PostService(log, null);
+            Post created = restored.createDraft("After restart");
+            
+            // Then
+            assertEquals(List.of(draft, created), restored.getAllDraftPosts());
+            assertEquals(List.of(published), restored.getAllPublishedPosts());
+            assertEquals(published.getPublishedAt(), restored.getPost(published.getId()).getPublishedAt());
+            assertEquals(draft.getCreatedAt(), restored.getPost(draft.getId()).getCreatedAt());
+            assertEquals(4L, (long) created.getId());
+            assertEquals(List.of(published), restored.searchPostsWithFilters("published", null, null, null, null, false, null, null));
+        }
+    }
+    
+    /**
+     * 書き込み先行ログに記録できなかった公開・削除が、ストアに反映されないことのテスト
+     */
+    @Test
+    void writeAheadLog_ShouldNotApplyChangesThatWereNotLogged(@TempDir Path dir) throws IOException {
+        // Given
+        WriteAheadLog log = new WriteAheadLog(dir.resolve("posts.wal"), DurabilityPolicy.PER_WRITE, 1);
+        PostService service = new PostService(log, null);
+        Long id = service.createDraft("Draft content").getId();
+        log.close();
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> service.publishPost(id));
+        assertThrows(IllegalStateException.class, () -> service.publishPosts(List.of(id)));
+        assertTrue(service.getPost(id).isDraft());
+        assertThrows(IllegalStateException.class, () -> service.deletePost(id));
+        assertThrows(IllegalStateException.class, () -> service.deletePosts(List.of(id)));
+        assertNotNull(service.getPost(id));
+    }
+
+    /**
+     * 同じ下書きを複数のスレッドから同時に公開しても、再起動後に公開に成功した1件の公開日時が復元されることのテスト
+     */
+    @Test
+    void writeAheadLog_ShouldRestorePublishedAtOfConcurrentPublish(@TempDir Path dir) throws Exception {
+        // Given
+        Path path = dir.resolve("posts.wal");
+        List<Post> published = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.PER_WRITE, 1)) {
+            PostService service = new PostService(log, null);
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                ids.add(service.createDraft("Draft " + i).getId());
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                // When
+                List<Future<List<Post>>> futures = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    futures.add(executor.submit(() -> {
+                        List<Post> posts = new ArrayList<>();
+                        for (Long id : ids) {
+                            Post post = service.publishPost(id);
+                            if (post != null) {
+                                posts.add(post);
+                            }
+                        }
+                        return posts;
+                    }));
+                }
+                for (Future<List<Post>> future : futures) {
+                    published.addAll(future.get());
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        // Then
+        assertEquals(50, published.size());
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.PER_WRITE, 1)) {
+            PostService restored = new PostService(log, null);
+            for (Post post : published) {
+                assertEquals(post.getPublishedAt(), restored.getPost(post.getId()).getPublishedAt());
+            }
+        }
+    }
+
+    /**
+     * 作成と同時に同じIDを削除しても、再起動後に削除された投稿が復元されず、残った投稿だけが復元されることのテスト
+     */
+    @Test
+    void writeAheadLog_ShouldRestoreDeletesRacingWithCreates(@TempDir Path dir) throws Exception {
+        // Given
+        Path path = dir.resolve("posts.wal");
+        List<Post> expected;
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.ASYNC, 1)) {
+            PostService service = new PostService(log, null);
+            Thread creator = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    service.createDraft("content " + i);
+                }
+            });
+
+            // When
+            creator.start();
+            List<Long> ids = new ArrayList<>();
+            for (long id = 1; id <= 2000; id += 2) {
+                ids.add(id);
+            }
+            while (creator.isAlive()) {
+                service.deletePosts(ids);
+            }
+            creator.join();
+            expected = service.getAllDraftPosts();
+        }
+
+        // Then
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.PER_WRITE, 1)) {
+            assertEquals(expected, new PostService(log, null).getAllDraftPosts());
+        }
+    }
+
+    /**
+     * スナップショットによる復元のテスト
+     * - 書き込みと並行してスナップショットを取っても、再起動後にスナップショットとそれ以降のログから同じ状態が復元されること
+     * - スナップショットに含まれる古いログのセグメントが削除されること
+     */
+    @Test
+    void snapshot_ShouldRestoreSameStateWhileWritesContinue(@TempDir Path dir) throws Exception {
+        // Given
+        Path walPath = dir.resolve("posts.wal");
+        Path snapshotPath = dir.resolve("posts.snapshot");
+        List<Post> expectedDrafts;
+        List<Post> expectedPublished;
+        try (WriteAheadLog log = new WriteAheadLog(walPath, DurabilityPolicy.ASYNC, 1)) {
+            PostService service = new PostService(log, new SnapshotStore(snapshotPath));
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 3000; i++) {
+                    Post post = service.createDraft("content " + i);
+                    if (i % 3 == 0) {
+                        service.publishPost(post.getId());
+                    } else if (i % 3 == 1) {
+                        service.deletePost(post.getId());
+                    }
+                }
+            });
+            
+            // When
+            writer.start();
+            for (int i = 0; i < 5; i++) {
+                service.snapshot();
+            }
+            writer.join();
+            service.createDraft("after snapshots");
+            expectedDrafts = service.getAllDraftPosts();
+            expectedPublished = service.getAllPublishedPosts();
+        }
+        
+        // Then
+        try (WriteAheadLog log = new WriteAheadLog(walPath, DurabilityPolicy.ASYNC, 1)) {
+            PostService restored = new PostService(log, new SnapshotStore(snapshotPath));
+            assertEquals(expectedDrafts, restored.getAllDraftPosts());
+            assertEquals(expectedPublished, restored.getAllPublishedPosts());
+            assertEquals(3002L, (long) restored.createDraft("next").getId());
+            assertEquals(1000, restored.searchPostsWithFilters("content", null, null, null, null, false, null, null).size());
+        }
+        assertFalse(Files.exists(walPath));
+        assertTrue(Files.exists(dir.resolve("posts.wal.5")));
+    }
 }
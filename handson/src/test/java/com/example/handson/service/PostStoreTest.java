@@ -0,0 +1,274 @@
+package com.example.handson.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PostStoreのテストクラス
+ * 同じ投稿への公開・削除を複数のスレッドから同時に行っても、主索引と区画・インデックス・件数が食い違わないことを検証します
+ * ビューは開いた時点の投稿だけを返し、閉じた後に古い版が取り除かれることを検証します
+ */
+class PostStoreTest {
+
+    private static final int THREADS = 8;
+    private static final int POSTS = 20_000;
+
+    private PostStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new PostStore();
+        for (long id = 1; id <= POSTS; id++) {
+            store.insert(StoredPost.draft(id, "post " + id, Instant.now()));
+        }
+    }
+
+    /**
+     * 同じ下書きを全スレッドが同時に公開しても、公開に成功するのは投稿ごとに1つだけであることを確認
+     * 置き換えに失敗した公開や公開済みの投稿の公開は、投稿の集合の版を進めないことを確認
+     */
+    @Test
+    void publish_ShouldSucceedOnceUnderContention() throws Exception {
+        // Given
+        AtomicLong succeeded = new AtomicLong();
+        long before = store.version().counter();
+
+        // When
+        runConcurrently(thread -> {
+            for (long id = 1; id <= POSTS; id++) {
+                if (store.publish(id, Instant.now()) != null) {
+                    succeeded.incrementAndGet();
+                }
+            }
+        });
+
+        // Then
+        assertEquals(POSTS, succeeded.get());
+        assertEquals(before + POSTS, store.version().counter());
+        assertEquals(POSTS, store.publishedCount());
+        assertEquals(0L, store.draftCount());
+        try (PostStore.ReadView view = store.openView()) {
+            assertEquals(POSTS, count(view.scan(false, null, null)));
+            assertFalse(view.scan(true, null, null).hasNext());
+        }
+        assertEquals(POSTS, store.publishedAtIndex().range(null, null).size());
+    }
+
+    /**
+     * 同じ投稿の公開と削除を同時に行っても、削除した投稿が公開済みの区画やインデックスに残らないことを確認
+     */
+    @Test
+    void publishAndRemove_ShouldNotLeaveRemovedPostsInPartitions() throws Exception {
+        // Given
+        AtomicLong removed = new AtomicLong();
+
+        // When
+        runConcurrently(thread -> {
+            for (long id = 1; id <= POSTS; id++) {
+                // 半数のスレッドが公開し、残りのスレッドが偶数のIDの投稿を削除します
+                if (thread % 2 == 0) {
+                    store.publish(id, Instant.now());
+                } else if (id % 2 == 0 && store.remove(id) != null) {
+                    removed.incrementAndGet();
+                }
+            }
+        });
+
+        // Then
+        assertEquals(POSTS / 2, removed.get());
+        try (PostStore.ReadView view = store.openView()) {
+            for (long id = 1; id <= POSTS; id++) {
+                boolean exists = id % 2 != 0;
+                assertEquals(exists, store.get(id) != null, "post " + id);
+                assertEquals(exists, view.get(id) != null && !view.get(id).isDraft(), "published " + id);
+            }
+            assertEquals(POSTS / 2, count(view.scan(false, null, null)));
+            assertFalse(view.scan(true, null, null).hasNext());
+        }
+        assertEquals(0, store.retiredVersions());
+        assertEquals(POSTS / 2, store.publishedCount());
+        assertEquals(0L, store.draftCount());
+        assertEquals(POSTS / 2, store.publishedAtIndex().range(null, null).size());
+        assertNull(store.publish(2L, Instant.now()));
+    }
+
+    /**
+     * ビューを開いた後の追加・公開・削除はそのビューからは見えず、新しく開いたビューからは見えることを確認
+     * 削除した投稿はビューを閉じるまでインデックスに残り、閉じた後に取り除かれることを確認
+     */
+    @Test
+    void openView_ShouldReadPointInTimeStateWhileWritesContinue() {
+        // Given
+        store.publish(1L, Instant.now());
+        PostStore.ReadView before = store.openView();
+
+        // When
+        store.publish(2L, Instant.now());
+        store.remove(1L);
+        store.remove(3L);
+        store.insert(StoredPost.draft(POSTS + 1, "new post", Instant.now()));
+
+        // Then
+        assertEquals(List.of(1L), ids(before.scan(false, null, null)));
+        assertEquals(POSTS - 1, count(before.scan(true, null, null)));
+        assertEquals(List.of(2L, 3L, 4L), ids(before.scan(true, 1L, 5L)));
+        assertTrue(before.get(2L).isDraft());
+        assertNull(before.get(POSTS + 1));
+        try (PostStore.ReadView after = store.openView()) {
+            assertTrue(after.version() > before.version());
+            assertEquals(List.of(2L), ids(after.scan(false, null, null)));
+            assertEquals(List.of(4L), ids(after.scan(true, 1L, 5L)));
+            assertNull(after.get(1L));
+            assertEquals(POSTS + 1, after.get(POSTS + 1).id());
+        }
+        assertTrue(store.retiredVersions() > 0);
+        assertTrue(store.keywordIndex().search("post 3").contains(3L));
+
+        // When
+        before.close();
+
+        // Then
+        assertEquals(0, store.retiredVersions());
+        assertFalse(store.keywordIndex().search("post 3").contains(3L));
+        assertEquals(POSTS - 1, store.size());
+    }
+
+    /**
+     * streamInView のビューは要素を読み始めた時点で開かれ、ストリームを閉じたときか、ストリームの作成に失敗したときに閉じられることを確認
+     */
+    @Test
+    void streamInView_ShouldOpenViewLazilyAndCloseIt() {
+        // Given
+        Stream<StoredPost> unread = store.streamInView(view -> ids(view.scan(true, null, null)).stream()
+                .map(view::get));
+        Stream<StoredPost> read = store.streamInView(view -> ids(view.scan(true, null, null)).stream()
+                .map(view::get));
+        Stream<StoredPost> failing = store.streamInView(view -> {
+            throw new IllegalStateException("failed");
+        });
+
+        // When
+        store.remove(1L);
+
+        // Then
+        assertEquals(0, store.retiredVersions());
+
+        // When
+        Iterator<StoredPost> iterator = read.iterator();
+        assertEquals(2L, iterator.next().id());
+        store.remove(3L);
+
+        // Then
+        assertEquals(3L, iterator.next().id());
+        assertEquals(1, store.retiredVersions());
+        read.close();
+        assertEquals(0, store.retiredVersions());
+        assertThrows(IllegalStateException.class, () -> failing.iterator().hasNext());
+        store.remove(4L);
+        assertEquals(0, store.retiredVersions());
+        unread.close();
+    }
+
+    /**
+     * 公開・削除・まとめての追加と並行して開いたビューが、常に1つの時点の状態を返すことを確認
+     * （下書きと公開済みの区画の両方に見える投稿や、どちらにも見えない投稿がなく、まとめて追加した投稿は全件か0件が見えます）
+     */
+    @Test
+    void openView_ShouldSeeConsistentStateUnderConcurrentWrites() throws Exception {
+        // Given
+        int batch = 10;
+        AtomicLong nextId = new AtomicLong(POSTS + 1);
+        AtomicLong views = new AtomicLong();
+
+        // When
+        runConcurrently(thread -> {
+            if (thread < 2) {
+                for (long id = 1 + thread; id <= POSTS; id += 2) {
+                    store.publish(id, Instant.now());
+                }
+            } else if (thread < 4) {
+                for (int i = 0; i < 200; i++) {
+                    List<StoredPost> posts = new ArrayList<>();
+                    for (int j = 0; j < batch; j++) {
+                        posts.add(StoredPost.draft(nextId.getAndIncrement(), "batch", Instant.now()));
+                    }
+                    store.insertAll(posts);
+                    store.publish(posts.get(0).id(), Instant.now());
+                }
+            } else {
+                for (int i = 0; i < 50; i++) {
+                    try (PostStore.ReadView view = store.openView()) {
+                        List<Long> drafts = ids(view.scan(true, null, null));
+                        List<Long> published = ids(view.scan(false, null, null));
+                        List<Long> all = new ArrayList<>(drafts);
+                        all.addAll(published);
+                        all.sort(null);
+                        assertEquals(all.size(), all.stream().distinct().count());
+                        assertEquals(POSTS, all.stream().filter(id -> id <= POSTS).count());
+                        assertEquals(0, (all.size() - POSTS) % batch);
+                        views.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        // Then
+        assertEquals(4 * 50, views.get());
+        assertEquals(0, store.retiredVersions());
+        assertEquals(POSTS + 4000, store.size());
+    }
+
+    private static long count(Iterator<StoredPost> posts) {
+        long count = 0;
+        for (; posts.hasNext(); posts.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    private static List<Long> ids(Iterator<StoredPost> posts) {
+        List<Long> ids = new ArrayList<>();
+        posts.forEachRemaining(post -> ids.add(post.id()));
+        return ids;
+    }
+
+    private interface Worker {
+        void run(int thread);
+    }
+
+    // 全スレッドを同時に開始させ、全スレッドが終わるまで待ちます
+    private static void runConcurrently(Worker worker) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            for (int thread = 0; thread < THREADS; thread++) {
+                int index = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    worker.run(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+    }
+}
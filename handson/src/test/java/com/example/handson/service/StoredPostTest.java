@@ -0,0 +1,107 @@
+package com.example.handson.service;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.content.OffHeapContentStore;
+
+/**
+ * StoredPostのテストクラス
+ * 省メモリな内部表現と Post との変換で、値が失われないことを検証します
+ */
+class StoredPostTest {
+
+    /**
+     * Post から変換して戻したときに、ID・本文・語数・ナノ秒精度の日時・状態が一致することを確認
+     */
+    @Test
+    void toPost_ShouldRoundTripAllFields() {
+        // Given
+        Post post = new Post(42L, "Hello compact world", Instant.parse("2025-07-01T00:00:00.123456789Z"),
+                Instant.parse("2025-07-01T12:00:00.000000001Z"), Instant.parse("1960-01-01T00:00:00.5Z"), false);
+
+        // When
+        Post restored = StoredPost.of(post).toPost();
+
+        // Then
+        assertEquals(post.getId(), restored.getId());
+        assertEquals(post.getContent(), restored.getContent());
+        assertEquals(post.getWordCount(), restored.getWordCount());
+        assertEquals(post.getCreatedAt(), restored.getCreatedAt());
+        assertEquals(post.getUpdatedAt(), restored.getUpdatedAt());
+        assertEquals(post.getPublishedAt(), restored.getPublishedAt());
+        assertFalse(restored.isDraft());
+    }
+
+    /**
+     * 設定されていない日時と本文が、変換後もnullのままになることを確認
+     */
+    @Test
+    void toPost_ShouldKeepMissingValuesAsNull() {
+        // Given
+        StoredPost post = StoredPost.of(1L, null, null, null, null, true);
+
+        // When
+        Post restored = post.toPost();
+
+        // Then
+        assertNull(restored.getContent());
+        assertNull(restored.getCreatedAt());
+        assertNull(restored.getUpdatedAt());
+        assertNull(restored.getPublishedAt());
+        assertFalse(post.hasCreatedAt());
+        assertTrue(restored.isDraft());
+    }
+
+    /**
+     * 本文をヒープ外に保持する投稿を変換した後に本文が削除・移動されても、変換した時点の本文が返されることを確認
+     */
+    @Test
+    void toPost_ShouldKeepOffHeapContentAfterRemoval() {
+        // Given
+        OffHeapContentStore contents = new OffHeapContentStore(64);
+        contents.put(1L, "Removed content");
+        contents.put(2L, "Kept content");
+        StoredPost post = StoredPost.draft(1L, "Removed content", Instant.now()).withContentIn(contents);
+
+        // When
+        Post converted = post.toPost();
+        contents.remove(1L);
+        for (long id = 3; id <= 10; id++) {
+            contents.put(id, "Content " + id);
+        }
+
+        // Then
+        assertNull(post.content());
+        assertEquals("Removed content", converted.getContent());
+    }
+
+    /**
+     * 公開すると元のインスタンスは変更されず、公開日時を持つ公開済みの投稿が新しく返されることを確認
+     */
+    @Test
+    void publish_ShouldReturnPublishedCopy() {
+        // Given
+        Instant createdAt = Instant.parse("2025-07-01T00:00:00Z");
+        Instant publishedAt = Instant.parse("2025-07-02T00:00:00Z");
+        StoredPost draft = StoredPost.draft(7L, "Draft", createdAt);
+
+        // When
+        StoredPost published = draft.publish(publishedAt);
+
+        // Then
+        assertTrue(draft.isDraft());
+        assertNull(draft.publishedAt());
+        assertFalse(published.isDraft());
+        assertEquals(publishedAt, published.publishedAt());
+        assertEquals(createdAt, published.createdAt());
+        assertEquals(createdAt, published.updatedAt());
+        assertEquals(7L, published.id());
+    }
+}
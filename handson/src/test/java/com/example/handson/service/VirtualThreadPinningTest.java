@@ -0,0 +1,81 @@
+package com.example.handson.service;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.bulk.BulkRequest;
+import com.example.handson.service.content.OffHeapContentStore;
+import com.example.handson.service.persistence.DurabilityPolicy;
+import com.example.handson.service.persistence.SnapshotStore;
+import com.example.handson.service.persistence.WriteAheadLog;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * 仮想スレッドからPostServiceを呼び出したときに、キャリアスレッドが固定（pinning）されないことを検証するテストクラス
+ * 仮想スレッドが synchronized の中などでブロックすると、JFRの jdk.VirtualThreadPinned イベントが記録されます
+ */
+class VirtualThreadPinningTest {
+
+    /**
+     * 書き込み先行ログ・スナップショット・ヒープ外の本文をすべて有効にして、多数の仮想スレッドから同時に
+     * 作成・公開・検索・一括更新・削除を行っても、pinning のイベントが記録されないことを確認
+     */
+    @Test
+    void serviceOperations_ShouldNotPinCarrierThreads(@TempDir Path dir) throws Exception {
+        // Given
+        Path recordingPath = dir.resolve("pinning.jfr");
+        List<Future<?>> futures = new ArrayList<>();
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+            try (WriteAheadLog log = new WriteAheadLog(dir.resolve("posts.wal"), DurabilityPolicy.PER_WRITE, 1);
+                    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                PostService service = new PostService(log, new SnapshotStore(dir.resolve("posts.snapshot")),
+                        new OffHeapContentStore(4096));
+
+                // When
+                for (int i = 0; i < 500; i++) {
+                    int n = i;
+                    futures.add(executor.submit(() -> {
+                        Post post = service.createDraft("virtual thread post " + n);
+                        service.publishPost(post.getId());
+                        service.searchPostsWithFilters("thread", null, null, null, null, false, null, null);
+                        service.rankPosts("virtual post", 10, null);
+                        service.getFeed(null, 10);
+                        if (n % 2 == 0) {
+                            service.deletePost(post.getId());
+                        }
+                        if (n % 50 == 0) {
+                            service.snapshot();
+                            service.deletePosts(BulkRequest.ofIds(List.of(post.getId())));
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+            recording.stop();
+            recording.dump(recordingPath);
+        }
+
+        // Then
+        List<RecordedEvent> pinned = RecordingFile.readAllEvents(recordingPath).stream()
+                .filter(event -> event.getEventType().getName().equals("jdk.VirtualThreadPinned"))
+                .toList();
+        assertTrue(pinned.isEmpty(), "pinned: " + pinned);
+    }
+}
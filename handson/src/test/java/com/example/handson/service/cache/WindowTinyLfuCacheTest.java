@@ -0,0 +1,128 @@
+package com.example.handson.service.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * WindowTinyLfuCacheのテストクラス
+ * 重みの合計が上限を超えないこと、頻繁に参照される要素が一度だけ参照される要素に追い出されないことを検証します
+ */
+class WindowTinyLfuCacheTest {
+
+    /**
+     * 追加・置き換え・取り除きで重みの合計が追従し、上限を超えた分が追い出されることを確認
+     * 重みが上限を超える値は保持されないことを確認
+     */
+    @Test
+    void put_ShouldKeepWeightedSizeWithinMaximum() {
+        // Given
+        WindowTinyLfuCache<String> cache = new WindowTinyLfuCache<>(100, String::length);
+
+        // When
+        cache.put(1L, "aaaaa");
+        cache.put(1L, "aaaaaaaaaa");
+        cache.put(2L, "b".repeat(101));
+
+        // Then
+        assertEquals("aaaaaaaaaa", cache.get(1L));
+        assertEquals(10L, cache.weightedSize());
+        assertNull(cache.get(2L));
+
+        // When
+        for (long key = 10; key < 100; key++) {
+            cache.put(key, "cccccccccc");
+            assertTrue(cache.weightedSize() <= 100);
+        }
+        cache.invalidate(1L);
+
+        // Then
+        assertNull(cache.get(1L));
+        assertEquals(cache.size() * 10, cache.weightedSize());
+        assertTrue(cache.evictionCount() > 0);
+        assertEquals(0L, new WindowTinyLfuCache<String>(100, String::length).evictionCount());
+    }
+
+    /**
+     * 参照の多い要素は、一度だけ参照される多数の要素を追加しても追い出されないことを確認
+     * （最近参照された順だけで追い出す場合は、すべて追い出されます）
+     */
+    @Test
+    void evict_ShouldKeepFrequentlyReadEntriesDuringScan() {
+        // Given
+        WindowTinyLfuCache<String> cache = new WindowTinyLfuCache<>(100, value -> 1);
+        for (long key = 0; key < 50; key++) {
+            cache.put(key, "hot");
+        }
+        for (int i = 0; i < 20; i++) {
+            for (long key = 0; key < 50; key++) {
+                cache.get(key);
+            }
+        }
+
+        // When
+        for (long key = 1000; key < 11_000; key++) {
+            cache.put(key, "scan");
+            cache.get(key % 50);
+        }
+
+        // Then
+        for (long key = 0; key < 50; key++) {
+            assertNotNull(cache.get(key), "hot key " + key);
+        }
+        assertTrue(cache.size() <= 100);
+    }
+
+    /**
+     * 複数のスレッドから同時に取得・追加・取り除きを行っても、重みの合計が要素と一致して上限を超えないことを確認
+     */
+    @Test
+    void concurrentAccess_ShouldKeepWeightsConsistent() throws Exception {
+        // Given
+        WindowTinyLfuCache<Long> cache = new WindowTinyLfuCache<>(1000, value -> 1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // When
+        try {
+            for (int t = 0; t < 8; t++) {
+                long seed = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 100_000; i++) {
+                        long key = random.nextInt(5000);
+                        int operation = random.nextInt(10);
+                        if (operation < 7) {
+                            Long value = cache.get(key);
+                            if (value != null) {
+                                assertEquals(key, value.longValue());
+                            }
+                        } else if (operation < 9) {
+                            cache.put(key, key);
+                        } else {
+                            cache.invalidate(key);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then
+        assertTrue(cache.weightedSize() <= 1000);
+        assertEquals(cache.size(), cache.weightedSize());
+    }
+}
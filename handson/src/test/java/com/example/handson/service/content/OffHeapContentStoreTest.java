@@ -0,0 +1,130 @@
+package com.example.handson.service.content;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * OffHeapContentStoreのテストクラス
+ * ヒープ外に保存した本文の読み出し・照合と、削除によるセグメントのコンパクションを検証します
+ */
+class OffHeapContentStoreTest {
+
+    /**
+     * 日本語や大文字を含む本文と空の本文が、保存したとおりに読み出せることを確認
+     */
+    @Test
+    void get_ShouldDecodeStoredContent() {
+        // Given
+        OffHeapContentStore store = new OffHeapContentStore();
+
+        // When
+        store.put(1L, "投稿1です。");
+        store.put(2L, "Hello World");
+        store.put(3L, "");
+
+        // Then
+        assertEquals("投稿1です。", store.get(1L));
+        assertEquals("Hello World", store.get(2L));
+        assertEquals("hello world", store.getFolded(2L));
+        assertEquals("", store.get(3L));
+        assertEquals(11, store.foldedLength(2L));
+        assertNull(store.get(4L));
+        assertEquals(3L, store.size());
+    }
+
+    /**
+     * ランダムな本文とキーワードで、バイト列の照合結果が toLowerCase().contains と同じになることを確認
+     */
+    @Test
+    void containsFolded_ShouldBeEquivalentToStringContains() {
+        // Given
+        OffHeapContentStore store = new OffHeapContentStore(256);
+        Random random = new Random(42);
+        String alphabet = "abcABC xyzÄä投稿Σσ";
+        Map<Long, String> contents = new HashMap<>();
+        for (long id = 1; id <= 300; id++) {
+            String content = randomText(random, alphabet, random.nextInt(20));
+            contents.put(id, content);
+            store.put(id, content);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            String keyword = randomText(random, alphabet, random.nextInt(4)).toLowerCase();
+            for (Map.Entry<Long, String> entry : contents.entrySet()) {
+                // When
+                boolean actual = store.containsFolded(entry.getKey(), keyword);
+
+                // Then
+                assertEquals(entry.getValue().toLowerCase().contains(keyword), actual,
+                        "content=" + entry.getValue() + ", keyword=" + keyword);
+            }
+        }
+    }
+
+    /**
+     * 削除によって不要な領域が増えたセグメントが手放され、残りの本文は移動後も読み出せることを確認
+     */
+    @Test
+    void remove_ShouldCompactSparseSegments() {
+        // Given
+        OffHeapContentStore store = new OffHeapContentStore(1024);
+        for (long id = 1; id <= 1000; id++) {
+            store.put(id, "content of post " + id);
+        }
+        long allocated = store.allocatedBytes();
+
+        // When
+        for (long id = 1; id <= 1000; id++) {
+            if (id % 10 != 0) {
+                assertTrue(store.remove(id));
+            }
+        }
+
+        // Then
+        assertFalse(store.remove(1L));
+        assertEquals(100L, store.size());
+        assertTrue(store.allocatedBytes() < allocated / 4, store.allocatedBytes() + " / " + allocated);
+        assertTrue(store.liveBytes() * 2 >= store.allocatedBytes() - 1024);
+        for (long id = 10; id <= 1000; id += 10) {
+            assertEquals("content of post " + id, store.get(id));
+            assertTrue(store.containsFolded(id, "post " + id));
+        }
+    }
+
+    /**
+     * セグメントより大きい本文も保存でき、削除するとそのセグメントが手放されることを確認
+     */
+    @Test
+    void put_ShouldStoreContentLargerThanSegment() {
+        // Given
+        OffHeapContentStore store = new OffHeapContentStore(64);
+        String large = "Large ".repeat(100);
+
+        // When
+        store.put(1L, large);
+        store.put(2L, "small");
+
+        // Then
+        assertEquals(large, store.get(1L));
+        assertTrue(store.containsFolded(1L, "large large"));
+        long allocated = store.allocatedBytes();
+        store.remove(1L);
+        assertTrue(store.allocatedBytes() < allocated);
+        assertEquals("small", store.get(2L));
+    }
+
+    private static String randomText(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
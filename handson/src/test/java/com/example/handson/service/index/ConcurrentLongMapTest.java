@@ -0,0 +1,197 @@
+package com.example.handson.service.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * ConcurrentLongMapのテストクラス
+ * 単一スレッドでは HashMap と同じ結果になり、並行して更新しても値が失われないことを検証します
+ */
+class ConcurrentLongMapTest {
+
+    private ConcurrentLongMap<String> map;
+
+    @BeforeEach
+    void setUp() {
+        map = new ConcurrentLongMap<>();
+    }
+
+    /**
+     * 0や負の値を含むキーで、追加・置き換え・削除ができることを確認
+     */
+    @Test
+    void basicOperations_ShouldSupportAnyLongKey() {
+        // Given
+        long[] keys = {0L, 1L, -1L, Long.MIN_VALUE, Long.MAX_VALUE};
+
+        // When
+        for (long key : keys) {
+            assertNull(map.put(key, "v" + key));
+        }
+
+        // Then
+        assertEquals(keys.length, map.size());
+        for (long key : keys) {
+            assertEquals("v" + key, map.get(key));
+            assertEquals("v" + key, map.putIfAbsent(key, "other"));
+            assertEquals("v" + key, map.put(key, "w" + key));
+            assertEquals("x" + key, map.computeIfPresent(key, (k, value) -> "x" + k));
+            assertEquals("x" + key, map.remove(key));
+            assertFalse(map.containsKey(key));
+            assertNull(map.computeIfPresent(key, (k, value) -> "y"));
+        }
+        assertTrue(map.isEmpty());
+    }
+
+    /**
+     * 拡張や削除済みスロットの再利用を繰り返しても、ランダムな操作の結果が HashMap と一致することを確認
+     */
+    @Test
+    void randomOperations_ShouldBeEquivalentToHashMap() {
+        // Given
+        Random random = new Random(42);
+        Map<Long, String> expected = new HashMap<>();
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5000) - 100;
+            String value = "v" + i;
+
+            // When & Then
+            switch (random.nextInt(5)) {
+                case 0, 1 -> assertEquals(expected.put(key, value), map.put(key, value));
+                case 2 -> assertEquals(expected.putIfAbsent(key, value), map.putIfAbsent(key, value));
+                case 3 -> assertEquals(expected.remove(key), map.remove(key));
+                default -> assertEquals(expected.computeIfPresent(key, (k, v) -> v + "!"),
+                        map.computeIfPresent(key, (k, v) -> v + "!"));
+            }
+        }
+
+        // Then
+        assertEquals(expected.size(), (long) map.size());
+        List<String> values = new ArrayList<>();
+        map.forEach(values::add);
+        List<String> expectedValues = new ArrayList<>(expected.values());
+        values.sort(null);
+        expectedValues.sort(null);
+        assertEquals(expectedValues, values);
+    }
+
+    /**
+     * 複数スレッドからの追加・削除がすべて反映され、その間も更新していないキーの読み取りが失敗しないことを確認
+     */
+    @Test
+    void concurrentUpdates_ShouldNotLoseEntriesWhileTablesGrow() throws Exception {
+        // Given
+        for (long key = 1; key <= 1000; key++) {
+            map.put(-key, "stable");
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        try (ExecutorService executor = Executors.newFixedThreadPool(10)) {
+            Future<Integer> reader = executor.submit(() -> {
+                int misses = 0;
+                while (running.get()) {
+                    for (long key = 1; key <= 1000; key++) {
+                        misses += map.get(-key) == null ? 1 : 0;
+                    }
+                }
+                return misses;
+            });
+            List<Future<?>> writers = new ArrayList<>();
+
+            // When
+            for (int thread = 0; thread < 8; thread++) {
+                long base = thread * 100_000L;
+                writers.add(executor.submit(() -> {
+                    for (long key = base; key < base + 20_000; key++) {
+                        map.put(key, "k" + key);
+                    }
+                    for (long key = base; key < base + 20_000; key += 2) {
+                        map.remove(key);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            running.set(false);
+
+            // Then
+            assertEquals(0, (int) reader.get());
+        }
+        assertEquals(1000 + 8 * 10_000, (long) map.size());
+        for (int thread = 0; thread < 8; thread++) {
+            long base = thread * 100_000L;
+            assertNull(map.get(base));
+            assertEquals("k" + (base + 1), map.get(base + 1));
+        }
+    }
+
+    /**
+     * ロックを取らない置き換え（replace）と、ロックを取る更新・表の拡張が競合しても、どの増分も失われないことを確認
+     */
+    @Test
+    void compareAndSet_ShouldNotLoseUpdatesWhileTablesGrow() throws Exception {
+        // Given
+        ConcurrentLongMap<Long> counters = new ConcurrentLongMap<>();
+        for (long key = 0; key < 64; key++) {
+            counters.put(key, 0L);
+        }
+        int increments = 20_000;
+
+        // When
+        try (ExecutorService executor = Executors.newFixedThreadPool(10)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                boolean locked = thread % 4 == 0;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random();
+                    for (int i = 0; i < increments; i++) {
+                        long key = random.nextInt(64);
+                        if (locked) {
+                            counters.computeIfPresent(key, (k, value) -> value + 1);
+                            continue;
+                        }
+                        Long current;
+                        do {
+                            current = counters.get(key);
+                        } while (!counters.replace(key, current, current + 1));
+                    }
+                }));
+            }
+            // 同じセグメントにキーを追加・削除して、表の作り直しを繰り返させます
+            futures.add(executor.submit(() -> {
+                for (long key = 1000; key < 200_000; key++) {
+                    counters.put(key, key);
+                    assertTrue(counters.remove(key, counters.get(key)));
+                }
+            }));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        // Then
+        long total = 0;
+        for (long key = 0; key < 64; key++) {
+            total += counters.get(key);
+        }
+        assertEquals(8L * increments, total);
+        assertEquals(64L, counters.size());
+        assertFalse(counters.replace(1L, 0L, 1L));
+        assertFalse(counters.remove(999L, 0L));
+    }
+}
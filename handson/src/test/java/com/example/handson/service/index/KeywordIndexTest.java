@@ -0,0 +1,202 @@
+package com.example.handson.service.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.handson.model.Post;
+
+/**
+ * KeywordIndexのテストクラス
+ * 転置インデックスによる検索結果が部分一致（String#contains）と一致することを検証します
+ */
+class KeywordIndexTest {
+
+    // インデックスが照合に使う本文（投稿の保存先の代わり）
+    private final Map<Long, String> texts = new HashMap<>();
+    private KeywordIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = newIndex();
+    }
+
+    /**
+     * 大文字・小文字を区別せずに部分一致で検索できることを確認
+     */
+    @Test
+    void search_ShouldMatchSubstringIgnoringCase() {
+        // Given
+        add(1L, "Hello World");
+        add(2L, "hello there");
+        add(3L, "Goodbye");
+
+        // When
+        List<Long> result = index.search("HELLO");
+
+        // Then
+        assertEquals(2, result.size());
+        assertTrue(result.contains(1L));
+        assertTrue(result.contains(2L));
+    }
+
+    /**
+     * 1文字のキーワードと日本語の本文でも検索できることを確認
+     */
+    @Test
+    void search_ShouldSupportSingleCharacterAndJapaneseKeywords() {
+        // Given
+        add(1L, "投稿1です。");
+        add(2L, "投稿2です。");
+
+        // When & Then
+        assertEquals(List.of(2L), index.search("2"));
+        assertEquals(2, index.search("投稿").size());
+        assertEquals(List.of(1L), index.search("稿1で"));
+    }
+
+    /**
+     * 削除した投稿が検索結果に含まれないことを確認
+     */
+    @Test
+    void remove_ShouldExcludePostFromResults() {
+        // Given
+        add(1L, "Test content");
+        add(2L, "Test content");
+
+        // When
+        index.remove(1L, "Test content");
+        texts.remove(1L);
+
+        // Then
+        assertEquals(List.of(2L), index.search("content"));
+    }
+
+    /**
+     * ランダムな本文とキーワードで、検索結果が線形走査の部分一致と同じになることを確認
+     */
+    @Test
+    void search_ShouldBeEquivalentToLinearContainsScan() {
+        // Given
+        Random random = new Random(42);
+        String alphabet = "abcABC xyz投稿";
+        Map<Long, String> contents = new HashMap<>();
+        for (long id = 1; id <= 300; id++) {
+            String content = randomText(random, alphabet, 1 + random.nextInt(20));
+            contents.put(id, content);
+            add(id, content);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            String keyword = randomText(random, alphabet, 1 + random.nextInt(4));
+
+            // When
+            List<Long> actual = new ArrayList<>(index.search(keyword));
+
+            // Then
+            List<Long> expected = new ArrayList<>();
+            contents.forEach((id, content) -> {
+                if (content.toLowerCase().contains(keyword.toLowerCase())) {
+                    expected.add(id);
+                }
+            });
+            actual.sort(null);
+            expected.sort(null);
+            assertEquals(expected, actual, "keyword=" + keyword);
+        }
+    }
+
+    /**
+     * 語の出現回数が多く本文の短い投稿ほど上位になり、上位k件だけが返されることを確認
+     */
+    @Test
+    void rank_ShouldOrderByBm25ScoreAndKeepTopK() {
+        // Given
+        add(1L, "spring boot and java");
+        add(2L, "spring spring spring");
+        add(3L, "a very long post that mentions spring only once among many other words");
+        add(4L, "nothing relevant");
+
+        // When
+        List<KeywordIndex.Scored> top = index.rank("Spring", 2, id -> true);
+
+        // Then
+        assertEquals(2, top.size());
+        assertEquals(2L, top.get(0).id());
+        assertEquals(1L, top.get(1).id());
+        assertTrue(top.get(0).score() > top.get(1).score());
+    }
+
+    /**
+     * 日本語の本文を文字n-gramで照合し、すべての語を含む投稿だけが対象になることを確認
+     */
+    @Test
+    void rank_ShouldMatchJapaneseContentWithCharacterNgrams() {
+        // Given
+        add(1L, "投稿1です。");
+        add(2L, "投稿2です。");
+        add(3L, "下書きです。");
+
+        // When
+        List<KeywordIndex.Scored> result = index.rank("投稿 です", 10, id -> true);
+        List<KeywordIndex.Scored> filtered = index.rank("投稿", 10, id -> id == 2L);
+
+        // Then
+        assertEquals(List.of(1L, 2L), result.stream().map(KeywordIndex.Scored::id).toList());
+        assertEquals(List.of(2L), filtered.stream().map(KeywordIndex.Scored::id).toList());
+        assertTrue(index.rank("存在しない", 10, id -> true).isEmpty());
+    }
+
+    /**
+     * 一括登録した場合も、1件ずつ登録した場合と同じ検索結果・スコアになることを確認
+     */
+    @Test
+    void addAll_ShouldBeEquivalentToIndividualAdds() {
+        // Given
+        Map<Long, String> contents = new LinkedHashMap<>();
+        contents.put(1L, "spring boot");
+        contents.put(2L, "Spring spring");
+        contents.put(3L, null);
+        contents.put(4L, "投稿です");
+        contents.forEach((id, content) -> {
+            if (content != null) {
+                texts.put(id, content);
+            }
+        });
+        KeywordIndex individual = newIndex();
+        contents.forEach(individual::add);
+
+        // When
+        index.addAll(contents);
+
+        // Then
+        assertEquals(individual.search("spring"), index.search("spring"));
+        assertEquals(individual.search("投稿"), index.search("投稿"));
+        assertEquals(individual.rank("spring", 10, id -> true), index.rank("spring", 10, id -> true));
+    }
+
+    private KeywordIndex newIndex() {
+        return new KeywordIndex((id, foldedKeyword) -> Post.containsFolded(texts.get(id), foldedKeyword));
+    }
+
+    private void add(long id, String content) {
+        texts.put(id, content);
+        index.add(id, content);
+    }
+
+    private static String randomText(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
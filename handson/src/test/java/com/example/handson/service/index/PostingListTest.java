@@ -0,0 +1,112 @@
+package com.example.handson.service.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PostingListのテストクラス
+ * 追加・一括追加・削除の結果が TreeMap と同じになり、読み始めた時点の Block が後の書き込みで変わらないことを検証します
+ */
+class PostingListTest {
+
+    private PostingList list;
+
+    @BeforeEach
+    void setUp() {
+        list = new PostingList();
+    }
+
+    /**
+     * ランダムな順序の追加・一括追加・削除で、IDの昇順の内容が TreeMap と同じになることを確認
+     */
+    @Test
+    void operations_ShouldBeEquivalentToTreeMap() {
+        // Given
+        Random random = new Random(42);
+        Map<Long, Integer> expected = new TreeMap<>();
+
+        for (int i = 0; i < 5_000; i++) {
+            long id = random.nextInt(500);
+            int operation = random.nextInt(10);
+
+            // When
+            if (operation < 5) {
+                int value = 1 + random.nextInt(9);
+                list.put(id, value);
+                expected.put(id, value);
+            } else if (operation < 9) {
+                assertEquals(!expected.containsKey(id) ? expected.isEmpty() : expected.size() == 1,
+                        list.remove(id));
+                expected.remove(id);
+            } else {
+                PostingList.Builder batch = new PostingList.Builder();
+                for (int j = 0; j < 20; j++) {
+                    long batchId = id + j * 7L;
+                    batch.add(batchId, j + 1);
+                    expected.put(batchId, j + 1);
+                }
+                list.putAll(batch);
+            }
+
+            // Then
+            assertEquals(expected.size(), list.size());
+            assertEquals(new ArrayList<>(expected.keySet()), ids(list.snapshot()));
+            expected.forEach((key, value) -> assertEquals((int) value, list.value(key), "id=" + key));
+        }
+    }
+
+    /**
+     * Block を取得した後の末尾への追加・途中への追加・詰め直しが、取得済みの Block の範囲を書き換えないことを確認
+     */
+    @Test
+    void snapshot_ShouldNotChangeWithLaterAppendsAndInserts() {
+        // Given
+        for (long id = 10; id <= 100; id += 10) {
+            list.put(id, 1);
+        }
+        PostingList.Block before = list.snapshot();
+
+        // When
+        list.put(200L, 2);
+        list.put(55L, 3);
+        PostingList.Builder batch = new PostingList.Builder();
+        batch.add(300L, 4);
+        batch.add(250L, 5);
+        list.putAll(batch);
+
+        // Then
+        assertEquals(List.of(10L, 20L, 30L, 40L, 50L, 60L, 70L, 80L, 90L, 100L), ids(before));
+        assertEquals(0, before.value(200L));
+        assertEquals(List.of(10L, 20L, 30L, 40L, 50L, 55L, 60L, 70L, 80L, 90L, 100L, 200L, 250L, 300L),
+                ids(list.snapshot()));
+        assertEquals(5, list.value(250L));
+
+        // When
+        for (long id = 10; id <= 100; id += 10) {
+            assertFalse(list.remove(id));
+        }
+
+        // Then
+        assertEquals(List.of(55L, 200L, 250L, 300L), ids(list.snapshot()));
+        assertTrue(list.snapshot().ids().length < 14);
+    }
+
+    private static List<Long> ids(PostingList.Block block) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < block.size(); i++) {
+            if (block.values()[i] != 0) {
+                ids.add(block.ids()[i]);
+            }
+        }
+        return ids;
+    }
+}
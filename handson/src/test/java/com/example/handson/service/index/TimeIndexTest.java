@@ -0,0 +1,87 @@
+package com.example.handson.service.index;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * TimeIndexのテストクラス
+ * 日時の範囲検索が両端を含み、日時の昇順で結果を返すことを検証します
+ */
+class TimeIndexTest {
+
+    private final Instant base = Instant.parse("2025-07-01T00:00:00Z");
+    private TimeIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TimeIndex();
+        index.add(3L, nanos(20));
+        index.add(1L, nanos(0));
+        index.add(2L, nanos(10));
+        index.add(4L, nanos(10));
+    }
+
+    /**
+     * 範囲の両端を含めて日時の昇順（同時刻はIDの昇順）で返されることを確認
+     */
+    @Test
+    void range_ShouldReturnIdsWithinInclusiveBoundsInTimeOrder() {
+        // When
+        List<Long> result = index.range(base.plusSeconds(10), base.plusSeconds(20));
+
+        // Then
+        assertEquals(List.of(2L, 4L, 3L), result);
+    }
+
+    /**
+     * 片側だけの範囲指定と、逆転した範囲指定を確認
+     */
+    @Test
+    void range_ShouldSupportOpenAndEmptyRanges() {
+        // When & Then
+        assertEquals(List.of(1L, 2L, 4L), index.range(null, base.plusSeconds(10)));
+        assertEquals(List.of(3L), index.range(base.plusSeconds(11), null));
+        assertTrue(index.range(base.plusSeconds(20), base).isEmpty());
+        assertEquals(4, index.range(Instant.MIN, Instant.MAX).size());
+    }
+
+    /**
+     * 削除したエントリが範囲検索に含まれないことを確認
+     */
+    @Test
+    void remove_ShouldExcludeEntryFromRange() {
+        // When
+        index.remove(2L, nanos(10));
+
+        // Then
+        assertEquals(List.of(1L, 4L, 3L), index.range(null, null));
+    }
+
+    /**
+     * 指定日時より前のエントリが新しい順（同時刻はIDの降順）に返されることを確認
+     */
+    @Test
+    void latest_ShouldReturnNewestEntriesBeforeGivenTime() {
+        // When & Then
+        assertEquals(List.of(3L, 4L, 2L, 1L), ids(index.latest(null)));
+        assertEquals(List.of(4L, 2L, 1L), ids(index.latest(base.plusSeconds(20))));
+        assertTrue(ids(index.latest(base)).isEmpty());
+    }
+
+    private long nanos(long seconds) {
+        return TimeIndex.toEpochNanos(base.plusSeconds(seconds));
+    }
+
+    private static List<Long> ids(Iterator<Long> iterator) {
+        List<Long> ids = new ArrayList<>();
+        iterator.forEachRemaining(ids::add);
+        return ids;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.handson.service.index;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * WordCountIndexのテストクラス
+ * 単語数の範囲指定で該当するバケットの投稿IDだけが返されることを検証します
+ */
+class WordCountIndexTest {
+
+    private WordCountIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new WordCountIndex();
+        index.add(1L, 1);
+        index.add(2L, 3);
+        index.add(3L, 3);
+        index.add(4L, 10);
+    }
+
+    /**
+     * 範囲の両端を含めて単語数の昇順で返されることを確認
+     */
+    @Test
+    void range_ShouldReturnIdsWithinInclusiveBounds() {
+        // When
+        List<Long> result = index.range(3, 10);
+
+        // Then
+        assertEquals(3, result.size());
+        assertTrue(result.containsAll(List.of(2L, 3L, 4L)));
+        assertEquals(4L, (long) result.get(2));
+    }
+
+    /**
+     * 片側だけの範囲指定と、逆転した範囲指定を確認
+     */
+    @Test
+    void range_ShouldSupportOpenAndEmptyRanges() {
+        // When & Then
+        assertEquals(List.of(1L), index.range(null, 2));
+        assertEquals(List.of(4L), index.range(4, null));
+        assertTrue(index.range(10, 1).isEmpty());
+    }
+
+    /**
+     * 削除したエントリが範囲検索に含まれないことを確認
+     */
+    @Test
+    void remove_ShouldExcludeEntryFromRange() {
+        // When
+        index.remove(2L, 3);
+        index.remove(3L, 3);
+
+        // Then
+        assertEquals(List.of(1L, 4L), index.range(null, null));
+    }
+}
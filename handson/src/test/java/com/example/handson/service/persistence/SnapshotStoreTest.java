@@ -0,0 +1,129 @@
+package com.example.handson.service.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.handson.service.StoredPost;
+
+/**
+ * SnapshotStoreのテストクラス
+ * 保存した投稿が同じ内容で（メモリマップの窓をまたいでも）読み込まれること、壊れたスナップショットを検出できることを検証します
+ */
+class SnapshotStoreTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 下書き・公開済みの投稿が、日時や状態を含めて同じ内容で読み込まれることを確認
+     */
+    @Test
+    void loadLatest_ShouldRestoreSavedPosts() throws IOException {
+        // Given
+        SnapshotStore snapshots = new SnapshotStore(dir.resolve("posts.snapshot"));
+        StoredPost draft = post(1L, "投稿1です。", null);
+        StoredPost published = post(2L, "Published post", Instant.parse("2025-07-02T00:00:00.5Z"));
+
+        // When
+        snapshots.save(3, 10, List.of(draft, published));
+        SnapshotStore.Snapshot snapshot = snapshots.loadLatest().orElseThrow();
+
+        // Then
+        assertEquals(3, snapshot.generation());
+        assertEquals(10, snapshot.nextId());
+        assertEquals(2, snapshot.posts().size());
+        StoredPost restoredDraft = snapshot.posts().get(0);
+        StoredPost restoredPublished = snapshot.posts().get(1);
+        assertEquals(draft.content(), restoredDraft.content());
+        assertEquals(draft.createdAt(), restoredDraft.createdAt());
+        assertEquals(draft.updatedAt(), restoredDraft.updatedAt());
+        assertEquals(draft.wordCount(), restoredDraft.wordCount());
+        assertTrue(restoredDraft.isDraft());
+        assertNull(restoredDraft.publishedAt());
+        assertEquals(published.id(), restoredPublished.id());
+        assertFalse(restoredPublished.isDraft());
+        assertEquals(published.publishedAt(), restoredPublished.publishedAt());
+    }
+
+    /**
+     * 最新の世代のスナップショットが読み込まれ、古い世代を削除できることを確認
+     */
+    @Test
+    void loadLatest_ShouldPreferNewestGeneration() throws IOException {
+        // Given
+        SnapshotStore snapshots = new SnapshotStore(dir.resolve("posts.snapshot"));
+        assertTrue(snapshots.loadLatest().isEmpty());
+        snapshots.save(1, 2, List.of(post(1L, "old", null)));
+        snapshots.save(12, 3, List.of(post(1L, "old", null), post(2L, "new", null)));
+
+        // When
+        snapshots.deleteBefore(12);
+
+        // Then
+        assertEquals(12, snapshots.loadLatest().orElseThrow().generation());
+        assertFalse(Files.exists(dir.resolve("posts.snapshot.1")));
+        assertTrue(Files.exists(dir.resolve("posts.snapshot.12")));
+    }
+
+    /**
+     * 投稿がメモリマップの窓の境界をまたいでも、窓より大きな投稿があっても、同じ内容で読み込まれることを確認
+     */
+    @Test
+    void loadLatest_ShouldReadPostsAcrossMappedWindows() throws IOException {
+        // Given
+        SnapshotStore snapshots = new SnapshotStore(dir.resolve("posts.snapshot"), 64);
+        List<StoredPost> posts = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            posts.add(post(id, "投稿" + "x".repeat((int) (id * 7 % 150)), id % 3 == 0 ? Instant.now() : null));
+        }
+
+        // When
+        snapshots.save(5, 101, posts);
+        SnapshotStore.Snapshot snapshot = snapshots.loadLatest().orElseThrow();
+
+        // Then
+        assertEquals(101, snapshot.nextId());
+        assertEquals(posts.size(), snapshot.posts().size());
+        for (int i = 0; i < posts.size(); i++) {
+            assertEquals(posts.get(i).id(), snapshot.posts().get(i).id());
+            assertEquals(posts.get(i).content(), snapshot.posts().get(i).content());
+            assertEquals(posts.get(i).publishedAt(), snapshot.posts().get(i).publishedAt());
+        }
+    }
+
+    /**
+     * 内容が書き換わったスナップショットがチェックサムで検出されることを確認
+     */
+    @Test
+    void loadLatest_ShouldRejectCorruptSnapshot() throws IOException {
+        // Given
+        SnapshotStore snapshots = new SnapshotStore(dir.resolve("posts.snapshot"));
+        snapshots.save(1, 2, List.of(post(1L, "content", null)));
+        try (FileChannel channel = FileChannel.open(dir.resolve("posts.snapshot.1"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {42}), 30);
+        }
+
+        // When & Then
+        assertThrows(IllegalStateException.class, snapshots::loadLatest);
+    }
+
+    private static StoredPost post(long id, String content, Instant publishedAt) {
+        StoredPost post = StoredPost.draft(id, content, Instant.parse("2025-07-01T00:00:00.123456789Z"));
+        return publishedAt != null ? post.publish(publishedAt) : post;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.handson.service.persistence;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * WriteAheadLogのテストクラス
+ * 追記したレコードが再起動後に同じ順序で再生されること、不完全な末尾が切り捨てられることを検証します
+ */
+class WriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 追記したレコードが、閉じて開き直した後に同じ内容・順序で再生されることを確認
+     */
+    @Test
+    void replay_ShouldReturnAppendedRecordsInOrder() throws IOException {
+        // Given
+        Path path = dir.resolve("posts.wal");
+        List<LogRecord> records = List.of(
+                new LogRecord(LogRecord.Type.CREATE, 1L, Instant.parse("2025-07-01T00:00:00.123456789Z"), "投稿1です。"),
+                new LogRecord(LogRecord.Type.CREATE, 2L, Instant.parse("2025-07-01T00:00:01Z"), ""),
+                new LogRecord(LogRecord.Type.PUBLISH, 1L, Instant.parse("2025-07-02T00:00:00Z"), null),
+                LogRecord.delete(2L));
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.PER_WRITE, 1)) {
+            log.replay(record -> { });
+            log.write(records.get(0));
+            log.awaitDurable(log.appendAll(records.subList(1, records.size())));
+        }
+
+        // When
+        List<LogRecord> replayed = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.PER_WRITE, 1)) {
+            log.replay(replayed::add);
+        }
+
+        // Then
+        assertEquals(records, replayed);
+    }
+
+    /**
+     * 書き込み途中で停止した不完全な末尾のレコードが切り捨てられ、その位置から追記を再開できることを確認
+     */
+    @Test
+    void replay_ShouldDiscardTornTailAndContinueAppending() throws IOException {
+        // Given
+        Path path = dir.resolve("posts.wal");
+        long intact;
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.PER_WRITE, 1)) {
+            log.replay(record -> { });
+            intact = log.append(LogRecord.delete(1L));
+            log.write(LogRecord.delete(2L));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) - 3);
+        }
+
+        // When
+        List<LogRecord> replayed = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.PER_WRITE, 1)) {
+            log.replay(replayed::add);
+            log.write(LogRecord.delete(3L));
+        }
+        List<LogRecord> reopened = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.PER_WRITE, 1)) {
+            log.replay(reopened::add);
+        }
+
+        // Then
+        assertEquals(List.of(LogRecord.delete(1L)), replayed);
+        assertEquals(List.of(LogRecord.delete(1L), LogRecord.delete(3L)), reopened);
+        assertEquals(intact * 2, Files.size(path));
+    }
+
+    /**
+     * どの方針でも、複数スレッドから同時に書き込んだレコードがすべて記録されることを確認
+     */
+    @Test
+    void write_ShouldRecordConcurrentWritesUnderEveryPolicy() throws Exception {
+        for (DurabilityPolicy policy : DurabilityPolicy.values()) {
+            // Given
+            Path path = dir.resolve(policy + ".wal");
+            try (WriteAheadLog log = new WriteAheadLog(path, policy, 1);
+                    ExecutorService executor = Executors.newFixedThreadPool(8)) {
+                log.replay(record -> { });
+                List<Future<?>> futures = new ArrayList<>();
+
+                // When
+                for (int thread = 0; thread < 8; thread++) {
+                    long base = thread * 1000L;
+                    futures.add(executor.submit(() -> {
+                        for (long id = base; id < base + 100; id++) {
+                            log.write(LogRecord.delete(id));
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+
+            // Then
+            List<LogRecord> replayed = new ArrayList<>();
+            try (WriteAheadLog log = new WriteAheadLog(path, policy, 1)) {
+                log.replay(replayed::add);
+            }
+            assertEquals(800, replayed.size(), policy.name());
+        }
+    }
+
+    /**
+     * 世代を切り替えた後も論理的な位置が増え続け、指定した世代以降だけを再生できることを確認
+     */
+    @Test
+    void rotate_ShouldStartNewGenerationThatCanBeReplayedAlone() throws IOException {
+        // Given
+        Path path = dir.resolve("posts.wal");
+        long generation;
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.BATCHED, 1)) {
+            log.replay(record -> { });
+            long before = log.append(LogRecord.delete(1L));
+            generation = log.rotate();
+            long after = log.append(LogRecord.delete(2L));
+            log.awaitDurable(after);
+            assertTrue(after > before);
+        }
+
+        // When
+        List<LogRecord> all = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.PER_WRITE, 1)) {
+            log.replay(all::add);
+        }
+        List<LogRecord> tail = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(path, DurabilityPolicy.PER_WRITE, 1)) {
+            log.replay(generation, tail::add);
+            log.deleteSegmentsBefore(generation);
+            assertEquals(generation, log.generation());
+        }
+
+        // Then
+        assertEquals(1, generation);
+        assertEquals(List.of(LogRecord.delete(1L), LogRecord.delete(2L)), all);
+        assertEquals(List.of(LogRecord.delete(2L)), tail);
+        assertFalse(Files.exists(path));
+        assertTrue(Files.exists(dir.resolve("posts.wal.1")));
+    }
+
+    /**
+     * 再生する前の追記が拒否されることを確認
+     */
+    @Test
+    void append_ShouldRequireReplayFirst() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(dir.resolve("posts.wal"), DurabilityPolicy.ASYNC, 1)) {
+            assertThrows(IllegalStateException.class, () -> log.append(LogRecord.delete(1L)));
+        }
+    }
+}
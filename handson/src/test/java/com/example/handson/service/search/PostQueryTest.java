@@ -0,0 +1,97 @@
+package com.example.handson.service.search;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.StoredPost;
+
+/**
+ * PostQueryのテストクラス
+ * 検索条件の検証・正規化と、コンパイルした述語の評価結果を検証します
+ */
+class PostQueryTest {
+
+    /**
+     * キーワードが小文字化され、空文字列は条件なしとして扱われることを確認
+     */
+    @Test
+    void constructor_ShouldNormalizeKeyword() {
+        // When
+        PostQuery query = PostQuery.of("HeLLo", null, null, null, null, null, null, null);
+        PostQuery empty = PostQuery.of("", null, null, "", "", null, null, null);
+
+        // Then
+        assertEquals("hello", query.keyword());
+        assertNull(empty.keyword());
+        assertNull(empty.createdFrom());
+    }
+
+    /**
+     * 不正な日付や負の単語数は IllegalArgumentException で拒否されることを確認
+     */
+    @Test
+    void of_ShouldRejectInvalidParameters() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PostQuery.of(null, null, null, "2025/07/01", null, null, null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> PostQuery.of(null, null, null, null, "2025-13-01", null, null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> PostQuery.of(null, null, null, null, null, null, -1, null));
+    }
+
+    /**
+     * 条件のない検索条件はすべての投稿にマッチすることを確認
+     */
+    @Test
+    void compile_ShouldMatchEverythingWhenNoFilterIsGiven() {
+        // Given
+        Predicate<StoredPost> predicate = PostQuery.of(null, null, null, null, null, null, null, null).compile();
+
+        // When & Then
+        assertTrue(predicate.test(StoredPost.of(1L, null, null, null, null, true)));
+        assertTrue(predicate.test(StoredPost.draft(2L, "content", Instant.now())));
+    }
+
+    /**
+     * SearchParams から作った述語が、Post#matchesSearchCriteria と同じ結果になることを確認
+     */
+    @Test
+    void compile_ShouldAgreeWithMatchesSearchCriteria() {
+        Random random = new Random(3);
+        String[] contents = {"このテスト投稿はサンプルです", "Sample POST", "ΟΔΟΣ", "İstanbul", null};
+        String[] keywords = {null, "", "サンプル", "sample", "οδος", "i̇stanbul", "post"};
+        Instant now = Instant.now();
+        for (int i = 0; i < 500; i++) {
+            // Given
+            Post post = new Post(contents[random.nextInt(contents.length)]);
+            post.setId((long) i);
+            if (random.nextBoolean()) {
+                post.setDraft(false);
+                post.setPublishedAt(now.plus(random.nextInt(5) - 2, ChronoUnit.HOURS));
+            }
+            Post.SearchParams params = new Post.SearchParams();
+            params.setContentKeyword(keywords[random.nextInt(keywords.length)]);
+            if (random.nextBoolean()) {
+                params.setPublishedAfter(now.minus(1, ChronoUnit.HOURS));
+            }
+            if (random.nextBoolean()) {
+                params.setPublishedBefore(now.plus(1, ChronoUnit.HOURS));
+            }
+
+            // When
+            boolean actual = PostQuery.from(params).compile().test(StoredPost.of(post));
+
+            // Then
+            assertEquals(post.matchesSearchCriteria(params), actual, post + " " + params.getContentKeyword());
+        }
+    }
+}
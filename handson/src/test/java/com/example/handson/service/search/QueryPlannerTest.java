@@ -0,0 +1,123 @@
+package com.example.handson.service.search;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.PostStore;
+import com.example.handson.service.StoredPost;
+
+/**
+ * QueryPlannerのテストクラス
+ * 推定件数の最も少ないアクセスパスが選ばれること、どの実行計画でも結果が全件走査と一致することを検証します
+ */
+class QueryPlannerTest {
+
+    private PostStore store;
+    private QueryPlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        store = new PostStore();
+        planner = new QueryPlanner(store);
+        for (long id = 1; id <= 100; id++) {
+            store.insert(StoredPost.draft(id, id % 10 == 0 ? "rare keyword " + id : "common text " + id, Instant.now()));
+            if (id % 2 == 0) {
+                store.publish(id, Instant.now());
+            }
+        }
+    }
+
+    /**
+     * 絞り込み効果の高いキーワードがあればキーワードインデックスから候補を取得することを確認
+     */
+    @Test
+    void execute_ShouldDriveFromMostSelectiveIndex() {
+        // Given
+        PostQuery query = new PostQuery("rare", null, null, null, null, null, null, false, null, null);
+
+        // When
+        QueryResult result = planner.execute(query);
+
+        // Then
+        assertEquals("keyword", result.plan().driver());
+        assertEquals(10, result.posts().size());
+        assertEquals("scan:keyword", result.plan().stages().get(0).name());
+        assertEquals(10L, result.plan().stages().get(0).rows());
+        assertTrue(result.posts().stream().allMatch(post -> !post.isDraft()));
+    }
+
+    /**
+     * 狭いID範囲が指定された場合は区画のビューを走査し、残りの条件をフィルタとして適用することを確認
+     */
+    @Test
+    void execute_ShouldScanNarrowIdRangeAndApplyResidualFilters() {
+        // Given
+        PostQuery query = new PostQuery("common", 13L, 10L, null, null, null, null, null, null, null);
+
+        // When
+        QueryResult result = planner.execute(query);
+
+        // Then
+        assertEquals("idRange", result.plan().driver());
+        assertEquals(List.of(11L, 12L), result.posts().stream().map(Post::getId).toList());
+        assertEquals("filter:keyword", result.plan().stages().get(1).name());
+    }
+
+    /**
+     * ランダムな条件の組み合わせで、結果が全件走査と一致しIDの昇順に並ぶことを確認
+     * 1件ずつ返す stream も execute と同じ結果になることを確認
+     */
+    @Test
+    void execute_ShouldMatchLinearScanForRandomQueries() {
+        Random random = new Random(7);
+        String[] keywords = {null, "rare", "common", "text 1", "keyword 50", "zzz"};
+        Instant now = Instant.now();
+        for (int i = 0; i < 300; i++) {
+            // Given
+            String keyword = keywords[random.nextInt(keywords.length)];
+            Long afterId = random.nextBoolean() ? (long) random.nextInt(100) : null;
+            Long beforeId = random.nextBoolean() ? (long) random.nextInt(100) : null;
+            Boolean isDraft = random.nextInt(3) == 0 ? null : random.nextBoolean();
+            Instant from = random.nextBoolean() ? now.minusSeconds(60) : null;
+            Instant to = random.nextInt(4) == 0 ? now.minusSeconds(3600) : null;
+            Integer min = random.nextBoolean() ? random.nextInt(4) : null;
+            Integer max = random.nextBoolean() ? random.nextInt(4) : null;
+            PostQuery query = new PostQuery(keyword, beforeId, afterId, from, to, null, null, isDraft, min, max);
+
+            // When
+            List<Post> actual = planner.execute(query).posts();
+            List<Post> streamed = planner.stream(query).toList();
+
+            // Then
+            List<Post> expected = new ArrayList<>();
+            for (StoredPost post : store.all()) {
+                if (matches(post.toPost(), query)) {
+                    expected.add(post.toPost());
+                }
+            }
+            expected.sort(Comparator.comparing(Post::getId));
+            assertEquals(expected, actual, query.toString());
+            assertEquals(expected, streamed, query.toString());
+        }
+    }
+
+    private static boolean matches(Post post, PostQuery query) {
+        return (query.keyword() == null || post.getContent().toLowerCase().contains(query.keyword().toLowerCase()))
+                && (query.afterId() == null || post.getId() > query.afterId())
+                && (query.beforeId() == null || post.getId() < query.beforeId())
+                && (query.isDraft() == null || post.isDraft() == query.isDraft())
+                && (query.createdFrom() == null || !post.getCreatedAt().isBefore(query.createdFrom()))
+                && (query.createdTo() == null || !post.getCreatedAt().isAfter(query.createdTo()))
+                && (query.minWordCount() == null || post.getWordCount() >= query.minWordCount())
+                && (query.maxWordCount() == null || post.getWordCount() <= query.maxWordCount());
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.handson.service.search;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.handson.model.Post;
+import com.example.handson.service.PostStore;
+import com.example.handson.service.StoredPost;
+
+/**
+ * SearchResultCacheのテストクラス
+ * 結果に影響しない変更の後は保持した結果を返し、影響する変更の後は検索し直して常に最新の結果と一致することを検証します
+ */
+class SearchResultCacheTest {
+
+    private PostStore store;
+    private QueryPlanner planner;
+    private SearchResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        store = new PostStore();
+        planner = new QueryPlanner(store);
+        cache = new SearchResultCache(store, planner, 1 << 20);
+        for (long id = 1; id <= 100; id++) {
+            store.insert(StoredPost.draft(id, id % 10 == 0 ? "rare keyword " + id : "common text " + id, Instant.now()));
+            if (id % 2 == 0) {
+                store.publish(id, Instant.now());
+            }
+        }
+    }
+
+    /**
+     * 大文字・小文字だけが異なるキーワードの検索は、同じ要素から結果を返すことを確認
+     */
+    @Test
+    void execute_ShouldReuseResultForNormalizedQuery() {
+        // When
+        QueryResult first = cache.execute(query("Rare"));
+        QueryResult second = cache.execute(query("RARE"));
+
+        // Then
+        assertEquals("keyword", first.plan().driver());
+        assertEquals(SearchResultCache.DRIVER, second.plan().driver());
+        assertEquals(ids(first.posts()), ids(second.posts()));
+        assertEquals(1L, cache.hitCount());
+        assertEquals(1L, cache.missCount());
+    }
+
+    /**
+     * 新しい版で保持した結果は、その版より前の時点のビューには使われず、ビューの時点の結果が返されることを確認
+     */
+    @Test
+    void execute_ShouldNotServeNewerResultToOlderView() {
+        try (PostStore.ReadView before = store.openView()) {
+            // Given
+            store.remove(10L);
+            QueryResult latest = cache.execute(query("rare"));
+
+            // When
+            QueryResult old = cache.execute(before, query("rare"));
+
+            // Then
+            assertEquals(9, latest.posts().size());
+            assertEquals("keyword", old.plan().driver());
+            assertEquals(10, old.posts().size());
+            assertEquals(SearchResultCache.DRIVER, cache.execute(query("rare")).plan().driver());
+        }
+    }
+
+    /**
+     * 結果に含まれない投稿の公開・削除や、条件に一致しない投稿の追加の後も、保持した結果が使われることを確認
+     * 条件に一致する投稿の追加や、結果に含まれる投稿の削除の後は検索し直されることを確認
+     */
+    @Test
+    void execute_ShouldInvalidateOnlyWhenChangeAffectsResult() {
+        // Given
+        cache.execute(query("rare"));
+
+        // When
+        store.insert(StoredPost.draft(101L, "common text 101", Instant.now()));
+        store.publish(101L, Instant.now());
+        store.remove(3L);
+        QueryResult unaffected = cache.execute(query("rare"));
+        store.insert(StoredPost.draft(102L, "another rare post", Instant.now()));
+        store.publish(102L, Instant.now());
+        QueryResult added = cache.execute(query("rare"));
+        store.remove(10L);
+        QueryResult removed = cache.execute(query("rare"));
+
+        // Then
+        assertEquals(SearchResultCache.DRIVER, unaffected.plan().driver());
+        assertEquals(10, unaffected.posts().size());
+        assertEquals("keyword", added.plan().driver());
+        assertTrue(ids(added.posts()).contains(102L));
+        assertEquals("keyword", removed.plan().driver());
+        assertEquals(10, removed.posts().size());
+        assertEquals(1L, cache.hitCount());
+    }
+
+    /**
+     * 記録する件数の上限を超えてまとめて追加した場合は、内容が分からないため検索し直されることを確認
+     */
+    @Test
+    void execute_ShouldSearchAgainAfterLargeBatchInsert() {
+        // Given
+        cache.execute(query("rare"));
+        List<StoredPost> batch = new ArrayList<>();
+        for (long id = 1000; id < 1100; id++) {
+            batch.add(StoredPost.draft(id, "common text " + id, Instant.now()));
+        }
+
+        // When
+        store.insertAll(batch);
+        QueryResult result = cache.execute(query("rare"));
+
+        // Then
+        assertEquals("keyword", result.plan().driver());
+        assertEquals(0L, cache.hitCount());
+    }
+
+    /**
+     * 保持する量の見積もりが上限を超えないように古い要素が追い出され、上限より大きな結果は保持されないことを確認
+     */
+    @Test
+    void execute_ShouldKeepWithinMemoryBudget() {
+        // Given
+        long budget = SearchResultCache.ENTRY_OVERHEAD * 3 + SearchResultCache.BYTES_PER_MATCH * 10;
+        SearchResultCache small = new SearchResultCache(store, planner, budget);
+
+        // When
+        for (long afterId = 0; afterId < 20; afterId++) {
+            small.execute(new PostQuery(null, afterId + 2, afterId, null, null, null, null, null, null, null));
+            assertTrue(small.weightedSize() <= budget);
+        }
+        small.execute(new PostQuery(null, null, null, null, null, null, null, null, null, null));
+        small.execute(new PostQuery(null, null, null, null, null, null, null, null, null, null));
+
+        // Then
+        assertTrue(small.weightedSize() > 0);
+        assertEquals(0L, small.hitCount());
+    }
+
+    /**
+     * 検索と追加・公開・削除をランダムに繰り返しても、結果が常にキャッシュなしの検索と一致することを確認
+     */
+    @Test
+    void execute_ShouldMatchUncachedSearchUnderRandomWrites() {
+        // Given
+        Random random = new Random(42);
+        String[] keywords = {"rare", "common", "text 1", null};
+        long nextId = 101;
+
+        for (int i = 0; i < 2000; i++) {
+            // When
+            int operation = random.nextInt(10);
+            if (operation == 0) {
+                store.insert(StoredPost.draft(nextId, (random.nextBoolean() ? "rare " : "common text ") + nextId,
+                        Instant.now()));
+                nextId++;
+            } else if (operation == 1) {
+                store.publish(1 + random.nextInt((int) nextId), Instant.now());
+            } else if (operation == 2) {
+                store.remove(1 + random.nextInt((int) nextId));
+            } else {
+                String keyword = keywords[random.nextInt(keywords.length)];
+                Boolean isDraft = random.nextBoolean() ? null : random.nextBoolean();
+                PostQuery query = new PostQuery(keyword, null, null, null, null, null, null, isDraft, null, null);
+
+                // Then
+                assertEquals(ids(planner.execute(query).posts()), ids(cache.execute(query).posts()));
+            }
+        }
+        assertTrue(cache.hitCount() > 0);
+    }
+
+    private static PostQuery query(String keyword) {
+        return new PostQuery(keyword, null, null, null, null, null, null, false, null, null);
+    }
+
+    private static List<Long> ids(List<Post> posts) {
+        return posts.stream().map(Post::getId).toList();
+    }
+}